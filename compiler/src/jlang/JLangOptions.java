@@ -13,6 +13,9 @@ public class JLangOptions extends JL5Options {
     public String entryPointClass;
     public boolean entryPointEmitted;
     public boolean printDesugar;
+    public boolean shareAnonInstances;
+    public boolean printLayouts;
+    public boolean compactHeaders;
     public int maxPasses;
 
     public JLangOptions(JLangExtensionInfo extension) {
@@ -53,6 +56,18 @@ public class JLangOptions extends JL5Options {
         flags.add(new OptFlag.Switch(
                 "-dump-desugared", "Print the desugared AST to stderr", true));
         
+        flags.add(new OptFlag.Switch(
+                "-share-anon-instances",
+                "Reuse a single instance of anonymous classes without state or captures"));
+
+        flags.add(new OptFlag.Switch(
+                "-print-layouts", "Print the instance layout of each class to stderr"));
+
+        flags.add(new OptFlag.Switch(
+                "-compact-headers",
+                "Omit the monitor pointer from object headers"
+                + " (requires a runtime built with JLANG_COMPACT_HEADERS)"));
+
         flags.add(new OptFlag.IntFlag("-max-runs", "<number of total compiler runs>",
         		"An upper bound on the number of total compiler runs"
         		+ " which ~ 7 * num_input_files") {
@@ -71,6 +86,15 @@ public class JLangOptions extends JL5Options {
         else if (arg.flag().ids().contains("-dump-desugared")) {
             this.printDesugar = (Boolean) arg.value();
         }
+        else if (arg.flag().ids().contains("-share-anon-instances")) {
+            this.shareAnonInstances = (Boolean) arg.value();
+        }
+        else if (arg.flag().ids().contains("-print-layouts")) {
+            this.printLayouts = (Boolean) arg.value();
+        }
+        else if (arg.flag().ids().contains("-compact-headers")) {
+            this.compactHeaders = (Boolean) arg.value();
+        }
         else if (arg.flag().ids().contains("-max-runs")) {
         	this.maxPasses = (Integer) arg.value();
         }
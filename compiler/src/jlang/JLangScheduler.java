@@ -6,7 +6,7 @@ import jlang.ast.JLangNodeFactory;
 import jlang.types.JLangTypeSystem;
 import jlang.util.DesugarBarrier;
 import jlang.util.JLangDesugared;
-import jlang.visit.StringLitFold;
+import jlang.visit.ConstantFold;
 import polyglot.ast.ClassDecl;
 import polyglot.ast.Lang;
 import polyglot.ast.Node;
@@ -97,14 +97,14 @@ public class JLangScheduler extends JL7Scheduler {
 
     /**
      * Ensure that everything is properly constant folded
-     * for the JVM
+     * for the JVM, and that constant variables are inlined.
      */
     public Goal JLangConstFold(Job job) {
-        // add a pass for string constant folding
+        // add a pass for constant folding
         ExtensionInfo extInfo = job.extensionInfo();
         JLangTypeSystem ts = (JLangTypeSystem) extInfo.typeSystem();
         JLangNodeFactory nf = (JLangNodeFactory) extInfo.nodeFactory();
-        Goal constGoal = new VisitorGoal(job, new StringLitFold(ts, nf));
+        Goal constGoal = new VisitorGoal(job, new ConstantFold(ts, nf));
         try {
             // ensure all desugaring is done for the file (might generate more constants)
             constGoal.addPrerequisiteGoal(LLVMDesugared(job), this);
@@ -7,14 +7,15 @@ import polyglot.util.InternalCompilerError;
 import polyglot.util.Position;
 import polyglot.util.SerialVersionUID;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import jlang.ast.JLangExt;
 import jlang.visit.DesugarLocally;
 import jlang.visit.LLVMTranslator;
 
-import static org.bytedeco.javacpp.LLVM.LLVMBuildStore;
-import static org.bytedeco.javacpp.LLVM.LLVMValueRef;
+import static org.bytedeco.javacpp.LLVM.*;
 
 public class JLangAssignExt extends JLangExt {
     private static final long serialVersionUID = SerialVersionUID.generate();
@@ -33,6 +34,9 @@ public class JLangAssignExt extends JLangExt {
     protected Node desugarToSimpleAssignment(Assign n, DesugarLocally v) {
         Position pos = n.position();
 
+        if (JLangFieldExt.isAtomicAccess(n.left()))
+            return desugarAtomicToSimpleAssignment(n, v);
+
         LocalDecl leftPtrFlat = v.tnf.TempSSA("lvalue", v.tnf.AddressOf(n.left()));
         LocalDecl rightFlat = v.tnf.TempSSA("rvalue", n.right());
         Local leftPtr = v.tnf.Local(pos, leftPtrFlat);
@@ -46,6 +50,27 @@ public class JLangAssignExt extends JLangExt {
         return v.tnf.ESeq(Arrays.asList(leftPtrFlat, rightFlat), n);
     }
 
+    /**
+     * Like {@link #desugarToSimpleAssignment(Assign, DesugarLocally)}, but reads
+     * and writes the field directly so that both accesses remain atomic, with
+     * the field's ordering.
+     */
+    protected Node desugarAtomicToSimpleAssignment(Assign n, DesugarLocally v) {
+        Position pos = n.position();
+
+        List<Stmt> stmts = new ArrayList<>();
+        Field left = JLangFieldExt.hoistTarget((Field) n.left(), stmts, v);
+        LocalDecl leftFlat = v.tnf.TempSSA("load", JLangFieldExt.copyAccess(left));
+        stmts.add(leftFlat);
+        Local leftLoaded = v.tnf.Local(pos, leftFlat);
+
+        Binary.Operator binop = convertAssignOpToBinop(n.operator());
+        Binary res = (Binary) v.nf.Binary(pos, leftLoaded, binop, n.right()).type(n.type());
+        n = n.left(JLangFieldExt.copyAccess(left)).operator(Assign.ASSIGN).right(res);
+
+        return v.tnf.ESeq(stmts, n);
+    }
+
     @Override
     public Node overrideTranslateLLVM(Node parent, LLVMTranslator v) {
         Assign n = (Assign) node();
@@ -57,7 +82,14 @@ public class JLangAssignExt extends JLangExt {
         LLVMValueRef ptr = lang().translateAsLValue(n.left(), v);
         n.visitChild(n.right(), v);
         LLVMValueRef val = v.getTranslation(n.right());
-        LLVMBuildStore(v.builder, val, ptr);
+        int ordering = n.left() instanceof Field
+                ? JLangFieldExt.accessOrdering((Field) n.left())
+                : LLVMAtomicOrderingNotAtomic;
+        if (ordering == LLVMAtomicOrderingNotAtomic) {
+            LLVMBuildStore(v.builder, val, ptr);
+        } else {
+            v.utils.buildAtomicStore(val, ptr, n.left().type(), ordering);
+        }
         v.addTranslation(n, val);
         return n;
     }
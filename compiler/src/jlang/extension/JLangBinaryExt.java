@@ -28,6 +28,8 @@ public class JLangBinaryExt extends JLangExt {
         Binary n = (Binary) node();
 
         // Desugar string concatenation of non-constants into a method call.
+        // Most concatenations are already fused by DesugarStringConcat; this
+        // handles the ones created by later desugar transformations.
         ClassType strT = v.ts.String();
         if (n.operator().equals(Binary.ADD) && n.type().typeEquals(strT)
         		&& !lang().isConstant(n, lang())) {
@@ -3,8 +3,10 @@
 package jlang.extension;
 
 import jlang.ast.JLangExt;
-import jlang.extension.JLangTryExt.ExceptionFrame;
+import jlang.types.JLangTypeSystem;
 import jlang.util.Constants;
+import jlang.util.Intrinsics;
+import jlang.util.Intrinsics.Intrinsic;
 import jlang.visit.LLVMTranslator;
 import jlang.visit.LLVMTranslator.DispatchInfo;
 import org.bytedeco.javacpp.LLVM.*;
@@ -20,7 +22,6 @@ import java.lang.Override;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
-import static jlang.extension.JLangSynchronizedExt.buildMonitorFunc;
 import static org.bytedeco.javacpp.LLVM.*;
 
 public class JLangCallExt extends JLangProcedureCallExt {
@@ -42,77 +43,10 @@ public class JLangCallExt extends JLangProcedureCallExt {
         if (node().methodInstance().returnType().isVoid())
             v.addTranslation(node(), new Object());
 
-        ProcedureInstance pi = node().procedureInstance();
-        if (pi.flags().isSynchronized()) {
-            // Handle synchronization at the caller site.
-            //
-            // It will emit the following code:
-            //  try { MonitorEnter(target); target.func(arg1, arg2); }
-            //  finally { MonitorExit(target); }
-
-            // Two possible control flows for the following try-finally code:
-            //  - lock -> function call -> unlock -> End
-            //  - lock -> function call with an exception thrown -> landing pad -> unlock -> rethrow exception
-
-            // Declare blocks and some useful variables.
-            LLVMBasicBlockRef lpad = v.utils.buildBlock("lpad");
-            LLVMBasicBlockRef end = v.utils.buildBlock("end");
-
-            LLVMBasicBlockRef lpadOuter = v.currLandingPad();
-            ExceptionFrame frame = new ExceptionFrame(v, lpad, null);
-
-            ////////////////////
-            // Flow 1
-            ////////////////////
-            LLVMValueRef syncVar;
-            if (pi.flags().isStatic()) {
-                assert pi.container().isClass();
-                v.utils.buildClassLoadCheck(pi.container().toClass());
-                syncVar = v.utils.loadClassObject(pi.container().toClass());
-            } else {
-                syncVar = v.getTranslation(node().target());
-            }
-
-            // Push the exception frame after translating syncVar to make sure we always
-            // have defined syncVar in all possible paths.
-            v.pushExceptionFrame(frame);
-
-            buildMonitorFunc(v, Constants.MONITOR_ENTER, syncVar);
-            Node retNode = super.leaveTranslateLLVM(v);
-            buildMonitorFunc(v, Constants.MONITOR_EXIT, syncVar);
-
-            LLVMBuildBr(v.builder, end);
-
-            ////////////////////
-            // Landing Pad (Flow 2)
-            ////////////////////
-            LLVMPositionBuilderAtEnd(v.builder, lpad);
-
-            LLVMTypeRef lpadT = v.utils.structType(v.utils.i8Ptr(), v.utils.i32());
-            LLVMValueRef nullBytePtr = LLVMConstNull(v.utils.i8Ptr());
-            LLVMValueRef personalityFunc = v.utils.getFunction(
-                    Constants.PERSONALITY_FUNC,
-                    v.utils.functionType(LLVMInt32TypeInContext(v.context)));
-            LLVMValueRef lpadFinallyRes = LLVMBuildLandingPad(v.builder, lpadT, personalityFunc, 1, "lpad.finally.res");
-            LLVMAddClause(lpadFinallyRes, nullBytePtr);
-            LLVMValueRef exception = LLVMBuildExtractValue(v.builder, lpadFinallyRes, 0, "exn");
-
-            // Prevent the current exceptionFrame from being used in the future translation.
-            v.popExceptionFrame();
-            buildMonitorFunc(v, Constants.MONITOR_EXIT, syncVar);
-
-            // Rethrow exception
-            LLVMValueRef throwExnFunc = v.utils.getFunction(Constants.THROW_EXCEPTION,
-                    v.utils.functionType(LLVMVoidTypeInContext(v.context), v.utils.i8Ptr()));
-            v.utils.buildProcCall(lpadOuter, throwExnFunc, exception);
-            LLVMBuildUnreachable(v.builder);
-
-            LLVMPositionBuilderAtEnd(v.builder, end);
-            return retNode;
-        } else {
-            // Most of the translation happens here in this call.
-            return super.leaveTranslateLLVM(v);
-        }
+        // Most of the translation happens here in this call.
+        // Synchronized methods acquire their monitor in their own prologue,
+        // so there is nothing special to do at the call site.
+        return super.leaveTranslateLLVM(v);
     }
 
     /**
@@ -163,6 +97,11 @@ public class JLangCallExt extends JLangProcedureCallExt {
 
         if (direct) {
             // Direct (static, final, private, etc.) call.
+            if (mi.flags().isSynchronized() && callerHoldsMonitor(v)) {
+                // Skip the locking prologue, since the monitor is already held.
+                String funcName = v.mangler.procUnsynchronized(mi);
+                return v.utils.getFunction(funcName, funcType);
+            }
             return super.buildFuncPtr(v, funcType);
         } else {
             ReferenceType recvTy = n.target().type().toReference();
@@ -176,6 +115,191 @@ public class JLangCallExt extends JLangProcedureCallExt {
         }
     }
 
+    /**
+     * Returns true if the current function is the body of a synchronized method which
+     * holds the same monitor that the (synchronized, direct) callee would acquire.
+     * In that case the callee is declared in the same class as the caller, so its
+     * unsynchronized body is emitted in the current module.
+     */
+    protected boolean callerHoldsMonitor(LLVMTranslator v) {
+        Call n = node();
+        MethodInstance callee = n.methodInstance();
+        MethodInstance caller = v.currSynchronizedMethod();
+        if (caller == null || caller.flags().isStatic() != callee.flags().isStatic())
+            return false;
+
+        ClassType callerClass = v.utils.erasureLL(caller.container());
+        ClassType calleeClass = v.utils.erasureLL(callee.container());
+        if (!callerClass.typeEquals(calleeClass))
+            return false;
+
+        // Static methods lock the class object of their container.
+        if (callee.flags().isStatic())
+            return true;
+
+        // Instance methods must be called on the same receiver.
+        if (!(n.target() instanceof Special))
+            return false;
+        Special target = (Special) n.target();
+        return target.kind().equals(Special.THIS) && target.qualifier() == null;
+    }
+
+    @Override
+    protected LLVMValueRef buildCall(LLVMTranslator v) {
+        MethodInstance mi = node().methodInstance();
+        Intrinsic intrinsic = Intrinsics.lookup(v, mi);
+        if (intrinsic != null)
+            return intrinsic.build(v, node(), () -> super.buildCall(v));
+        if (isArrayClone(mi))
+            return buildArrayClone(v, node().target().type().toArray());
+        if (isBoxingMethod(v.ts, mi)) {
+            ClassType wrapper = mi.container().toClass();
+            if (mi.formalTypes().get(0).isBoolean())
+                return buildBooleanBox(v, wrapper);
+            FieldInstance cache = boxCache(wrapper);
+            if (cache != null)
+                return buildCachedBox(v, cache);
+        }
+        return super.buildCall(v);
+    }
+
+    /** Returns true if this is a call to clone() on an array. */
+    protected boolean isArrayClone(MethodInstance mi) {
+        Call n = node();
+        return mi.name().equals("clone") && mi.formalTypes().isEmpty()
+                && n.target() != null && n.target().type().isArray();
+    }
+
+    /**
+     * Inlines array clone, since the element type is known statically: allocates
+     * the array header plus element data and copies both in one memcpy.
+     * Primitive arrays are allocated without GC scanning.
+     * The copy gets its own (lazily created) monitor.
+     */
+    protected LLVMValueRef buildArrayClone(LLVMTranslator v, ArrayType at) {
+        ClassType arrObj = v.ts.ArrayObject();
+        LLVMValueRef recv = LLVMBuildBitCast(
+                v.builder, buildReceiverArg(v), v.utils.toLL(arrObj), "cast.array");
+
+        LLVMValueRef len = LLVMBuildLoad(v.builder, v.obj.buildArrayLengthPtr(recv), "load.length");
+        LLVMValueRef len64 = LLVMBuildZExt(v.builder, len, v.utils.i64(), "clone.len");
+        LLVMValueRef elemSize = LLVMConstInt(v.utils.i64(), v.utils.sizeOfType(at.base()), 0);
+        LLVMValueRef dataSize = LLVMBuildMul(v.builder, len64, elemSize, "clone.data.size");
+        LLVMValueRef size = LLVMBuildAdd(v.builder, v.obj.sizeOf(arrObj), dataSize, "clone.size");
+
+        String allocFunc = at.base().isPrimitive() ? Constants.CALLOC_POINTER_FREE : Constants.CALLOC;
+        LLVMValueRef calloc = LLVMGetNamedFunction(v.mod, allocFunc);
+        LLVMValueRef raw = v.utils.buildFunCall(calloc, size);
+        LLVMValueRef src = LLVMBuildBitCast(v.builder, recv, v.utils.i8Ptr(), "cast.src");
+        Intrinsics.buildIntrinsicCall(v, "llvm.memcpy.p0i8.p0i8.i64", LLVMVoidTypeInContext(v.context),
+                raw, src, size,
+                LLVMConstInt(v.utils.i32(), v.utils.llvmPtrSize(), /*sign-extend*/ 0),
+                LLVMConstInt(LLVMInt1TypeInContext(v.context), 0, /*sign-extend*/ 0));
+
+        LLVMValueRef copy = LLVMBuildBitCast(v.builder, raw, v.utils.toLL(arrObj), "cast.clone");
+        v.obj.buildClearSyncVars(copy, arrObj);
+        return LLVMBuildBitCast(v.builder, copy, v.utils.toLL(node().type()), "cast.clone");
+    }
+
+    /** Returns true if {@code mi} is a boxing method such as {@link Integer#valueOf(int)}. */
+    public static boolean isBoxingMethod(JLangTypeSystem ts, MethodInstance mi) {
+        if (!mi.name().equals("valueOf") || !mi.flags().isStatic())
+            return false;
+        if (!mi.container().isClass() || !ts.isPrimitiveWrapper(mi.container()))
+            return false;
+        if (mi.formalTypes().size() != 1)
+            return false;
+        Type prim = ts.primitiveTypeOfWrapper(mi.container());
+        return mi.formalTypes().get(0).typeEquals(prim); // Excludes valueOf(String).
+    }
+
+    /**
+     * Returns the static array holding the preallocated boxes of a wrapper class
+     * (e.g., {@code Integer.IntegerCache.cache}), or null if there is no such array.
+     */
+    protected FieldInstance boxCache(ClassType wrapper) {
+        ClassType cacheClass = wrapper.memberClassNamed(wrapper.name() + "Cache");
+        if (cacheClass == null)
+            return null;
+        FieldInstance fi = cacheClass.fieldNamed("cache");
+        if (fi == null || !fi.flags().isStatic() || !fi.type().isArray())
+            return null;
+        return fi;
+    }
+
+    /**
+     * Inlines the small-value check from the wrapper's valueOf method, so that
+     * boxing a cached value is one comparison and one load from the cache array.
+     * Other values still go through the valueOf call.
+     *
+     * The JDK caches [-128, 127] for Byte, Short, Integer, and Long, and [0, 127]
+     * for Character. Integer may cache more, which the valueOf call handles.
+     */
+    protected LLVMValueRef buildCachedBox(LLVMTranslator v, FieldInstance cache) {
+        Call n = node();
+        Type prim = n.methodInstance().formalTypes().get(0);
+        LLVMValueRef val = v.getTranslation(n.arguments().get(0));
+        LLVMTypeRef resType = v.utils.toLL(n.type());
+
+        // A single unsigned comparison checks both bounds of the cache.
+        // Chars above 0x7fff sign-extend to negative indices here, and so fail the check.
+        LLVMTypeRef idxType = prim.isLong() ? v.utils.i64() : v.utils.i32();
+        LLVMValueRef idx = LLVMBuildIntCast(v.builder, val, idxType, "box.idx");
+        int low = prim.isChar() ? 0 : -128;
+        int size = prim.isChar() ? 128 : 256;
+        idx = LLVMBuildSub(v.builder, idx, LLVMConstInt(idxType, low, /*sign-extend*/ 1), "box.idx");
+
+        if (prim.isByte()) {
+            // Every byte value is cached.
+            return buildBoxCacheLoad(v, cache, idx, resType);
+        }
+
+        LLVMValueRef res = v.utils.buildAlloca("box", resType);
+        LLVMBasicBlockRef cached = v.utils.buildBlock("box.cached");
+        LLVMBasicBlockRef uncached = v.utils.buildBlock("box.uncached");
+        LLVMBasicBlockRef end = v.utils.buildBlock("box.end");
+        LLVMValueRef inRange = LLVMBuildICmp(
+                v.builder, LLVMIntULT, idx, LLVMConstInt(idxType, size, /*sign-extend*/ 0),
+                "box.in.cache");
+        LLVMBuildCondBr(v.builder, inRange, cached, uncached);
+
+        LLVMPositionBuilderAtEnd(v.builder, cached);
+        LLVMBuildStore(v.builder, buildBoxCacheLoad(v, cache, idx, resType), res);
+        LLVMBuildBr(v.builder, end);
+
+        LLVMPositionBuilderAtEnd(v.builder, uncached);
+        LLVMBuildStore(v.builder, super.buildCall(v), res);
+        LLVMBuildBr(v.builder, end);
+
+        LLVMPositionBuilderAtEnd(v.builder, end);
+        return LLVMBuildLoad(v.builder, res, "load.box");
+    }
+
+    protected LLVMValueRef buildBoxCacheLoad(
+            LLVMTranslator v, FieldInstance cache, LLVMValueRef idx, LLVMTypeRef resType) {
+        v.utils.buildClassLoadCheck(cache.container().toClass());
+        LLVMValueRef arr = LLVMBuildLoad(v.builder, v.utils.getStaticField(cache), "load.box.cache");
+        LLVMValueRef base = v.obj.buildArrayBaseElementPtr(arr, cache.type().toArray());
+        LLVMValueRef box = LLVMBuildLoad(v.builder, v.utils.buildGEP(base, idx), "load.box");
+        return LLVMBuildBitCast(v.builder, box, resType, "cast.box");
+    }
+
+    /** Boolean.valueOf(b) always returns one of two preallocated boxes. */
+    protected LLVMValueRef buildBooleanBox(LLVMTranslator v, ClassType wrapper) {
+        Call n = node();
+        FieldInstance trueField = wrapper.fieldNamed("TRUE");
+        FieldInstance falseField = wrapper.fieldNamed("FALSE");
+        if (trueField == null || falseField == null)
+            return super.buildCall(v);
+        LLVMValueRef val = v.getTranslation(n.arguments().get(0));
+        LLVMTypeRef resType = v.utils.toLL(n.type());
+        v.utils.buildClassLoadCheck(wrapper);
+        LLVMValueRef t = LLVMBuildLoad(v.builder, v.utils.getStaticField(trueField), "load.true");
+        LLVMValueRef f = LLVMBuildLoad(v.builder, v.utils.getStaticField(falseField), "load.false");
+        LLVMValueRef box = LLVMBuildSelect(v.builder, val, t, f, "box");
+        return LLVMBuildBitCast(v.builder, box, resType, "cast.box");
+    }
+
     protected LLVMValueRef buildInstanceMethodPtr(LLVMTranslator v, MethodInstance mi) {
         Call n = node();
         LLVMValueRef recv = v.getTranslation(n.target());
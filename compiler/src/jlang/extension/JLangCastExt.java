@@ -164,6 +164,18 @@ public class JLangCastExt extends JLangExt {
             DesugarLocally v, Expr e, ClassType from, PrimitiveType to) {
 
         assert v.ts.isPrimitiveWrapper(from);
+
+        // Cancel a box immediately followed by an unbox, as in `int j = (Integer) i`
+        // or `Integer.valueOf(i).intValue()`, so that no box is allocated.
+        // The valueOf methods never return null, so no null check is lost.
+        if (e instanceof Call) {
+            Call c = (Call) e;
+            if (c.target() instanceof TypeNode
+                    && JLangCallExt.isBoxingMethod(v.ts, c.methodInstance())
+                    && c.arguments().get(0).type().typeEquals(to))
+                return c.arguments().get(0);
+        }
+
         String valueMethod = to.name() + "Value";
         return v.tnf.Call(e.position(), e, valueMethod, from, to);
     }
@@ -6,10 +6,12 @@ import jlang.types.JLangParsedClassType_c;
 import org.bytedeco.javacpp.LLVM;
 import org.bytedeco.javacpp.LLVM.*;
 
+import jlang.JLangOptions;
 import jlang.ast.JLangExt;
 import jlang.util.Constants;
 import jlang.visit.LLVMTranslator;
 import polyglot.ast.*;
+import polyglot.main.Options;
 import polyglot.types.*;
 import polyglot.util.SerialVersionUID;
 
@@ -372,6 +374,10 @@ public class JLangClassDeclExt extends JLangExt {
             v.dv.initializeDispatchVectorFor(ct);
         }
 
+        if (((JLangOptions) Options.global).printLayouts) {
+            System.err.print(v.obj.describeLayout(ct));
+        }
+
         if (!ct.flags().isAbstract() && !interfaces.isEmpty()) {
             int numOfIntfs = interfaces.size();
             LLVMValueRef[] intf_id_hashes = new LLVMValueRef[numOfIntfs];
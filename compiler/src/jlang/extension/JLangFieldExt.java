@@ -2,14 +2,17 @@
 
 package jlang.extension;
 
-import polyglot.ast.Field;
-import polyglot.ast.Node;
+import polyglot.ast.*;
 import polyglot.types.FieldInstance;
+import polyglot.types.ReferenceType;
+import polyglot.types.Type;
 import polyglot.util.SerialVersionUID;
 
 import java.lang.Override;
+import java.util.List;
 
 import jlang.ast.JLangExt;
+import jlang.visit.DesugarLocally;
 import jlang.visit.LLVMTranslator;
 
 import static org.bytedeco.javacpp.LLVM.*;
@@ -21,11 +24,68 @@ public class JLangFieldExt extends JLangExt {
     public Node overrideTranslateLLVM(Node parent, LLVMTranslator v) {
         Field n = (Field) node();
         LLVMValueRef ptr = translateAsLValue(v); // Emits debug info.
-        LLVMValueRef load = LLVMBuildLoad(v.builder, ptr, "load." + n.name());
+        int ordering = accessOrdering(n);
+        LLVMValueRef load = ordering == LLVMAtomicOrderingNotAtomic
+                ? LLVMBuildLoad(v.builder, ptr, "load." + n.name())
+                : v.utils.buildAtomicLoad(ptr, n.type(), ordering, "load." + n.name());
         v.addTranslation(n, load);
         return super.leaveTranslateLLVM(v);
     }
 
+    /**
+     * Returns the atomic ordering required for loads and stores of field {@code n}.
+     * Volatile fields are sequentially consistent (JLS 7, section 17.4). Other
+     * long and double fields are unordered, which the JLS does not require
+     * but which rules out tearing for free on 64-bit targets.
+     */
+    public static int accessOrdering(Field n) {
+        if (n.flags().isVolatile())
+            return LLVMAtomicOrderingSequentiallyConsistent;
+        Type t = n.type();
+        if (t.isLong() || t.isDouble())
+            return LLVMAtomicOrderingUnordered;
+        return LLVMAtomicOrderingNotAtomic;
+    }
+
+    /**
+     * Returns whether {@code e} is an access to a field that must be loaded and
+     * stored atomically, i.e., a volatile, long, or double field.
+     */
+    public static boolean isAtomicAccess(Expr e) {
+        return e instanceof Field
+                && accessOrdering((Field) e) != LLVMAtomicOrderingNotAtomic;
+    }
+
+    /**
+     * Returns a version of {@code n} that can be evaluated several times without
+     * repeating side effects, appending any temporaries needed to {@code stmts}.
+     * This lets compound updates of atomic fields be desugared into a separate
+     * load and store of the field itself, rather than through its address.
+     * Each use of the result should go through {@link #copyAccess(Field)}.
+     */
+    public static Field hoistTarget(Field n, List<Stmt> stmts, DesugarLocally v) {
+        Receiver target = n.target();
+        if (n.flags().isStatic()) {
+            // A primary expression is still evaluated, and its value discarded.
+            // See JLS 7, section 15.11.1.
+            if (!(target instanceof Expr))
+                return n;
+            stmts.add(v.nf.Eval(n.position(), (Expr) target));
+            ReferenceType container = n.fieldInstance().container();
+            return n.target(v.nf.CanonicalTypeNode(n.position(), container));
+        }
+        if (!(target instanceof Expr) || target instanceof Special)
+            return n;
+        LocalDecl targetFlat = v.tnf.TempSSA("target", (Expr) target);
+        stmts.add(targetFlat);
+        return n.target(v.tnf.Local(n.position(), targetFlat));
+    }
+
+    /** Copies a field access returned by {@link #hoistTarget}, including its target. */
+    public static Field copyAccess(Field n) {
+        return n.target((Receiver) n.target().copy());
+    }
+
     @Override
     public LLVMValueRef translateAsLValue(LLVMTranslator v) {
         Field n = (Field) node();
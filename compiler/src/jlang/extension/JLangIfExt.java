@@ -2,13 +2,16 @@
 
 package jlang.extension;
 
+import polyglot.ast.BooleanLit;
 import polyglot.ast.If;
 import polyglot.ast.Node;
+import polyglot.ast.Stmt;
 import polyglot.util.SerialVersionUID;
 
 import java.lang.Override;
 
 import jlang.ast.JLangExt;
+import jlang.visit.ConstantFold;
 import jlang.visit.LLVMTranslator;
 
 import static org.bytedeco.javacpp.LLVM.*;
@@ -19,6 +22,22 @@ public class JLangIfExt extends JLangExt {
     @Override
     public Node overrideTranslateLLVM(Node parent, LLVMTranslator v) {
         If n = (If) node();
+
+        // If the condition was folded to a constant, only translate the branch taken.
+        if (n.cond() instanceof BooleanLit && !ConstantFold.declaresClass(lang(), n)) {
+            Stmt taken = ((BooleanLit) n.cond()).value() ? n.consequent() : n.alternative();
+            if (taken != null) {
+                LLVMBasicBlockRef ifTaken = v.utils.buildBlock("if.taken");
+                LLVMBasicBlockRef ifEnd = v.utils.buildBlock("if.end");
+                LLVMBuildBr(v.builder, ifTaken);
+                LLVMPositionBuilderAtEnd(v.builder, ifTaken);
+                n.visitChild(taken, v);
+                v.utils.branchUnlessTerminated(ifEnd);
+                LLVMPositionBuilderAtEnd(v.builder, ifEnd);
+            }
+            return n;
+        }
+
         LLVMBasicBlockRef ifEnd = v.utils.buildBlock("if.end");
         LLVMBasicBlockRef ifTrue = v.utils.buildBlock("if.true");
         LLVMBasicBlockRef ifFalse = n.alternative() != null
@@ -44,8 +44,7 @@ public class JLangNewExt extends JLangProcedureCallExt {
         ReferenceType clazz = ci.container();
 
         // Allocate space for the new object.
-        LLVMValueRef calloc = LLVMGetNamedFunction(v.mod, Constants.CALLOC);
-        LLVMValueRef obj = v.utils.buildFunCall(calloc, size);
+        LLVMValueRef obj = buildAlloc(v, clazz, size);
 
         // Bitcast object
         LLVMValueRef objCast = LLVMBuildBitCast(v.builder, obj, v.utils.toLL(clazz), "obj_cast");
@@ -77,6 +76,19 @@ public class JLangNewExt extends JLangProcedureCallExt {
         return objCast;
     }
 
+    /**
+     * Allocates zeroed memory for an instance of the given class. Instances
+     * without reference fields are allocated so that the GC does not scan them.
+     */
+    private static LLVMValueRef buildAlloc(
+            LLVMTranslator v, ReferenceType clazz, LLVMValueRef size) {
+        String allocFunc = v.obj.isPointerFree(clazz)
+                ? Constants.CALLOC_POINTER_FREE
+                : Constants.CALLOC;
+        LLVMValueRef calloc = LLVMGetNamedFunction(v.mod, allocFunc);
+        return v.utils.buildFunCall(calloc, size);
+    }
+
     @Override
     protected LLVMValueRef buildReceiverArg(LLVMTranslator v) {
         New n = (New) node();
@@ -85,8 +97,7 @@ public class JLangNewExt extends JLangProcedureCallExt {
         LLVMValueRef size = v.obj.sizeOf(ci.container());
 
         // Allocate space for the new object.
-        LLVMValueRef calloc = LLVMGetNamedFunction(v.mod, Constants.CALLOC);
-        LLVMValueRef rawPtr = v.utils.buildFunCall(calloc, size);
+        LLVMValueRef rawPtr = buildAlloc(v, clazz, size);
 
         // Bitcast object
         LLVMValueRef obj = LLVMBuildBitCast(v.builder, rawPtr, v.utils.toLL(clazz), "cast.new");
@@ -58,6 +58,17 @@ abstract class JLangProcedureCallExt extends JLangExt {
 
     @Override
     public Node leaveTranslateLLVM(LLVMTranslator v) {
+        LLVMValueRef res = buildCall(v);
+        if (res != null)
+            v.addTranslation(node(), res);
+        return super.leaveTranslateLLVM(v);
+    }
+
+    /**
+     * Emits this call, assuming that its children are already translated.
+     * Returns the result of the call, or null if the callee returns void.
+     */
+    protected LLVMValueRef buildCall(LLVMTranslator v) {
         ProcedureCall n = node();
         ProcedureInstance pi = n.procedureInstance();
 
@@ -75,16 +86,14 @@ abstract class JLangProcedureCallExt extends JLangExt {
         if (returnType.isVoid()) {
             // Procedure call.
             v.utils.buildProcCall(funcPtr, args);
+            return null;
         }
         else {
             // Function call; bitcast result to handle erasure.
             LLVMValueRef call = v.utils.buildFunCall(funcPtr, args);
             LLVMTypeRef resType = v.utils.toLL(returnType);
-            LLVMValueRef erasureCast = LLVMBuildBitCast(v.builder, call, resType, "cast.erasure");
-            v.addTranslation(n, erasureCast);
+            return LLVMBuildBitCast(v.builder, call, resType, "cast.erasure");
         }
-
-        return super.leaveTranslateLLVM(v);
     }
 
     /**
@@ -19,6 +19,7 @@ import java.util.List;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
+import static jlang.extension.JLangSynchronizedExt.buildSynchronizedCall;
 import static jlang.util.Constants.GET_NATIVE_FUNC;
 import static jlang.util.Constants.JNI_ENV_VAR_NAME;
 import static org.bytedeco.javacpp.LLVM.*;
@@ -82,7 +83,9 @@ public class JLangProcedureDeclExt extends JLangExt {
                     && n.formals().iterator().next().declType().equals(v.ts.arrayOf(v.ts.String()));
             if (isEntryPoint) {
                 String className = n.procedureInstance().container().toClass().fullName();
-                v.addEntryPoint(v.currFn(), className);
+                // Use the declared function rather than the current one, which
+                // differs for synchronized methods.
+                v.addEntryPoint(v.utils.getFunction(funcName, v.utils.toLL(pi)), className);
 
                 // For bootstrapping reasons, initialize the java.lang.Class class first.
                 v.utils.buildClassLoadCheck(v.ts.Class());
@@ -93,8 +96,17 @@ public class JLangProcedureDeclExt extends JLangExt {
             }
 
             if (n.body() != null) {
+                // Final fields must be visible to any thread that sees the constructed
+                // object, so constructors that set them end with a release fence.
+                // See JLS 7, section 17.5.
+                if (pi instanceof ConstructorInstance && hasFinalInstanceFields(ct))
+                    v.setReleaseOnReturn();
+
                 // Recurse to children.
                 lang().visitChildren(n, v);
+
+                if (!v.utils.blockTerminated())
+                    v.buildReleaseOnReturn();
             }
             else {
                 assert n.flags().isNative();
@@ -144,11 +156,64 @@ public class JLangProcedureDeclExt extends JLangExt {
             }
         };
 
-        v.utils.buildFunc(n.position(), funcName, debugName, retType, argTypes, buildBody);
+        if (pi.flags().isSynchronized()) {
+            // Synchronized methods acquire the monitor in their own prologue and release it
+            // in their epilogue, so that call sites need no locking code. The method body is
+            // emitted as a separate function that callers already holding the monitor can
+            // call directly (see JLangCallExt).
+            String unsyncName = v.mangler.procUnsynchronized(pi);
+            v.utils.buildFunc(n.position(), unsyncName, debugName, retType, argTypes, () -> {
+                v.setSynchronizedMethod((MethodInstance) pi);
+                buildBody.run();
+            });
+            LLVMValueRef unsyncFunc = LLVMGetNamedFunction(v.mod, unsyncName);
+            LLVMSetLinkage(unsyncFunc, LLVMInternalLinkage);
+
+            v.utils.buildFunc(n.position(), funcName, debugName, retType, argTypes,
+                    () -> buildSynchronizedWrapper(v, unsyncFunc));
+        }
+        else {
+            v.utils.buildFunc(n.position(), funcName, debugName, retType, argTypes, buildBody);
+        }
 
         return n;
     }
 
+    private static boolean hasFinalInstanceFields(ClassType ct) {
+        return ct.fields().stream().anyMatch(fi -> fi.flags().isFinal() && !fi.flags().isStatic());
+    }
+
+    /**
+     * Builds the body of a synchronized method, which calls the
+     * unsynchronized body {@code unsyncFunc} while holding the monitor.
+     */
+    protected void buildSynchronizedWrapper(LLVMTranslator v, LLVMValueRef unsyncFunc) {
+        ProcedureDecl n = (ProcedureDecl) node();
+        ProcedureInstance pi = n.procedureInstance();
+        ClassType ct = pi.container().toClass();
+
+        LLVMValueRef syncObj;
+        if (pi.flags().isStatic()) {
+            v.utils.buildClassLoadCheck(ct);
+            syncObj = v.utils.loadClassObject(ct);
+        }
+        else {
+            syncObj = LLVMGetParam(v.currFn(), 0);
+        }
+
+        LLVMValueRef[] args = new LLVMValueRef[LLVMCountParams(v.currFn())];
+        for (int i = 0; i < args.length; ++i)
+            args[i] = LLVMGetParam(v.currFn(), i);
+
+        LLVMValueRef res = buildSynchronizedCall(v, syncObj, unsyncFunc, args);
+        if (res == null) {
+            LLVMBuildRetVoid(v.builder);
+        }
+        else {
+            LLVMBuildRet(v.builder, res);
+        }
+    }
+
     /**
      * Builds the trampoline necessary to be able to call this function from native code.
      *
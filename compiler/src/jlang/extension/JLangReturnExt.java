@@ -38,6 +38,9 @@ public class JLangReturnExt extends JLangExt {
             retVal = LLVMBuildLoad(v.builder, retSlot, "load.ret.finally");
         }
 
+        // Publish final fields before returning from a constructor.
+        v.buildReleaseOnReturn();
+
         LLVMValueRef res = retVal != null
                 ? LLVMBuildRet(v.builder, retVal)
                 : LLVMBuildRetVoid(v.builder);
@@ -25,11 +25,12 @@ public class JLangSourceFileExt extends JLangExt {
 
     @Override
     public LLVMTranslator enterTranslateLLVM(LLVMTranslator v) {
-        // Add a calloc declaration to the current module (declare i8* @GC_malloc(i64)).
+        // Add calloc declarations to the current module (declare i8* @GC_malloc(i64)).
         LLVMTypeRef retType = v.utils.ptrTypeRef(v.utils.i8());
         LLVMTypeRef sizeType = v.utils.llvmPtrSizedIntType();
         LLVMTypeRef funcType = v.utils.functionType(retType, sizeType);
         LLVMAddFunction(v.mod, Constants.CALLOC, funcType);
+        LLVMAddFunction(v.mod, Constants.CALLOC_POINTER_FREE, funcType);
 
         return v;
     }
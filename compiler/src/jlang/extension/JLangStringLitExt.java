@@ -45,12 +45,14 @@ public class JLangStringLitExt extends JLangExt {
         LLVMValueRef arrStruct = v.utils.buildConstStruct(length, elemSize);
         List<LLVMValueRef> charTranslated = new ArrayList<>();
 
-        LLVMValueRef sync_vars = LLVMConstNull(v.utils.i8Ptr());
-
         for (char c : chars)
             charTranslated.add(LLVMConstInt(v.utils.intType(16), c, 0));
         LLVMValueRef[] structBody =
-                Stream.concat(Stream.of(dvGlobal, sync_vars, arrStruct), charTranslated.stream())
+                Stream.of(
+                        Stream.of(v.obj.buildConstHeader(dvGlobal)),
+                        Stream.of(arrStruct),
+                        charTranslated.stream())
+                        .flatMap(s -> s)
                         .toArray(LLVMValueRef[]::new);
 
         LLVMValueRef charArray = v.utils.buildConstStruct(structBody);
@@ -63,7 +65,9 @@ public class JLangStringLitExt extends JLangExt {
         LLVMValueRef dvString = v.dv.getDispatchVectorFor(v.ts.String());
 
         LLVMValueRef[] stringLitBody =
-                Stream.of(dvString, sync_vars, LLVMConstBitCast(stringLit, v.utils.toLL(arrayType)))
+                Stream.concat(
+                        Stream.of(v.obj.buildConstHeader(dvString)),
+                        Stream.of(LLVMConstBitCast(stringLit, v.utils.toLL(arrayType))))
                         .toArray(LLVMValueRef[]::new);
 
         LLVMValueRef string = v.utils.buildConstStruct(stringLitBody);
@@ -45,10 +45,18 @@ public class JLangSwitchExt extends JLangExt {
     //     throw new NullPointerException();
     //
     // var i = 0;
-    // if (s.equals(s1))
-    //     i = 1;
-    // if (s.equals(sn))
-    //     i = n;
+    // switch (s.hashCode()) {
+    //     case hash(s1):
+    //         if (s.equals(s1))
+    //             i = 1;
+    //         else if (s.equals(sk)) // Where hash(sk) == hash(s1).
+    //             i = k;
+    //         break;
+    //     case hash(sn):
+    //         if (s.equals(sn))
+    //             i = n;
+    //         break;
+    // }
     //
     // switch (i) {
     //     case 1:
@@ -58,6 +66,10 @@ public class JLangSwitchExt extends JLangExt {
     //     default:
     //         ...
     // }
+    //
+    // The String#hashCode formula is specified in the String API documentation,
+    // so hashes of case labels are computed at compile time. This way each
+    // lookup calls equals only on labels with a matching hash.
     protected Node desugarStringSwitch(Switch n, DesugarLocally v) {
         assert n.expr().type().isSubtype(v.ts.String());
         Position pos = n.position();
@@ -83,7 +95,8 @@ public class JLangSwitchExt extends JLangExt {
         // Switch on case index instead of string value.
         n = n.expr(copy(idx));
 
-        // Assign case index based on string value.
+        // Assign case indices, and group them by the hash code of their label.
+        Map<Integer, List<Stmt>> buckets = new LinkedHashMap<>();
         int counter = 0;
         List<SwitchElement> elems = new ArrayList<>(n.elements());
         for (int i = 0; i < elems.size(); ++i) {
@@ -95,10 +108,13 @@ public class JLangSwitchExt extends JLangExt {
 
                 // Assign case index if strings equal.
                 assert c.expr() != null;
+                String label = (String) lang().constantValue(c.expr(), lang());
                 Expr equal = v.tnf.Call(
                         pos, copy(str), "equals", v.ts.String(), v.ts.Boolean(), c.expr());
                 IntLit val = (IntLit) v.nf.IntLit(pos, IntLit.INT, ++counter).type(v.ts.Int());
-                stmts.add(v.tnf.If(equal, v.tnf.EvalAssign(copy(idx), copy(val))));
+                Stmt assign = v.tnf.EvalAssign(copy(idx), copy(val));
+                buckets.computeIfAbsent(label.hashCode(), (h) -> new ArrayList<>())
+                        .add(v.tnf.If(equal, assign));
 
                 // Update case value.
                 c = c.expr(copy(val)).value(val.value());
@@ -107,6 +123,26 @@ public class JLangSwitchExt extends JLangExt {
         }
         n = n.elements(elems);
 
+        // Dispatch on the hash code of the string.
+        if (!buckets.isEmpty()) {
+            List<SwitchElement> hashElems = new ArrayList<>();
+            for (Map.Entry<Integer, List<Stmt>> bucket : buckets.entrySet()) {
+                Expr hashLit = v.nf.IntLit(pos, IntLit.INT, bucket.getKey()).type(v.ts.Int());
+                hashElems.add(v.nf.Case(pos, hashLit).value(bucket.getKey()));
+
+                // Chain the equality checks for colliding labels.
+                List<Stmt> checks = bucket.getValue();
+                Stmt chain = null;
+                for (int i = checks.size() - 1; i >= 0; --i) {
+                    If check = (If) checks.get(i);
+                    chain = chain == null ? check : check.alternative(chain);
+                }
+                hashElems.add(v.nf.SwitchBlock(pos, Arrays.asList(chain, v.nf.Break(pos))));
+            }
+            Expr hash = v.tnf.Call(pos, copy(str), "hashCode", v.ts.String(), v.ts.Int());
+            stmts.add(v.nf.Switch(pos, hash, hashElems));
+        }
+
         stmts.add(n);
         return v.nf.Block(pos, stmts);
     }
@@ -3,6 +3,7 @@
 package jlang.extension;
 
 import jlang.ast.JLangExt;
+import jlang.extension.JLangTryExt.ExceptionFrame;
 import jlang.util.Constants;
 import jlang.visit.LLVMTranslator;
 import org.bytedeco.javacpp.LLVM.LLVMBasicBlockRef;
@@ -11,8 +12,7 @@ import org.bytedeco.javacpp.LLVM.LLVMValueRef;
 import polyglot.ast.Node;
 
 import static jlang.util.Constants.JNI_ENV_VAR_NAME;
-import static org.bytedeco.javacpp.LLVM.LLVMBuildBitCast;
-import static org.bytedeco.javacpp.LLVM.LLVMTypeOf;
+import static org.bytedeco.javacpp.LLVM.*;
 
 public class JLangSynchronizedExt extends JLangExt {
     private static boolean printedWarning = false;
@@ -46,4 +46,58 @@ public class JLangSynchronizedExt extends JLangExt {
         LLVMValueRef env = v.utils.getGlobal(JNI_ENV_VAR_NAME, v.utils.jniEnvType());
         v.utils.buildProcCall(monitorFunc, env, cast);
     }
+
+    /**
+     * Calls {@code func} with {@code args} while holding the monitor of {@code syncObj}.
+     * The monitor is released whether the call returns normally or throws.
+     *
+     * It will emit the following code:
+     *  MonitorEnter(syncObj);
+     *  try { res = func(args); }
+     *  finally { MonitorExit(syncObj); }
+     *
+     * @return the result of the call, or null if {@code func} returns void.
+     */
+    public static LLVMValueRef buildSynchronizedCall(
+            LLVMTranslator v, LLVMValueRef syncObj, LLVMValueRef func, LLVMValueRef... args) {
+        LLVMBasicBlockRef lpadOuter = v.currLandingPad();
+        LLVMBasicBlockRef lpad = v.utils.buildBlock("lpad.sync");
+
+        // Enter the monitor before pushing the exception frame, so that
+        // we never release a monitor that we failed to acquire.
+        buildMonitorFunc(v, Constants.MONITOR_ENTER, syncObj);
+
+        v.pushExceptionFrame(new ExceptionFrame(v, lpad, null));
+        LLVMTypeRef funcType = LLVMGetElementType(LLVMTypeOf(func));
+        LLVMValueRef res = null;
+        if (LLVMGetTypeKind(LLVMGetReturnType(funcType)) == LLVMVoidTypeKind) {
+            v.utils.buildProcCall(func, args);
+        } else {
+            res = v.utils.buildFunCall(func, args);
+        }
+        v.popExceptionFrame();
+
+        buildMonitorFunc(v, Constants.MONITOR_EXIT, syncObj);
+        LLVMBasicBlockRef end = LLVMGetInsertBlock(v.builder);
+
+        // Release the monitor and rethrow if the call throws.
+        LLVMPositionBuilderAtEnd(v.builder, lpad);
+        LLVMTypeRef lpadT = v.utils.structType(v.utils.i8Ptr(), v.utils.i32());
+        LLVMValueRef personalityFunc = v.utils.getFunction(
+                Constants.PERSONALITY_FUNC,
+                v.utils.functionType(LLVMInt32TypeInContext(v.context)));
+        LLVMValueRef lpadRes = LLVMBuildLandingPad(
+                v.builder, lpadT, personalityFunc, /*numClauses*/ 1, "lpad.sync.res");
+        LLVMAddClause(lpadRes, LLVMConstNull(v.utils.i8Ptr())); // Catch-all clause.
+        LLVMValueRef exn = LLVMBuildExtractValue(v.builder, lpadRes, 0, "exn");
+
+        buildMonitorFunc(v, Constants.MONITOR_EXIT, syncObj);
+        LLVMValueRef throwExnFunc = v.utils.getFunction(Constants.THROW_EXCEPTION,
+                v.utils.functionType(LLVMVoidTypeInContext(v.context), v.utils.i8Ptr()));
+        v.utils.buildProcCall(lpadOuter, throwExnFunc, exn);
+        LLVMBuildUnreachable(v.builder);
+
+        LLVMPositionBuilderAtEnd(v.builder, end);
+        return res;
+    }
 }
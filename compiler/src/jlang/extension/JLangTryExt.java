@@ -7,8 +7,8 @@ import polyglot.ast.Node;
 import polyglot.ast.Try;
 
 import java.lang.Override;
-import java.util.LinkedHashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
 
 import jlang.ast.JLangExt;
 import jlang.util.Constants;
@@ -65,13 +65,15 @@ public class JLangTryExt extends JLangExt {
         private LLVMBasicBlockRef lpadFinally;
 
         /**
-         * A stack-allocated block address pointing to the basic block we jump to
-         * (using an LLVM indirect jump) after the finally block runs.
+         * A stack-allocated integer identifying the basic block we jump to after the
+         * finally block runs. The identifier is the index of the destination in
+         * {@link #finallyDestBlocks}, and the finally block dispatches on it with a switch.
          * May be null if there is no finally block.
          *
-         * See http://blog.llvm.org/2010/01/address-of-label-and-indirect-branches.html
+         * We avoid blockaddress and indirectbr here, since LLVM will not inline
+         * functions containing indirect branches, and optimizes them poorly.
          */
-        private LLVMValueRef finallyDestAddrVar;
+        private LLVMValueRef finallyDestIdVar;
 
         /**
          * The finally block for this exception frame.
@@ -80,10 +82,10 @@ public class JLangTryExt extends JLangExt {
         private LLVMBasicBlockRef finallyBlock;
 
         /**
-         * Set of possible destinations to jump to after the finally block runs.
+         * Possible destinations to jump to after the finally block runs, without duplicates.
          * May be null if there is no finally block.
          */
-        private Set<LLVMBasicBlockRef> finallyDestBlocks;
+        private List<LLVMBasicBlockRef> finallyDestBlocks;
 
         public ExceptionFrame(
                 LLVMTranslator v,
@@ -94,8 +96,8 @@ public class JLangTryExt extends JLangExt {
             this.lpadFinally = lpadFinally;
             if (lpadFinally != null) {
                 finallyBlock = v.utils.buildBlock("finally");
-                finallyDestAddrVar = v.utils.buildAlloca("finally.dest", v.utils.i8Ptr());
-                finallyDestBlocks = new LinkedHashSet<>();
+                finallyDestIdVar = v.utils.buildAlloca("finally.dest", v.utils.i32());
+                finallyDestBlocks = new ArrayList<>();
             }
         }
 
@@ -115,12 +117,37 @@ public class JLangTryExt extends JLangExt {
                 return;
             }
 
-            // Otherwise, store the address of the destination on the stack,
+            // Otherwise, store the identifier of the destination on the stack,
             // and jump to the finally block.
-            LLVMValueRef blockAddr = LLVMBlockAddress(v.currFn(), dest);
-            LLVMBuildStore(v.builder, blockAddr, finallyDestAddrVar);
+            int destId = finallyDestBlocks.indexOf(dest);
+            if (destId < 0) {
+                destId = finallyDestBlocks.size();
+                finallyDestBlocks.add(dest);
+            }
+            LLVMValueRef destIdVal = LLVMConstInt(v.utils.i32(), destId, /*signExtend*/ 0);
+            LLVMBuildStore(v.builder, destIdVal, finallyDestIdVar);
             LLVMBuildBr(v.builder, finallyBlock);
-            finallyDestBlocks.add(dest);
+        }
+
+        /**
+         * Jumps to the destination recorded by {@link #buildFinallyBlockBranchingTo}.
+         * Must be called at the end of the finally block.
+         */
+        private void buildFinallyBlockDispatch() {
+            // Every path into the finally block records a destination, so we can
+            // use the first destination as the default case of the switch.
+            LLVMBasicBlockRef first = finallyDestBlocks.get(0);
+            if (finallyDestBlocks.size() == 1) {
+                LLVMBuildBr(v.builder, first);
+                return;
+            }
+            LLVMValueRef destId = LLVMBuildLoad(v.builder, finallyDestIdVar, "load.finally.dest");
+            LLVMValueRef sw = LLVMBuildSwitch(
+                    v.builder, destId, first, finallyDestBlocks.size() - 1);
+            for (int i = 1; i < finallyDestBlocks.size(); ++i) {
+                LLVMValueRef id = LLVMConstInt(v.utils.i32(), i, /*signExtend*/ 0);
+                LLVMAddCase(sw, id, finallyDestBlocks.get(i));
+            }
         }
     }
 
@@ -261,7 +288,7 @@ public class JLangTryExt extends JLangExt {
         if (n.finallyBlock() != null) {
 
             assert frame.finallyBlock != null
-                    && frame.finallyDestAddrVar != null
+                    && frame.finallyDestIdVar != null
                     && frame.finallyDestBlocks != null;
 
             // Build finally landing pad. This handles exceptions thrown within a catch block,
@@ -284,14 +311,7 @@ public class JLangTryExt extends JLangExt {
             LLVMPositionBuilderAtEnd(v.builder, frame.finallyBlock);
             n.visitChild(n.finallyBlock(), v);
             if (!v.utils.blockTerminated()) {
-                LLVMValueRef destAddr = LLVMBuildLoad(
-                        v.builder, frame.finallyDestAddrVar, "load.finally.dest");
-                LLVMValueRef branch = LLVMBuildIndirectBr(
-                        v.builder, destAddr, frame.finallyDestBlocks.size());
-                for (LLVMBasicBlockRef dest : frame.finallyDestBlocks) {
-                    // LLVM requires that indirect branches declare their possible destinations.
-                    LLVMAddDestination(branch, dest);
-                }
+                frame.buildFinallyBlockDispatch();
             }
         }
 
@@ -12,7 +12,10 @@ import polyglot.util.SerialVersionUID;
 import polyglot.visit.AscriptionVisitor;
 
 import java.lang.Override;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
 
 import jlang.ast.JLangExt;
 import jlang.visit.DesugarLocally;
@@ -53,10 +56,25 @@ public class JLangUnaryExt extends JLangExt {
         boolean pre = op.equals(PRE_INC) || op.equals(PRE_DEC);
         boolean inc = op.equals(PRE_INC) || op.equals(POST_INC);
 
-        // Get the address and value of the expression.
-        LocalDecl ptrFlat = v.tnf.TempSSA("lvalue", v.tnf.AddressOf(n.expr()));
-        Local ptr = v.tnf.Local(pos, ptrFlat);
-        LocalDecl ptrLoadedFlat = v.tnf.TempSSA("load", v.tnf.Load(copy(ptr)));
+        // Get the address and value of the expression. Volatile, long, and double
+        // fields are instead read and written directly, so that both accesses
+        // stay atomic.
+        List<Stmt> stmts = new ArrayList<>();
+        Supplier<Expr> lvalue;
+        LocalDecl ptrLoadedFlat;
+        if (JLangFieldExt.isAtomicAccess(n.expr())) {
+            Field f = JLangFieldExt.hoistTarget((Field) n.expr(), stmts, v);
+            lvalue = () -> JLangFieldExt.copyAccess(f);
+            ptrLoadedFlat = v.tnf.TempSSA("load", lvalue.get());
+        }
+        else {
+            LocalDecl ptrFlat = v.tnf.TempSSA("lvalue", v.tnf.AddressOf(n.expr()));
+            stmts.add(ptrFlat);
+            Local ptr = v.tnf.Local(pos, ptrFlat);
+            lvalue = () -> copy(ptr);
+            ptrLoadedFlat = v.tnf.TempSSA("load", v.tnf.Load(copy(ptr)));
+        }
+        stmts.add(ptrLoadedFlat);
         Local ptrLoaded = v.tnf.Local(pos, ptrLoadedFlat);
 
         // Compute the binop.
@@ -74,10 +92,12 @@ public class JLangUnaryExt extends JLangExt {
         // Store the result and return the correct value.
         LocalDecl resFlat = v.tnf.TempSSA("res", v.tnf.Cast(bin, n.expr().type()));
         Local res = v.tnf.Local(pos, resFlat);
-        Stmt update = v.tnf.EvalAssign(copy(ptr), copy(res));
+        Stmt update = v.tnf.EvalAssign(lvalue.get(), copy(res));
         Expr val = pre ? copy(res) : copy(ptrLoaded);
+        stmts.add(resFlat);
+        stmts.add(update);
 
-        return v.tnf.ESeq(Arrays.asList(ptrFlat, ptrLoadedFlat, resFlat, update), val);
+        return v.tnf.ESeq(stmts, val);
     }
 
     @Override
@@ -17,6 +17,7 @@ import java.util.Map;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
+import static org.bytedeco.javacpp.LLVM.LLVMConstInt;
 import static org.bytedeco.javacpp.LLVM.LLVMConstNull;
 import static org.bytedeco.javacpp.LLVM.LLVMSetInitializer;
 
@@ -68,6 +69,35 @@ public class DispatchVector_c implements DispatchVector {
             }
         },
 
+        INSTANCE_SIZE {
+            // The size of an instance in bytes, so that the runtime can copy objects
+            // without looking up class info. For arrays this is the header size only.
+            @Override
+            LLVMValueRef buildValueRef(DispatchVector_c o, ClassType erased) {
+                return o.v.obj.sizeOf(erased);
+            }
+        },
+
+        IS_ARRAY {
+            // Whether instances are arrays, whose element data follows the header.
+            // Array classes created at runtime copy this from jlang.runtime.Array.
+            @Override
+            LLVMValueRef buildValueRef(DispatchVector_c o, ClassType erased) {
+                boolean isArray = erased.typeEquals(o.v.ts.ArrayObject());
+                return LLVMConstInt(o.v.utils.i8(), isArray ? 1 : 0, /*sign-extend*/ 0);
+            }
+        },
+
+        POINTER_FREE {
+            // Whether instances hold no heap references, so that the runtime allocates
+            // them without GC scanning. Array classes set this from their element type.
+            @Override
+            LLVMValueRef buildValueRef(DispatchVector_c o, ClassType erased) {
+                boolean pointerFree = o.v.obj.isPointerFree(erased);
+                return LLVMConstInt(o.v.utils.i8(), pointerFree ? 1 : 0, /*sign-extend*/ 0);
+            }
+        },
+
         CLASS_METHODS {
             // Method pointers for class method dispatch.
             @Override
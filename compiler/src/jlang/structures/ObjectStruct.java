@@ -31,9 +31,29 @@ public interface ObjectStruct {
     /** Returns the size (in bytes) of the given class. */
     int sizeOfObj(ReferenceType rt);
 
+    /** Returns a human-readable description of the instance layout, with field offsets. */
+    String describeLayout(ReferenceType rt);
+
+    /**
+     * Returns true if instances of the given class hold no references to other
+     * heap objects, so that they can be allocated without being scanned by the
+     * garbage collector. Always false for arrays, which the runtime decides
+     * based on the element type.
+     */
+    boolean isPointerFree(ReferenceType rt);
+
     /** Returns a pointer to the dispatch dispatch vector. */
     LLVMValueRef buildDispatchVectorElementPtr(LLVMValueRef instance, ReferenceType rt);
 
+    /**
+     * Resets the monitor state in the header of a freshly copied object,
+     * so that the copy does not share the monitor of the original.
+     */
+    void buildClearSyncVars(LLVMValueRef instance, ReferenceType rt);
+
+    /** Returns the constant header components for a statically allocated object. */
+    LLVMValueRef[] buildConstHeader(LLVMValueRef dv);
+
     /** Returns a pointer to the specified field. */
     LLVMValueRef buildFieldElementPtr(LLVMValueRef instance, FieldInstance fi);
 
@@ -42,4 +62,10 @@ public interface ObjectStruct {
      * Assumes that the instance given is a Java array.
      */
     LLVMValueRef buildArrayBaseElementPtr(LLVMValueRef instance, ArrayType elemType);
+
+    /**
+     * Returns a pointer to the length of an array.
+     * Assumes that the instance given is a Java array, though its LLVM type may be erased.
+     */
+    LLVMValueRef buildArrayLengthPtr(LLVMValueRef instance);
 }
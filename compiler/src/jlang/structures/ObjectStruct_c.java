@@ -4,7 +4,9 @@ package jlang.structures;
 
 import org.bytedeco.javacpp.LLVM.*;
 
+import jlang.JLangOptions;
 import jlang.visit.LLVMTranslator;
+import polyglot.main.Options;
 import polyglot.types.*;
 import polyglot.util.InternalCompilerError;
 
@@ -20,9 +22,16 @@ public class ObjectStruct_c implements ObjectStruct {
     protected final Map<ClassType, LLVMTypeRef> typeCache = new HashMap<>();
     protected final Map<ReferenceType, List<FieldInstance>> fieldCache = new HashMap<>();
     protected final Map<ReferenceType, List<FieldInstance>> staticFieldCache = new HashMap<>();
-    
+
+    /**
+     * Whether object headers omit the sync vars pointer. The runtime then keeps
+     * monitors in a side table, and must be built with JLANG_COMPACT_HEADERS.
+     */
+    protected final boolean compactHeaders;
+
     public ObjectStruct_c(LLVMTranslator v) {
         this.v = v;
+        this.compactHeaders = ((JLangOptions) Options.global).compactHeaders;
     }
 
     /**
@@ -38,9 +47,9 @@ public class ObjectStruct_c implements ObjectStruct {
         },
 
         SYNC_VARS {
+            // Absent with compact headers.
             @Override
             LLVMTypeRef buildTypeRef(ObjectStruct_c o, ClassType erased) {
-                // TODO: This will eventually be needed for implementing synchronized blocks.
                 return o.v.utils.i8Ptr();
             }
         },
@@ -62,10 +71,25 @@ public class ObjectStruct_c implements ObjectStruct {
         /** Convert a component to an LLVM type reference. */
         abstract LLVMTypeRef buildTypeRef(ObjectStruct_c o, ClassType erased);
 
+        /** Returns the components present in the current header mode, in order. */
+        static List<Layout> components(ObjectStruct_c o) {
+            return o.compactHeaders
+                    ? Arrays.asList(DV, FIELDS)
+                    : Arrays.asList(values());
+        }
+
+        /** Returns the struct index of a component. */
+        static int index(ObjectStruct_c o, Layout c) {
+            int idx = components(o).indexOf(c);
+            if (idx < 0)
+                throw new InternalCompilerError("No " + c + " component in object layout");
+            return idx;
+        }
+
         /** Returns an array of type references for all components of this struct. */
         static LLVMTypeRef[] buildComponentTypeRefs(ObjectStruct_c o, ClassType erased) {
 
-            LLVMTypeRef[] baseComponents = Stream.of(Layout.values())
+            LLVMTypeRef[] baseComponents = components(o).stream()
                     .map((c) -> c.buildTypeRef(o, erased))
                     .toArray(LLVMTypeRef[]::new);
 
@@ -116,19 +140,83 @@ public class ObjectStruct_c implements ObjectStruct {
     @Override
     public int sizeOfObj(ReferenceType rt) {
         List<FieldInstance> instances = getOrComputeInstanceFields(rt);
-        int size = 0;
-        size += v.utils.llvmPtrSize(); // DV
-        size += v.utils.llvmPtrSize(); // Sync_Var
-        for (FieldInstance inst : instances) {
-            size += v.utils.sizeOfType(inst.type());
+        int[] offsets = computeFieldOffsets(instances);
+        int size = instances.isEmpty()
+                ? headerSize()
+                : offsets[offsets.length - 1] + v.utils.sizeOfType(instances.get(instances.size() - 1).type());
+        return alignUp(size, v.utils.llvmPtrSize());
+    }
+
+    @Override
+    public String describeLayout(ReferenceType rt) {
+        ClassType erased = v.utils.erasureLL(rt);
+        List<FieldInstance> instances = getOrComputeInstanceFields(erased);
+        int[] offsets = computeFieldOffsets(instances);
+        StringBuilder sb = new StringBuilder();
+        sb.append("Layout of ").append(erased.fullName())
+                .append(" (").append(sizeOfObj(erased)).append(" bytes)\n");
+        sb.append(String.format("%6d  header (%d bytes)%n", 0, headerSize()));
+        for (int i = 0; i < instances.size(); ++i) {
+            FieldInstance fi = instances.get(i);
+            sb.append(String.format("%6d  %s %s", offsets[i], fi.type(), fi.name()));
+            if (!v.utils.erasureLL(fi.container()).typeEquals(erased))
+                sb.append(" (from ").append(fi.container()).append(")");
+            sb.append(String.format("%n"));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public boolean isPointerFree(ReferenceType rt) {
+        ClassType erased = v.utils.erasureLL(rt);
+        if (erased.typeEquals(v.ts.ArrayObject()))
+            return false;
+        return getOrComputeInstanceFields(erased).stream()
+                .noneMatch((fi) -> v.utils.erasureLL(fi.type()).isReference());
+    }
+
+    private int headerSize() {
+        // Every header component is pointer-sized.
+        return (Layout.components(this).size() - 1) * v.utils.llvmPtrSize();
+    }
+
+    /** Offsets of the given fields, assuming natural alignment as in the LLVM struct. */
+    private int[] computeFieldOffsets(List<FieldInstance> instances) {
+        int[] offsets = new int[instances.size()];
+        int offset = headerSize();
+        for (int i = 0; i < instances.size(); ++i) {
+            int size = v.utils.sizeOfType(instances.get(i).type());
+            offset = alignUp(offset, size);
+            offsets[i] = offset;
+            offset += size;
         }
-        return size;
+        return offsets;
+    }
+
+    private static int alignUp(int offset, int alignment) {
+        return (offset + alignment - 1) / alignment * alignment;
     }
 
     @Override
     public LLVMValueRef buildDispatchVectorElementPtr(LLVMValueRef instance, ReferenceType rt) {
         structTypeRefNonOpaque(rt); // Ensure non-opaque type.
-        return v.utils.buildGEP(instance, 0, Layout.DV.ordinal());
+        return v.utils.buildGEP(instance, 0, Layout.index(this, Layout.DV));
+    }
+
+    @Override
+    public void buildClearSyncVars(LLVMValueRef instance, ReferenceType rt) {
+        if (compactHeaders)
+            return; // Monitors live in a side table, keyed by address.
+        structTypeRefNonOpaque(rt); // Ensure non-opaque type.
+        LLVMValueRef ptr = v.utils.buildGEP(instance, 0, Layout.index(this, Layout.SYNC_VARS));
+        LLVMBuildStore(v.builder, LLVMConstNull(v.utils.i8Ptr()), ptr);
+    }
+
+    @Override
+    public LLVMValueRef[] buildConstHeader(LLVMValueRef dv) {
+        return compactHeaders
+                ? new LLVMValueRef[] {dv}
+                : new LLVMValueRef[] {dv, LLVMConstNull(v.utils.i8Ptr())};
     }
 
     @Override
@@ -139,7 +227,7 @@ public class ObjectStruct_c implements ObjectStruct {
         int idx = getOrComputeInstanceFields(fi.container()).indexOf(fi);
         if (idx < 0)
             throw new InternalCompilerError("Field " + fi + " not found in " + fi.container());
-        return v.utils.buildGEP(instance, 0, Layout.FIELDS.ordinal(), idx);
+        return v.utils.buildGEP(instance, 0, Layout.index(this, Layout.FIELDS), idx);
     }
 
     @Override
@@ -147,12 +235,19 @@ public class ObjectStruct_c implements ObjectStruct {
         structTypeRefNonOpaque(at); // Ensure non-opaque type.
 
         // Go one past the end of the object header (see Layout#buildComponentTypeRefs).
-        int idx = Layout.values().length;
+        int idx = Layout.components(this).size();
         LLVMValueRef baseRaw = v.utils.buildGEP(instance, 0, idx);
         LLVMTypeRef ptrType = v.utils.ptrTypeRef(v.utils.toLL(at.base()));
         return LLVMBuildBitCast(v.builder, baseRaw, ptrType, "cast");
     }
 
+    @Override
+    public LLVMValueRef buildArrayLengthPtr(LLVMValueRef instance) {
+        ClassType arrObj = v.ts.ArrayObject();
+        LLVMValueRef arr = LLVMBuildBitCast(v.builder, instance, v.utils.toLL(arrObj), "cast.array");
+        return buildFieldElementPtr(arr, arrObj.fieldNamed("length"));
+    }
+
     /** Returns an ordered list of all type-erased fields in the given reference type. */
     protected List<FieldInstance> getOrComputeInstanceFields(ReferenceType rt) {
        return getOrComputeFields(rt, false);
@@ -162,6 +257,28 @@ public class ObjectStruct_c implements ObjectStruct {
         return getOrComputeFields(rt, true);
     }
 
+    /**
+     * Orders the instance fields declared in a single class: references first, so that
+     * they are contiguous, then primitives by decreasing size, so that no padding is
+     * needed between them. The sort is stable, so declaration order breaks ties.
+     * Superclass fields always come first, so the layout of a superclass remains
+     * a prefix of the layouts of its subclasses. Classes with a layout mirrored by
+     * the runtime are not reordered (see {@link #hasMirroredLayout}).
+     */
+    protected Comparator<FieldInstance> instanceFieldOrder() {
+        return Comparator
+                .comparing((FieldInstance fi) -> !v.utils.erasureLL(fi.type()).isReference())
+                .thenComparing((fi) -> -v.utils.sizeOfType(fi.type()));
+    }
+
+    /**
+     * Returns true for the classes whose layout the runtime mirrors in rep.h, i.e.,
+     * arrays and strings. Their fields stay in declaration order.
+     */
+    protected boolean hasMirroredLayout(ClassType erased) {
+        return erased.typeEquals(v.ts.ArrayObject()) || erased.typeEquals(v.ts.String());
+    }
+
     /** Returns an ordered list of all type-erased fields in the given reference type. */
     private List<FieldInstance> getOrComputeFields(ReferenceType rt, boolean useStatic) {
         ClassType erased = v.utils.erasureLL(rt);
@@ -179,9 +296,10 @@ public class ObjectStruct_c implements ObjectStruct {
             // Add own fields - filter based on requested type
             Predicate<? super FieldInstance> filter = (useStatic) ? fi -> fi.flags().isStatic() :
             														fi -> !fi.flags().isStatic();
-            erased.fields().stream()
-                    .filter(filter)
-                    .forEach(res::add);
+            Stream<FieldInstance> own = erased.fields().stream().filter(filter);
+            if (!useStatic && !hasMirroredLayout(erased))
+                own = own.sorted(instanceFieldOrder());
+            own.forEach(res::add);
 
             cache.put(erased, res);
         }
@@ -18,6 +18,7 @@ public class Constants {
     public static final String PRIMITIVE_CLASS_OBJECT_SUFFIX = "ClassObject";
 
     public static final String CALLOC = "__GC_malloc";
+    public static final String CALLOC_POINTER_FREE = "__GC_malloc_pointer_free";
     public static final String ENTRY_TRAMPOLINE = "Java_jlang_runtime_MainWrapper_main";
     public static final int LLVM_ADDR_SPACE = 0;
 
@@ -38,7 +39,7 @@ public class Constants {
     public static final String GET_GLOBAL_MUTEX_OBJECT = "getGlobalMutexObject";
   
     public static final Set<String> NON_INVOKE_FUNCTIONS = new HashSet<>(CollectionUtil.list(
-            CALLOC, CREATE_EXCEPTION, EXTRACT_EXCEPTION
+            CALLOC, CALLOC_POINTER_FREE, CREATE_EXCEPTION, EXTRACT_EXCEPTION
     ));
 
     public static final int DEBUG_INFO_VERSION = 3;
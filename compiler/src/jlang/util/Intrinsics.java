@@ -0,0 +1,674 @@
+//Copyright (C) 2018 Cornell University
+
+package jlang.util;
+
+import org.bytedeco.javacpp.LLVM.*;
+import polyglot.ast.Call;
+import polyglot.ast.Cast;
+import polyglot.ast.Expr;
+import polyglot.types.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import jlang.visit.LLVMTranslator;
+
+import static org.bytedeco.javacpp.LLVM.*;
+
+/**
+ * A table of JDK methods that the compiler translates inline, rather than calling.
+ * Methods are keyed by signature, e.g., {@code java.lang.Math.sqrt(double)}.
+ *
+ * Each intrinsic must preserve the Java semantics of the method it replaces.
+ * Intrinsics that only handle a fast path (e.g., an in-bounds array copy) fall back
+ * to emitting the original call otherwise, which lets the JDK implementation throw
+ * the appropriate exception.
+ */
+public class Intrinsics {
+
+    /** Builds the inline translation of a call. */
+    @FunctionalInterface
+    public interface Intrinsic {
+
+        /**
+         * Returns the result of the call {@code n} (or null for void methods),
+         * assuming that its receiver and arguments are already translated.
+         * {@code call} emits the original call at the current insertion point.
+         */
+        LLVMValueRef build(LLVMTranslator v, Call n, Supplier<LLVMValueRef> call);
+    }
+
+    private static final Map<String, Intrinsic> intrinsics = new HashMap<>();
+
+    static {
+        // Math.
+        for (String math : new String[] {"java.lang.Math", "java.lang.StrictMath"}) {
+            add(math + ".sqrt(double)", (v, n, call) -> unary(v, n, "llvm.sqrt.f64"));
+            add(math + ".abs(float)", (v, n, call) -> unary(v, n, "llvm.fabs.f32"));
+            add(math + ".abs(double)", (v, n, call) -> unary(v, n, "llvm.fabs.f64"));
+            for (String t : new String[] {"int", "long"}) {
+                add(math + ".abs(" + t + ")", (v, n, call) -> abs(v, n));
+                add(math + ".min(" + t + "," + t + ")", (v, n, call) -> select(v, n, LLVMIntSLT));
+                add(math + ".max(" + t + "," + t + ")", (v, n, call) -> select(v, n, LLVMIntSGT));
+            }
+        }
+
+        // Bit twiddling.
+        add("java.lang.Integer.bitCount(int)", (v, n, call) -> count(v, n, "llvm.ctpop.i32"));
+        add("java.lang.Long.bitCount(long)", (v, n, call) -> count(v, n, "llvm.ctpop.i64"));
+        add("java.lang.Integer.numberOfLeadingZeros(int)",
+                (v, n, call) -> count(v, n, "llvm.ctlz.i32"));
+        add("java.lang.Long.numberOfLeadingZeros(long)",
+                (v, n, call) -> count(v, n, "llvm.ctlz.i64"));
+        add("java.lang.Integer.numberOfTrailingZeros(int)",
+                (v, n, call) -> count(v, n, "llvm.cttz.i32"));
+        add("java.lang.Long.numberOfTrailingZeros(long)",
+                (v, n, call) -> count(v, n, "llvm.cttz.i64"));
+        add("java.lang.Float.floatToRawIntBits(float)", Intrinsics::bitcast);
+        add("java.lang.Float.intBitsToFloat(int)", Intrinsics::bitcast);
+        add("java.lang.Double.doubleToRawLongBits(double)", Intrinsics::bitcast);
+        add("java.lang.Double.longBitsToDouble(long)", Intrinsics::bitcast);
+        add("java.lang.Short.reverseBytes(short)", (v, n, call) -> unary(v, n, "llvm.bswap.i16"));
+        add("java.lang.Character.reverseBytes(char)",
+                (v, n, call) -> unary(v, n, "llvm.bswap.i16"));
+        add("java.lang.Integer.reverseBytes(int)", (v, n, call) -> unary(v, n, "llvm.bswap.i32"));
+        add("java.lang.Long.reverseBytes(long)", (v, n, call) -> unary(v, n, "llvm.bswap.i64"));
+
+        // Arrays.
+        add("java.lang.System.arraycopy(java.lang.Object,int,java.lang.Object,int,int)",
+                Intrinsics::arraycopy);
+        for (String t : new String[] {
+                "boolean", "byte", "char", "short", "int", "long", "float", "double"}) {
+            add("java.util.Arrays.fill(" + t + "[]," + t + ")", Intrinsics::fill);
+        }
+
+        // Strings.
+        add("java.lang.String.equals(java.lang.Object)", Intrinsics::stringEquals);
+
+        // Unsafe memory access, both at raw addresses and relative to an object.
+        String unsafe = "sun.misc.Unsafe.";
+        String[][] unsafeTypes = {
+                {"Boolean", "boolean"}, {"Byte", "byte"}, {"Short", "short"}, {"Char", "char"},
+                {"Int", "int"}, {"Long", "long"}, {"Float", "float"}, {"Double", "double"},
+                {"Object", "java.lang.Object"}};
+        for (String[] t : unsafeTypes) {
+            String obj = "java.lang.Object,long";
+            add(unsafe + "get" + t[0] + "(" + obj + ")", Intrinsics::unsafeGet);
+            add(unsafe + "put" + t[0] + "(" + obj + "," + t[1] + ")", Intrinsics::unsafePut);
+            add(unsafe + "get" + t[0] + "Volatile(" + obj + ")",
+                    (v, n, call) -> unsafeAtomicGet(v, n, LLVMAtomicOrderingSequentiallyConsistent));
+            add(unsafe + "put" + t[0] + "Volatile(" + obj + "," + t[1] + ")",
+                    (v, n, call) -> unsafeAtomicPut(v, n, LLVMAtomicOrderingSequentiallyConsistent));
+            if (!t[1].equals("boolean") && !t[1].equals("java.lang.Object")) {
+                add(unsafe + "get" + t[0] + "(long)", Intrinsics::unsafeGet);
+                add(unsafe + "put" + t[0] + "(long," + t[1] + ")", Intrinsics::unsafePut);
+            }
+        }
+        for (String t : new String[] {"Int", "Long", "Object"}) {
+            String formal = t.equals("Object") ? "java.lang.Object" : t.toLowerCase();
+            add(unsafe + "putOrdered" + t + "(java.lang.Object,long," + formal + ")",
+                    (v, n, call) -> unsafeAtomicPut(v, n, LLVMAtomicOrderingRelease));
+        }
+        for (String t : new String[] {"Int", "Long", "Object"}) {
+            String formal = t.equals("Object") ? "java.lang.Object" : t.toLowerCase();
+            String obj = "java.lang.Object,long,";
+            add(unsafe + "compareAndSwap" + t + "(" + obj + formal + "," + formal + ")",
+                    Intrinsics::unsafeCompareAndSwap);
+        }
+        add(unsafe + "getAddress(long)", Intrinsics::unsafeGet);
+        add(unsafe + "putAddress(long,long)", Intrinsics::unsafePut);
+        add(unsafe + "copyMemory(java.lang.Object,long,java.lang.Object,long,long)",
+                Intrinsics::unsafeCopyMemory);
+        add(unsafe + "setMemory(java.lang.Object,long,long,byte)", Intrinsics::unsafeSetMemory);
+
+        // Atomic updates, which JDK 7 implements as compare-and-swap retry loops.
+        String atomic = "java.util.concurrent.atomic.";
+        for (String t : new String[] {"Integer", "Long"}) {
+            String cls = atomic + "Atomic" + t + ".";
+            String formal = t.equals("Integer") ? "int" : "long";
+            add(cls + "getAndSet(" + formal + ")",
+                    (v, n, call) -> atomicUpdate(v, n, call, LLVMAtomicRMWBinOpXchg, 0, false));
+            add(cls + "getAndAdd(" + formal + ")",
+                    (v, n, call) -> atomicUpdate(v, n, call, LLVMAtomicRMWBinOpAdd, 0, false));
+            add(cls + "addAndGet(" + formal + ")",
+                    (v, n, call) -> atomicUpdate(v, n, call, LLVMAtomicRMWBinOpAdd, 0, true));
+            add(cls + "getAndIncrement()",
+                    (v, n, call) -> atomicUpdate(v, n, call, LLVMAtomicRMWBinOpAdd, 1, false));
+            add(cls + "getAndDecrement()",
+                    (v, n, call) -> atomicUpdate(v, n, call, LLVMAtomicRMWBinOpAdd, -1, false));
+            add(cls + "incrementAndGet()",
+                    (v, n, call) -> atomicUpdate(v, n, call, LLVMAtomicRMWBinOpAdd, 1, true));
+            add(cls + "decrementAndGet()",
+                    (v, n, call) -> atomicUpdate(v, n, call, LLVMAtomicRMWBinOpAdd, -1, true));
+        }
+        add(atomic + "AtomicReference.getAndSet(java.lang.Object)",
+                (v, n, call) -> atomicUpdate(v, n, call, LLVMAtomicRMWBinOpXchg, 0, false));
+
+        // Cleaners, which back direct and mapped buffers.
+        add("sun.misc.Cleaner.create(java.lang.Object,java.lang.Runnable)",
+                Intrinsics::registerCleaner);
+    }
+
+    private static void add(String signature, Intrinsic intrinsic) {
+        intrinsics.put(signature, intrinsic);
+    }
+
+    /** Returns the intrinsic for the given method, or null if there is none. */
+    public static Intrinsic lookup(LLVMTranslator v, MethodInstance mi) {
+        if (!mi.container().isClass())
+            return null;
+        String args = mi.formalTypes().stream()
+                .map(t -> typeKey(v, t))
+                .collect(Collectors.joining(","));
+        String sig = mi.container().toClass().fullName() + "." + mi.name() + "(" + args + ")";
+        return intrinsics.get(sig);
+    }
+
+    private static String typeKey(LLVMTranslator v, Type t) {
+        t = v.ts.erasureType(t);
+        if (t.isArray())
+            return typeKey(v, t.toArray().base()) + "[]";
+        if (t.isClass())
+            return t.toClass().fullName();
+        return t.toString();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Arithmetic
+    ////////////////////////////////////////////////////////////////////////////
+
+    private static LLVMValueRef arg(LLVMTranslator v, Call n, int i) {
+        return v.getTranslation(n.arguments().get(i));
+    }
+
+    private static LLVMValueRef unary(LLVMTranslator v, Call n, String intrinsic) {
+        LLVMValueRef x = arg(v, n, 0);
+        return buildIntrinsicCall(v, intrinsic, LLVMTypeOf(x), x);
+    }
+
+    private static LLVMValueRef abs(LLVMTranslator v, Call n) {
+        // Like Java, the absolute value of MIN_VALUE is MIN_VALUE.
+        LLVMValueRef x = arg(v, n, 0);
+        LLVMValueRef zero = LLVMConstInt(LLVMTypeOf(x), 0, /*sign-extend*/ 0);
+        LLVMValueRef neg = LLVMBuildSub(v.builder, zero, x, "abs.neg");
+        LLVMValueRef isNeg = LLVMBuildICmp(v.builder, LLVMIntSLT, x, zero, "abs.is.neg");
+        return LLVMBuildSelect(v.builder, isNeg, neg, x, "abs");
+    }
+
+    private static LLVMValueRef select(LLVMTranslator v, Call n, int pred) {
+        LLVMValueRef a = arg(v, n, 0);
+        LLVMValueRef b = arg(v, n, 1);
+        LLVMValueRef cmp = LLVMBuildICmp(v.builder, pred, a, b, "cmp");
+        return LLVMBuildSelect(v.builder, cmp, a, b, n.name());
+    }
+
+    /** Bit counts, which Java always returns as an int. */
+    private static LLVMValueRef count(LLVMTranslator v, Call n, String intrinsic) {
+        LLVMValueRef x = arg(v, n, 0);
+        LLVMValueRef res;
+        if (intrinsic.contains(".ctpop.")) {
+            res = buildIntrinsicCall(v, intrinsic, LLVMTypeOf(x), x);
+        } else {
+            // Java defines the result for zero, so zero is not undefined here.
+            LLVMValueRef zeroUndef = LLVMConstInt(LLVMInt1TypeInContext(v.context), 0, 0);
+            res = buildIntrinsicCall(v, intrinsic, LLVMTypeOf(x), x, zeroUndef);
+        }
+        return LLVMBuildIntCast(v.builder, res, v.utils.i32(), "count");
+    }
+
+    private static LLVMValueRef bitcast(LLVMTranslator v, Call n, Supplier<LLVMValueRef> call) {
+        LLVMTypeRef resType = v.utils.toLL(n.type());
+        return LLVMBuildBitCast(v.builder, arg(v, n, 0), resType, n.name());
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Arrays
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the static type of an argument before it was widened to the formal type.
+     * Only widening casts are stripped; a downcast is checked, so its type is precise.
+     */
+    private static Type staticType(LLVMTranslator v, Expr e) {
+        while (e instanceof Cast) {
+            Expr inner = ((Cast) e).expr();
+            if (!inner.type().isReference() || !v.ts.isSubtypeErased(inner.type(), e.type()))
+                break;
+            e = inner;
+        }
+        return e.type();
+    }
+
+    /**
+     * Returns true if every array whose static element type is the given type
+     * has exactly that element type at run time. Arrays are covariant, so an
+     * Object[] may really be a String[], but a String[] is always a String[].
+     */
+    private static boolean isExactElementType(Type elem) {
+        if (elem.isPrimitive())
+            return true;
+        if (elem.isArray())
+            return isExactElementType(elem.toArray().base());
+        return elem.isClass() && elem.toClass().flags().isFinal();
+    }
+
+    /**
+     * Copies with memmove when no store checks are needed: for primitive arrays of
+     * the same type, when the destination element type is exact and the source
+     * elements are statically assignable to it, or else when the two arrays have
+     * the same class at run time. Otherwise, or if the arguments are null or out
+     * of bounds, calls System.arraycopy.
+     */
+    private static LLVMValueRef arraycopy(LLVMTranslator v, Call n, Supplier<LLVMValueRef> call) {
+        Type srcT = staticType(v, n.arguments().get(0));
+        Type destT = staticType(v, n.arguments().get(2));
+        if (!srcT.isArray() || !destT.isArray())
+            return call.get();
+        Type srcElem = srcT.toArray().base();
+        Type destElem = destT.toArray().base();
+        boolean checkClasses;
+        if (srcElem.isPrimitive() || destElem.isPrimitive()) {
+            if (!srcElem.typeEquals(destElem))
+                return call.get();
+            checkClasses = false;
+        } else {
+            checkClasses = !isExactElementType(destElem)
+                    || !v.ts.isSubtypeErased(srcElem, destElem);
+        }
+
+        LLVMValueRef src = arg(v, n, 0);
+        LLVMValueRef srcPos = arg(v, n, 1);
+        LLVMValueRef dest = arg(v, n, 2);
+        LLVMValueRef destPos = arg(v, n, 3);
+        LLVMValueRef len = arg(v, n, 4);
+
+        LLVMBasicBlockRef checkBounds = v.utils.buildBlock("arraycopy.bounds");
+        LLVMBasicBlockRef copy = v.utils.buildBlock("arraycopy.fast");
+        LLVMBasicBlockRef slow = v.utils.buildBlock("arraycopy.slow");
+        LLVMBasicBlockRef end = v.utils.buildBlock("arraycopy.end");
+
+        LLVMValueRef srcNull = LLVMBuildIsNull(v.builder, src, "src.null");
+        LLVMValueRef destNull = LLVMBuildIsNull(v.builder, dest, "dest.null");
+        LLVMValueRef anyNull = LLVMBuildOr(v.builder, srcNull, destNull, "null");
+        LLVMBuildCondBr(v.builder, anyNull, slow, checkBounds);
+
+        // Each of srcPos, destPos, and len must be non-negative, and both ranges in bounds.
+        // Comparing len against (length - pos) avoids overflow.
+        LLVMPositionBuilderAtEnd(v.builder, checkBounds);
+        LLVMValueRef srcLen = LLVMBuildLoad(v.builder, v.obj.buildArrayLengthPtr(src), "src.len");
+        LLVMValueRef destLen = LLVMBuildLoad(v.builder, v.obj.buildArrayLengthPtr(dest), "dest.len");
+        LLVMValueRef zero = LLVMConstInt(v.utils.i32(), 0, /*sign-extend*/ 0);
+        LLVMValueRef nonNeg = LLVMBuildOr(v.builder, srcPos, destPos, "pos.or");
+        nonNeg = LLVMBuildOr(v.builder, nonNeg, len, "pos.or");
+        LLVMValueRef inBounds = LLVMBuildICmp(v.builder, LLVMIntSGE, nonNeg, zero, "non.neg");
+        LLVMValueRef srcRem = LLVMBuildSub(v.builder, srcLen, srcPos, "src.rem");
+        LLVMValueRef destRem = LLVMBuildSub(v.builder, destLen, destPos, "dest.rem");
+        inBounds = LLVMBuildAnd(v.builder, inBounds,
+                LLVMBuildICmp(v.builder, LLVMIntSLE, len, srcRem, "src.ok"), "in.bounds");
+        inBounds = LLVMBuildAnd(v.builder, inBounds,
+                LLVMBuildICmp(v.builder, LLVMIntSLE, len, destRem, "dest.ok"), "in.bounds");
+        if (checkClasses) {
+            // Arrays of the same class need no store checks. Each array class has
+            // its own dispatch vector, so comparing those compares the classes.
+            LLVMBasicBlockRef checkTypes = v.utils.buildBlock("arraycopy.types");
+            LLVMBuildCondBr(v.builder, inBounds, checkTypes, slow);
+            LLVMPositionBuilderAtEnd(v.builder, checkTypes);
+            LLVMValueRef srcDv = LLVMBuildLoad(v.builder,
+                    v.obj.buildDispatchVectorElementPtr(src, srcT.toArray()), "src.dv");
+            LLVMValueRef destDv = LLVMBuildLoad(v.builder,
+                    v.obj.buildDispatchVectorElementPtr(dest, destT.toArray()), "dest.dv");
+            srcDv = LLVMBuildBitCast(v.builder, srcDv, v.utils.i8Ptr(), "cast");
+            destDv = LLVMBuildBitCast(v.builder, destDv, v.utils.i8Ptr(), "cast");
+            LLVMValueRef sameClass = LLVMBuildICmp(v.builder, LLVMIntEQ, srcDv, destDv, "same.class");
+            LLVMBuildCondBr(v.builder, sameClass, copy, slow);
+        } else {
+            LLVMBuildCondBr(v.builder, inBounds, copy, slow);
+        }
+
+        LLVMPositionBuilderAtEnd(v.builder, copy);
+        LLVMValueRef srcPtr = buildElementPtr(v, src, srcT.toArray(), srcPos);
+        LLVMValueRef destPtr = buildElementPtr(v, dest, destT.toArray(), destPos);
+        LLVMValueRef bytes = buildByteCount(v, len, srcElem);
+        buildIntrinsicCall(v, "llvm.memmove.p0i8.p0i8.i64", LLVMVoidTypeInContext(v.context),
+                destPtr, srcPtr, bytes, alignment(v, srcElem), falseBit(v));
+        LLVMBuildBr(v.builder, end);
+
+        LLVMPositionBuilderAtEnd(v.builder, slow);
+        call.get();
+        v.utils.branchUnlessTerminated(end);
+
+        LLVMPositionBuilderAtEnd(v.builder, end);
+        return null;
+    }
+
+    /**
+     * Fills byte and boolean arrays with memset, and other arrays with a simple
+     * store loop (which LLVM turns into memset when it can). Null arrays go through
+     * the original call, which throws.
+     */
+    private static LLVMValueRef fill(LLVMTranslator v, Call n, Supplier<LLVMValueRef> call) {
+        ArrayType arrT = n.methodInstance().formalTypes().get(0).toArray();
+        Type elem = arrT.base();
+        LLVMValueRef arr = arg(v, n, 0);
+        LLVMValueRef val = arg(v, n, 1);
+
+        LLVMBasicBlockRef fill = v.utils.buildBlock("fill");
+        LLVMBasicBlockRef slow = v.utils.buildBlock("fill.null");
+        LLVMBasicBlockRef end = v.utils.buildBlock("fill.end");
+        LLVMBuildCondBr(v.builder, LLVMBuildIsNull(v.builder, arr, "null"), slow, fill);
+
+        LLVMPositionBuilderAtEnd(v.builder, fill);
+        LLVMValueRef len = LLVMBuildLoad(v.builder, v.obj.buildArrayLengthPtr(arr), "len");
+        LLVMValueRef base = v.obj.buildArrayBaseElementPtr(arr, arrT);
+        if (v.utils.sizeOfType(elem) == 1) {
+            LLVMValueRef byteVal = elem.isBoolean()
+                    ? LLVMBuildZExt(v.builder, val, v.utils.i8(), "fill.val")
+                    : val;
+            LLVMValueRef ptr = LLVMBuildBitCast(v.builder, base, v.utils.i8Ptr(), "cast");
+            LLVMValueRef bytes = LLVMBuildZExt(v.builder, len, v.utils.i64(), "fill.bytes");
+            buildIntrinsicCall(v, "llvm.memset.p0i8.i64", LLVMVoidTypeInContext(v.context),
+                    ptr, byteVal, bytes, alignment(v, elem), falseBit(v));
+            LLVMBuildBr(v.builder, end);
+        }
+        else {
+            LLVMValueRef iVar = v.utils.buildAlloca("fill.i", v.utils.i32());
+            LLVMBuildStore(v.builder, LLVMConstInt(v.utils.i32(), 0, /*sign-extend*/ 0), iVar);
+            LLVMBasicBlockRef head = v.utils.buildBlock("fill.head");
+            LLVMBasicBlockRef body = v.utils.buildBlock("fill.body");
+            LLVMBuildBr(v.builder, head);
+
+            LLVMPositionBuilderAtEnd(v.builder, head);
+            LLVMValueRef i = LLVMBuildLoad(v.builder, iVar, "i");
+            LLVMBuildCondBr(v.builder, LLVMBuildICmp(v.builder, LLVMIntSLT, i, len, "cmp"), body, end);
+
+            LLVMPositionBuilderAtEnd(v.builder, body);
+            LLVMBuildStore(v.builder, val, v.utils.buildGEP(base, i));
+            LLVMValueRef one = LLVMConstInt(v.utils.i32(), 1, /*sign-extend*/ 0);
+            LLVMBuildStore(v.builder, LLVMBuildAdd(v.builder, i, one, "inc"), iVar);
+            LLVMBuildBr(v.builder, head);
+        }
+
+        LLVMPositionBuilderAtEnd(v.builder, slow);
+        call.get();
+        v.utils.branchUnlessTerminated(end);
+
+        LLVMPositionBuilderAtEnd(v.builder, end);
+        return null;
+    }
+
+    private static LLVMValueRef buildElementPtr(
+            LLVMTranslator v, LLVMValueRef arr, ArrayType arrT, LLVMValueRef idx) {
+        LLVMValueRef typed = LLVMBuildBitCast(v.builder, arr, v.utils.toLL(arrT), "cast.array");
+        LLVMValueRef base = v.obj.buildArrayBaseElementPtr(typed, arrT);
+        LLVMValueRef elem = v.utils.buildGEP(base, idx);
+        return LLVMBuildBitCast(v.builder, elem, v.utils.i8Ptr(), "cast");
+    }
+
+    private static LLVMValueRef buildByteCount(LLVMTranslator v, LLVMValueRef len, Type elem) {
+        LLVMValueRef len64 = LLVMBuildZExt(v.builder, len, v.utils.i64(), "len");
+        LLVMValueRef elemSize = LLVMConstInt(v.utils.i64(), v.utils.sizeOfType(elem), 0);
+        return LLVMBuildMul(v.builder, len64, elemSize, "bytes");
+    }
+
+    private static LLVMValueRef alignment(LLVMTranslator v, Type elem) {
+        return LLVMConstInt(v.utils.i32(), v.utils.sizeOfType(elem), /*sign-extend*/ 0);
+    }
+
+    private static LLVMValueRef falseBit(LLVMTranslator v) {
+        return LLVMConstInt(LLVMInt1TypeInContext(v.context), 0, /*sign-extend*/ 0);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Strings
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns true without a call when comparing a string to itself, which is
+     * common for interned literals. A null receiver still goes through the call,
+     * which throws.
+     */
+    private static LLVMValueRef stringEquals(
+            LLVMTranslator v, Call n, Supplier<LLVMValueRef> call) {
+        LLVMValueRef recv = v.getTranslation(n.target());
+        LLVMValueRef other = arg(v, n, 0);
+        LLVMTypeRef resType = v.utils.toLL(n.type());
+
+        LLVMValueRef res = v.utils.buildAlloca("equals", resType);
+        LLVMBasicBlockRef same = v.utils.buildBlock("equals.same");
+        LLVMBasicBlockRef slow = v.utils.buildBlock("equals.call");
+        LLVMBasicBlockRef end = v.utils.buildBlock("equals.end");
+
+        LLVMValueRef recvPtr = LLVMBuildBitCast(v.builder, recv, v.utils.i8Ptr(), "cast");
+        LLVMValueRef otherPtr = LLVMBuildBitCast(v.builder, other, v.utils.i8Ptr(), "cast");
+        LLVMValueRef isSame = LLVMBuildAnd(v.builder,
+                LLVMBuildICmp(v.builder, LLVMIntEQ, recvPtr, otherPtr, "eq"),
+                LLVMBuildIsNotNull(v.builder, recvPtr, "nonnull"),
+                "equals.same");
+        LLVMBuildCondBr(v.builder, isSame, same, slow);
+
+        LLVMPositionBuilderAtEnd(v.builder, same);
+        LLVMBuildStore(v.builder, LLVMConstInt(resType, 1, /*sign-extend*/ 0), res);
+        LLVMBuildBr(v.builder, end);
+
+        LLVMPositionBuilderAtEnd(v.builder, slow);
+        LLVMBuildStore(v.builder, call.get(), res);
+        LLVMBuildBr(v.builder, end);
+
+        LLVMPositionBuilderAtEnd(v.builder, end);
+        return LLVMBuildLoad(v.builder, res, "load.equals");
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Unsafe
+    ////////////////////////////////////////////////////////////////////////////
+
+    // The receiver of these methods is the Unsafe singleton, which is not needed.
+    // Like HotSpot, we do not check addresses: a bad address crashes the program.
+
+    /**
+     * Returns a typed pointer for an Unsafe access whose address is given by the
+     * arguments starting at {@code i}: either a raw address (long), or an object and
+     * an offset. A null object means that the offset is a raw address.
+     */
+    private static LLVMValueRef unsafeAddress(
+            LLVMTranslator v, Call n, int i, LLVMTypeRef type) {
+        LLVMValueRef addr;
+        if (n.methodInstance().formalTypes().get(i).isLong()) {
+            addr = arg(v, n, i);
+        } else {
+            LLVMValueRef base = LLVMBuildPtrToInt(v.builder, arg(v, n, i), v.utils.i64(), "base");
+            addr = LLVMBuildAdd(v.builder, base, arg(v, n, i + 1), "addr");
+        }
+        return LLVMBuildIntToPtr(v.builder, addr, v.utils.ptrTypeRef(type), "unsafe.ptr");
+    }
+
+    /**
+     * Unsafe makes no alignment guarantees for primitive accesses (e.g., reading a
+     * long from the middle of a byte[]), so those are byte-aligned. Reference slots
+     * are always pointer-aligned.
+     */
+    private static int unsafeAlignment(LLVMTranslator v, Type t) {
+        return t.isReference() ? v.utils.llvmPtrSize() : 1;
+    }
+
+    private static LLVMValueRef unsafeGet(LLVMTranslator v, Call n, Supplier<LLVMValueRef> call) {
+        LLVMValueRef ptr = unsafeAddress(v, n, 0, v.utils.toLL(n.type()));
+        LLVMValueRef load = LLVMBuildLoad(v.builder, ptr, "unsafe.get");
+        LLVMSetAlignment(load, unsafeAlignment(v, n.type()));
+        return load;
+    }
+
+    private static LLVMValueRef unsafePut(LLVMTranslator v, Call n, Supplier<LLVMValueRef> call) {
+        List<? extends Type> formals = n.methodInstance().formalTypes();
+        int last = formals.size() - 1;
+        Type t = formals.get(last);
+        LLVMTypeRef type = v.utils.toLL(t);
+        LLVMValueRef val = arg(v, n, last);
+        if (t.isReference())
+            val = LLVMBuildBitCast(v.builder, val, type, "cast");
+        LLVMValueRef store = LLVMBuildStore(v.builder, val, unsafeAddress(v, n, 0, type));
+        LLVMSetAlignment(store, unsafeAlignment(v, t));
+        return null;
+    }
+
+    /**
+     * Volatile accesses are sequentially consistent. Ordered puts (lazySet) are
+     * release stores: earlier writes cannot be reordered after them.
+     * Atomic accesses must be naturally aligned, which holds for field and
+     * array element offsets.
+     */
+    private static LLVMValueRef unsafeAtomicGet(LLVMTranslator v, Call n, int ordering) {
+        LLVMValueRef ptr = unsafeAddress(v, n, 0, v.utils.toLL(n.type()));
+        return v.utils.buildAtomicLoad(ptr, n.type(), ordering, "unsafe.get");
+    }
+
+    private static LLVMValueRef unsafeAtomicPut(LLVMTranslator v, Call n, int ordering) {
+        List<? extends Type> formals = n.methodInstance().formalTypes();
+        int last = formals.size() - 1;
+        Type t = formals.get(last);
+        LLVMValueRef ptr = unsafeAddress(v, n, 0, v.utils.toLL(t));
+        v.utils.buildAtomicStore(arg(v, n, last), ptr, t, ordering);
+        return null;
+    }
+
+    /**
+     * Compare-and-swap is sequentially consistent, as for volatile accesses.
+     * References are exchanged as pointer-sized integers.
+     */
+    private static LLVMValueRef unsafeCompareAndSwap(
+            LLVMTranslator v, Call n, Supplier<LLVMValueRef> call) {
+        Type t = n.methodInstance().formalTypes().get(3);
+        LLVMTypeRef type = unsafeAtomicType(v, t);
+        LLVMValueRef ptr = unsafeAddress(v, n, 0, type);
+        LLVMValueRef expected = toUnsafeAtomic(v, arg(v, n, 2), t, type);
+        LLVMValueRef x = toUnsafeAtomic(v, arg(v, n, 3), t, type);
+        LLVMValueRef cmpxchg = LLVMBuildAtomicCmpXchg(v.builder, ptr, expected, x,
+                LLVMAtomicOrderingSequentiallyConsistent,
+                LLVMAtomicOrderingSequentiallyConsistent, /*singleThread*/ 0);
+        return LLVMBuildExtractValue(v.builder, cmpxchg, 1, "cas.success");
+    }
+
+    private static LLVMTypeRef unsafeAtomicType(LLVMTranslator v, Type t) {
+        return t.isReference() ? v.utils.intType(8 * v.utils.llvmPtrSize()) : v.utils.toLL(t);
+    }
+
+    private static LLVMValueRef toUnsafeAtomic(
+            LLVMTranslator v, LLVMValueRef val, Type t, LLVMTypeRef type) {
+        return t.isReference() ? LLVMBuildPtrToInt(v.builder, val, type, "cast") : val;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Atomics
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Updates the {@code value} field of an AtomicInteger, AtomicLong, or
+     * AtomicReference with a single sequentially consistent atomicrmw, rather than
+     * a compare-and-swap loop. The operand is the argument of the call, or else
+     * {@code delta}. Returns the old value, or the new one if {@code returnNew}.
+     *
+     * The JDK declares these methods final, so they update the field for any
+     * receiver. A null receiver goes through the call, which throws.
+     */
+    private static LLVMValueRef atomicUpdate(
+            LLVMTranslator v, Call n, Supplier<LLVMValueRef> call,
+            int op, long delta, boolean returnNew) {
+        ClassType container = v.utils.erasureLL(n.methodInstance().container());
+        FieldInstance fi = container.fieldNamed("value");
+        if (!n.methodInstance().flags().isFinal() || fi == null || fi.flags().isStatic())
+            return call.get();
+        Type t = v.utils.erasureLL(fi.type());
+        LLVMTypeRef type = unsafeAtomicType(v, t);
+        LLVMTypeRef resType = v.utils.toLL(n.methodInstance().returnType());
+
+        LLVMValueRef recv = LLVMBuildBitCast(
+                v.builder, v.getTranslation(n.target()), v.utils.toLL(container), "cast");
+        LLVMValueRef res = v.utils.buildAlloca("atomic", resType);
+        LLVMBasicBlockRef fast = v.utils.buildBlock("atomic.rmw");
+        LLVMBasicBlockRef slow = v.utils.buildBlock("atomic.call");
+        LLVMBasicBlockRef end = v.utils.buildBlock("atomic.end");
+
+        LLVMBuildCondBr(v.builder, LLVMBuildIsNull(v.builder, recv, "null"), slow, fast);
+
+        LLVMPositionBuilderAtEnd(v.builder, fast);
+        LLVMValueRef ptr = LLVMBuildBitCast(v.builder,
+                v.obj.buildFieldElementPtr(recv, fi), v.utils.ptrTypeRef(type), "cast");
+        LLVMValueRef val = n.arguments().isEmpty()
+                ? LLVMConstInt(type, delta, /*sign-extend*/ 1)
+                : toUnsafeAtomic(v, arg(v, n, 0), t, type);
+        LLVMValueRef old = LLVMBuildAtomicRMW(v.builder, op, ptr, val,
+                LLVMAtomicOrderingSequentiallyConsistent, /*singleThread*/ 0);
+        LLVMValueRef updated = returnNew ? LLVMBuildAdd(v.builder, old, val, "rmw.new") : old;
+        if (t.isReference())
+            updated = LLVMBuildIntToPtr(v.builder, updated, resType, "rmw.old");
+        LLVMBuildStore(v.builder, updated, res);
+        LLVMBuildBr(v.builder, end);
+
+        LLVMPositionBuilderAtEnd(v.builder, slow);
+        LLVMBuildStore(v.builder, call.get(), res);
+        LLVMBuildBr(v.builder, end);
+
+        LLVMPositionBuilderAtEnd(v.builder, end);
+        return LLVMBuildLoad(v.builder, res, "load.atomic");
+    }
+
+    /** Copies with memmove, since the JDK allows the ranges to overlap. */
+    private static LLVMValueRef unsafeCopyMemory(
+            LLVMTranslator v, Call n, Supplier<LLVMValueRef> call) {
+        LLVMValueRef src = unsafeAddress(v, n, 0, v.utils.i8());
+        LLVMValueRef dest = unsafeAddress(v, n, 2, v.utils.i8());
+        buildIntrinsicCall(v, "llvm.memmove.p0i8.p0i8.i64", LLVMVoidTypeInContext(v.context),
+                dest, src, arg(v, n, 4),
+                LLVMConstInt(v.utils.i32(), 1, /*sign-extend*/ 0), falseBit(v));
+        return null;
+    }
+
+    private static LLVMValueRef unsafeSetMemory(
+            LLVMTranslator v, Call n, Supplier<LLVMValueRef> call) {
+        LLVMValueRef dest = unsafeAddress(v, n, 0, v.utils.i8());
+        buildIntrinsicCall(v, "llvm.memset.p0i8.i64", LLVMVoidTypeInContext(v.context),
+                dest, arg(v, n, 3), arg(v, n, 2),
+                LLVMConstInt(v.utils.i32(), 1, /*sign-extend*/ 0), falseBit(v));
+        return null;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Cleaners
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Registers each new cleaner with the runtime, which runs it once its referent
+     * becomes unreachable. Without this, nothing would ever enqueue a cleaner,
+     * since the runtime does not process references.
+     */
+    private static LLVMValueRef registerCleaner(
+            LLVMTranslator v, Call n, Supplier<LLVMValueRef> call) {
+        LLVMValueRef cleaner = call.get();
+        LLVMTypeRef objTy = v.utils.toLL(v.ts.Object());
+        LLVMTypeRef funcType = v.utils.functionType(LLVMVoidTypeInContext(v.context), objTy);
+        LLVMValueRef function = v.utils.getFunction("RegisterCleaner", funcType);
+        v.utils.buildProcCall(function, LLVMBuildBitCast(v.builder, cleaner, objTy, "cast"));
+        return cleaner;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helpers
+    ////////////////////////////////////////////////////////////////////////////
+
+    /** Calls an LLVM intrinsic, declaring it if necessary. */
+    public static LLVMValueRef buildIntrinsicCall(
+            LLVMTranslator v, String name, LLVMTypeRef retType, LLVMValueRef... args) {
+        LLVMTypeRef[] argTypes = new LLVMTypeRef[args.length];
+        for (int i = 0; i < args.length; ++i)
+            argTypes[i] = LLVMTypeOf(args[i]);
+        LLVMValueRef func = v.utils.getFunction(name, v.utils.functionType(retType, argTypes));
+        if (LLVMGetTypeKind(retType) == LLVMVoidTypeKind) {
+            v.utils.buildProcCall(func, args);
+            return null;
+        }
+        return v.utils.buildFunCall(func, args);
+    }
+}
@@ -50,6 +50,9 @@ public class JLangDesugared extends AbstractGoal {
                 // should not create qualified Special nodes.
                 new DesugarInnerClasses(job, ts, nf),
 
+                // Remove enclosing instance and capture fields that are never read.
+                new VisitorGoal(job, new PruneCaptureFields(job, ts, nf)),
+
                 // Future desugar passes assume that instance initialization code
                 // is called at the beginning of each constructor.
                 new VisitorGoal(job, new DesugarInstanceInitializers(job, ts, nf)),
@@ -57,6 +60,10 @@ public class JLangDesugared extends AbstractGoal {
                 // Translate synchronized keyword to a try-finally block to handle control transfer.
                 new VisitorGoal(job, new DesugarSynchronized(job, ts, nf)),
 
+                // Fuse chains of string concatenations. This needs to see whole
+                // concatenation trees, which local desugar transformations do not.
+                new VisitorGoal(job, new DesugarStringConcat(job, ts, nf)),
+
                 // Local desugar transformations.
                 // It's usually unsafe to run a pass after this one, since
                 // additional passes might create new non-desugared nodes.
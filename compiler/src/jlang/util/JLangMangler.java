@@ -35,6 +35,7 @@ public class JLangMangler {
     private static final String CLASS_STR = "class";
     private static final String CLASS_INFO_STR = "class_info";
     private static final String LOAD_CLASS_STR = "load_class";
+    private static final String UNSYNCHRONIZED_STR = "unsync";
 
     // From the JNI API.
 	private static final String CODE_POINT_ESCAPE = "_0";
@@ -233,6 +234,14 @@ public class JLangMangler {
         return POLYGLOT_PREFIX + "_" + procSuffix(pi, /*abbreviated*/ false, false);
     }
 
+    /**
+     * The body of a synchronized method, which runs without acquiring the monitor.
+     * See {@link jlang.extension.JLangProcedureDeclExt}.
+     */
+    public String procUnsynchronized(ProcedureInstance pi) {
+        return proc(pi) + "_" + UNSYNCHRONIZED_STR;
+    }
+
     public String shortNativeSymbol(ProcedureInstance pi) {
         return JAVA_PREFIX + "_" + procSuffix(pi, /*abbreviated*/ true, true);
     }
@@ -4,6 +4,7 @@ package jlang.util;
 
 import jlang.extension.JLangStringLitExt;
 import jlang.visit.LLVMTranslator;
+import org.bytedeco.javacpp.BytePointer;
 import org.bytedeco.javacpp.PointerPointer;
 import polyglot.ast.Expr;
 import polyglot.ast.Lang;
@@ -15,6 +16,7 @@ import polyglot.types.*;
 import polyglot.util.InternalCompilerError;
 import polyglot.util.Position;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Supplier;
@@ -193,7 +195,8 @@ public class LLVMUtils {
     private LLVMValueRef buildCall(
             String label, LLVMBasicBlockRef lpad, LLVMValueRef func, LLVMValueRef... args) {
         String funcName = LLVMGetValueName(func).getString();
-        if (lpad != null && !Constants.NON_INVOKE_FUNCTIONS.contains(funcName)) {
+        boolean isIntrinsic = funcName.startsWith("llvm."); // Intrinsics cannot be invoked.
+        if (lpad != null && !isIntrinsic && !Constants.NON_INVOKE_FUNCTIONS.contains(funcName)) {
             // Invoke instruction which unwinds to the current landing pad.
             LLVMBasicBlockRef invokeCont = v.utils.buildBlock("invoke.cont");
             LLVMValueRef invoke = LLVMBuildInvoke(
@@ -367,6 +370,43 @@ public class LLVMUtils {
         return res;
     }
 
+    /**
+     * Returns the type used to access Java values of type {@code t} atomically.
+     * LLVM only supports atomic accesses to integers and pointers of at least one
+     * byte, so booleans and floating point values go through integers of the same size.
+     */
+    private LLVMTypeRef atomicAccessType(Type t) {
+        if (t.isBoolean() || t.isFloat() || t.isDouble())
+            return intType(8 * sizeOfType(t));
+        return toLL(t);
+    }
+
+    /** Loads a Java value of type {@code t} from {@code ptr} atomically. */
+    public LLVMValueRef buildAtomicLoad(LLVMValueRef ptr, Type t, int ordering, String name) {
+        LLVMTypeRef accessType = atomicAccessType(t);
+        LLVMValueRef accessPtr = LLVMBuildBitCast(v.builder, ptr, ptrTypeRef(accessType), "cast");
+        LLVMValueRef load = LLVMBuildLoad(v.builder, accessPtr, name);
+        LLVMSetOrdering(load, ordering);
+        LLVMSetAlignment(load, sizeOfType(t));
+        if (t.isBoolean())
+            return LLVMBuildTrunc(v.builder, load, toLL(t), "trunc");
+        if (t.isFloat() || t.isDouble())
+            return LLVMBuildBitCast(v.builder, load, toLL(t), "cast");
+        return load;
+    }
+
+    /** Stores a Java value of type {@code t} to {@code ptr} atomically. */
+    public void buildAtomicStore(LLVMValueRef val, LLVMValueRef ptr, Type t, int ordering) {
+        LLVMTypeRef accessType = atomicAccessType(t);
+        LLVMValueRef accessPtr = LLVMBuildBitCast(v.builder, ptr, ptrTypeRef(accessType), "cast");
+        LLVMValueRef accessVal = t.isBoolean()
+                ? LLVMBuildZExt(v.builder, val, accessType, "zext")
+                : LLVMBuildBitCast(v.builder, val, accessType, "cast");
+        LLVMValueRef store = LLVMBuildStore(v.builder, accessVal, accessPtr);
+        LLVMSetOrdering(store, ordering);
+        LLVMSetAlignment(store, sizeOfType(t));
+    }
+
     /** Convenience function for appending basic blocks to the current function. */
     public LLVMBasicBlockRef buildBlock(String name) {
         return LLVMAppendBasicBlockInContext(v.context, v.currFn(), name);
@@ -797,8 +837,11 @@ public class LLVMUtils {
         return v.utils.buildGEP(global, 0, 0);
     }
 
+    /** Returns a pointer to a NUL-terminated, UTF-8 encoded copy of {@code str}. */
     public LLVMValueRef buildGlobalCStr(String str) {
-        LLVMValueRef val = LLVMConstStringInContext(v.context, str, str.length(), 0);
+        // The length is in bytes, which differs from str.length() for non-ASCII names.
+        byte[] utf8 = str.getBytes(StandardCharsets.UTF_8);
+        LLVMValueRef val = LLVMConstStringInContext(v.context, new BytePointer(utf8), utf8.length, 0);
         LLVMValueRef global = buildAnonGlobal(val, true);
         return v.utils.buildGEP(global, 0, 0);
     }
@@ -0,0 +1,191 @@
+//Copyright (C) 2018 Cornell University
+
+package jlang.visit;
+
+import polyglot.ast.*;
+import polyglot.types.Type;
+import polyglot.types.TypeSystem;
+import polyglot.util.Position;
+import polyglot.visit.NodeVisitor;
+
+import jlang.ast.AddressOf;
+
+/**
+ * Folds compile-time constant expressions (JLS 15.28) into literals, and prunes
+ * conditional expressions and statements guarded by constant conditions.
+ *
+ * References to constant variables are inlined (JLS 13.1), so they need neither a load
+ * nor a class initialization check (JLS 12.4.1). For example, a guard such as
+ * {@code if (Config.TRACE)} becomes {@code if (false)}, and the guarded statement
+ * is dropped entirely.
+ */
+public class ConstantFold extends NodeVisitor {
+
+    protected TypeSystem ts;
+    protected NodeFactory nf;
+
+    public ConstantFold(TypeSystem ts, NodeFactory nf) {
+        super(nf.lang());
+        this.ts = ts;
+        this.nf = nf;
+    }
+
+    @Override
+    public Node leave(Node parent, Node old, Node n, NodeVisitor v) {
+        if (n instanceof Expr && !isLValue(parent, old)) {
+            return foldExpr((Expr) n);
+        }
+        if (n instanceof If) {
+            return pruneIf((If) n);
+        }
+        return n;
+    }
+
+    /** Returns true if {@code n} is used as an lvalue by {@code parent}. */
+    protected boolean isLValue(Node parent, Node n) {
+        if (parent instanceof Assign)
+            return ((Assign) parent).left() == n;
+        if (parent instanceof Unary) {
+            Unary.Operator op = ((Unary) parent).operator();
+            return op == Unary.PRE_INC || op == Unary.PRE_DEC
+                    || op == Unary.POST_INC || op == Unary.POST_DEC;
+        }
+        return parent instanceof AddressOf;
+    }
+
+    protected Expr foldExpr(Expr e) {
+        if (e instanceof Lit) {
+            return e;
+        }
+
+        if (lang().isConstant(e, lang()) && !hasEvaluatedTarget(e)) {
+            Object value = lang().constantValue(e, lang());
+            Expr lit = literal(e.position(), e.type(), value);
+            if (lit != null) {
+                return lit;
+            }
+        }
+
+        if (e instanceof Conditional) {
+            return pruneConditional((Conditional) e);
+        }
+        if (e instanceof Binary) {
+            return pruneShortCircuit((Binary) e);
+        }
+        return e;
+    }
+
+    /**
+     * Returns a literal of type {@code type} with the given constant value,
+     * or null if the value cannot be represented as a literal.
+     */
+    protected Expr literal(Position pos, Type type, Object value) {
+        Expr lit;
+        if (type.isBoolean() && value instanceof Boolean) {
+            lit = nf.BooleanLit(pos, (Boolean) value);
+        }
+        else if (type.isChar() && value instanceof Character) {
+            lit = nf.CharLit(pos, (Character) value);
+        }
+        else if (type.isChar() && value instanceof Number) {
+            lit = nf.CharLit(pos, (char) ((Number) value).intValue());
+        }
+        else if (type.isFloat() && value instanceof Number) {
+            lit = nf.FloatLit(pos, FloatLit.FLOAT, ((Number) value).floatValue());
+        }
+        else if (type.isDouble() && value instanceof Number) {
+            lit = nf.FloatLit(pos, FloatLit.DOUBLE, ((Number) value).doubleValue());
+        }
+        else if (type.isLongOrLess() && (value instanceof Number || value instanceof Character)) {
+            long val = value instanceof Character
+                    ? (long) (Character) value
+                    : ((Number) value).longValue();
+            lit = nf.IntLit(pos, type.isLong() ? IntLit.LONG : IntLit.INT, val);
+        }
+        else if (type.typeEquals(ts.String()) && value instanceof String) {
+            lit = nf.StringLit(pos, (String) value);
+        }
+        else {
+            return null;
+        }
+        return lit.type(type);
+    }
+
+    /**
+     * Returns true if folding {@code e} would skip evaluating a subexpression,
+     * namely a non-trivial receiver of a static constant field (JLS 15.11.1).
+     */
+    protected boolean hasEvaluatedTarget(Expr e) {
+        boolean[] found = {false};
+        e.visit(new NodeVisitor(lang()) {
+            @Override
+            public Node leave(Node old, Node n, NodeVisitor v) {
+                if (n instanceof Field) {
+                    Receiver target = ((Field) n).target();
+                    if (target instanceof Expr && !(target instanceof Special))
+                        found[0] = true;
+                }
+                return n;
+            }
+        });
+        return found[0];
+    }
+
+    /** Replaces {@code c ? a : b} with {@code a} or {@code b} when {@code c} is constant. */
+    protected Expr pruneConditional(Conditional n) {
+        if (!(n.cond() instanceof BooleanLit))
+            return n;
+        boolean cond = ((BooleanLit) n.cond()).value();
+        Expr taken = cond ? n.consequent() : n.alternative();
+        if (taken.type().typeEquals(n.type()))
+            return taken;
+        if (taken.type().isPrimitive() && n.type().isPrimitive())
+            return nf.Cast(taken.position(), nf.CanonicalTypeNode(taken.position(), n.type()), taken)
+                    .type(n.type());
+        return n;
+    }
+
+    /** Simplifies {@code &&} and {@code ||} when the left operand is constant. */
+    protected Expr pruneShortCircuit(Binary n) {
+        if (!(n.left() instanceof BooleanLit))
+            return n;
+        boolean left = ((BooleanLit) n.left()).value();
+        if (n.operator() == Binary.COND_AND)
+            return left ? n.right() : n.left();
+        if (n.operator() == Binary.COND_OR)
+            return left ? n.left() : n.right();
+        return n;
+    }
+
+    /**
+     * Removes an if statement whose condition is constant false and which has no
+     * else branch. Other if statements with constant conditions are kept, since
+     * replacing them with the taken branch could leave unreachable statements behind.
+     * Their dead branch is skipped during translation instead.
+     */
+    protected Stmt pruneIf(If n) {
+        boolean prunable = n.cond() instanceof BooleanLit
+                && !((BooleanLit) n.cond()).value()
+                && n.alternative() == null
+                && !declaresClass(lang(), n);
+        return prunable ? nf.Empty(n.position()) : n;
+    }
+
+    /**
+     * Returns true if {@code n} contains a class declaration. Such code is never
+     * pruned, since the class may be referenced from elsewhere (e.g., by name).
+     */
+    public static boolean declaresClass(Lang lang, Node n) {
+        boolean[] found = {false};
+        n.visit(new NodeVisitor(lang) {
+            @Override
+            public Node leave(Node old, Node n, NodeVisitor v) {
+                if (n instanceof ClassDecl || n instanceof LocalClassDecl
+                        || (n instanceof New && ((New) n).body() != null))
+                    found[0] = true;
+                return n;
+            }
+        });
+        return found[0];
+    }
+}
@@ -5,11 +5,13 @@ package jlang.visit;
 import polyglot.ast.*;
 import polyglot.ext.jl5.ast.EnumConstant;
 import polyglot.ext.jl5.ast.EnumConstantDecl;
+import polyglot.ext.jl5.ast.ExtendedFor;
 import polyglot.ext.jl5.types.EnumInstance;
 import polyglot.ext.jl5.types.JL5Flags;
 import polyglot.frontend.Job;
 import polyglot.types.ClassType;
 import polyglot.types.Flags;
+import polyglot.types.MethodInstance;
 import polyglot.types.ParsedClassType;
 import polyglot.util.Position;
 
@@ -47,6 +49,31 @@ public class DesugarEnums extends DesugarVisitor {
             return translateEnumSwitchExpr((Expr) n);
         }
 
+        // Calls to Enum#ordinal(), e.g., from EnumMap.
+        if (n instanceof Call && isOrdinalCall((Call) n)) {
+            Call c = (Call) n;
+            return translateOrdinal((Expr) c.target());
+        }
+
+        // Uses of values() that cannot leak the array: for-each loops,
+        // element reads, and length reads.
+        if (n instanceof ExtendedFor) {
+            ExtendedFor ef = (ExtendedFor) n;
+            if (isValuesCall(ef.expr()))
+                return ef.expr(translateValuesCall((Call) ef.expr()));
+        }
+        if (n instanceof ArrayAccess) {
+            ArrayAccess aa = (ArrayAccess) n;
+            boolean isStore = parent instanceof Assign && ((Assign) parent).left() == n;
+            if (!isStore && isValuesCall(aa.array()))
+                return aa.array(translateValuesCall((Call) aa.array()));
+        }
+        if (n instanceof Field) {
+            Field f = (Field) n;
+            if (f.name().equals("length") && isValuesCall(f.target()))
+                return f.target(translateValuesCall((Call) f.target()));
+        }
+
         return n;
     }
 
@@ -55,10 +82,54 @@ public class DesugarEnums extends DesugarVisitor {
         return nf.IntLit(ec.position(), IntLit.INT, ec.enumInstance().ordinal()).type(ts.Int());
     }
 
-    /** Convert an enum switch expression to a call to {@link Enum#ordinal()}. */
+    /** Convert an enum switch expression to a read of the ordinal field. */
     private Expr translateEnumSwitchExpr(Expr expr) {
-        ClassType enumClass = expr.type().toClass().superType().toClass();
-        return tnf.Call(expr.position(), expr, "ordinal", enumClass, ts.Int());
+        return translateOrdinal(expr);
+    }
+
+    private boolean isOrdinalCall(Call c) {
+        MethodInstance mi = c.methodInstance();
+        return mi.name().equals("ordinal") && mi.formalTypes().isEmpty()
+                && !mi.flags().isStatic()
+                && mi.container().isClass()
+                && mi.container().toClass().fullName().equals("java.lang.Enum")
+                && c.target() instanceof Expr;
+    }
+
+    /**
+     * Reads {@code Enum.ordinal} directly, rather than calling {@link Enum#ordinal()}.
+     * The field is final, and a null receiver still faults as the call would.
+     */
+    private Expr translateOrdinal(Expr expr) {
+        // The cast is a bitcast, since the static type is always a subtype of Enum.
+        Expr receiver = tnf.Cast(expr, ts.Enum());
+        return tnf.Field(expr.position(), receiver, "ordinal");
+    }
+
+    /** Returns true if {@code e} is a call to the implicit values() method of an enum. */
+    private boolean isValuesCall(Receiver e) {
+        if (!(e instanceof Call))
+            return false;
+        MethodInstance mi = ((Call) e).methodInstance();
+        return mi.name().equals("values") && mi.formalTypes().isEmpty()
+                && mi.flags().isStatic()
+                && mi.container().isClass()
+                && JL5Flags.isEnum(mi.container().toClass().flags());
+    }
+
+    /**
+     * Replaces a call to values() with a read of the array backing it,
+     * avoiding a clone when the caller cannot modify or leak the result.
+     */
+    private Expr translateValuesCall(Call c) {
+        ClassType enumType = c.methodInstance().container().toClass();
+        return tnf.StaticFieldForced(
+                c.position(), enumType, valuesFieldFlags(),
+                ts.arrayOf(enumType), "values");
+    }
+
+    private static Flags valuesFieldFlags() {
+        return Flags.NONE.Private().Static().Final();
     }
 
     /** Convert enum declaration to class declaration. */
@@ -174,7 +245,7 @@ public class DesugarEnums extends DesugarVisitor {
         // Create field.
         Expr init = nf.ArrayInit(pos, decls).type(ts.arrayOf(enumType));
         return tnf.FieldDecl(
-                pos, enumType, Flags.NONE.Private().Static().Final(),
+                pos, enumType, valuesFieldFlags(),
                 ts.arrayOf(enumType), "values", init
         );
     }
@@ -0,0 +1,165 @@
+//Copyright (C) 2018 Cornell University
+
+package jlang.visit;
+
+import polyglot.ast.*;
+import polyglot.frontend.Job;
+import polyglot.types.ClassType;
+import polyglot.types.Type;
+import polyglot.util.Position;
+
+import java.util.*;
+
+import jlang.ast.JLangNodeFactory;
+import jlang.types.JLangTypeSystem;
+import jlang.util.Constants;
+
+/**
+ * Fuses each tree of non-constant string concatenations into a single presized buffer.
+ * For example, {@code a + ":" + i} becomes
+ * <pre>
+ * {@code
+ * final String part0 = Helper.toString(a);
+ * final int part1 = i;
+ * final char[] buf = new char[Helper.stringSize(part0) + Helper.stringSize(part1) + 1];
+ * int pos = 0;
+ * pos = Helper.putChars(buf, pos, part0);
+ * pos = Helper.putChars(buf, pos, ":");
+ * pos = Helper.putChars(buf, pos, part1);
+ * new String(buf, true)
+ * }
+ * </pre>
+ * so that a chain of n operands allocates one exactly-sized array, rather than
+ * one intermediate string per {@code +}. Integral, char, and boolean operands are
+ * formatted directly into the buffer; floating point operands still go through
+ * {@link String#valueOf(double)}.
+ *
+ * Reference operands are converted to strings as soon as they are evaluated, which
+ * matches the order in which javac appends them to a StringBuilder.
+ *
+ * This cannot be a local desugar transformation because {@link DesugarLocally}
+ * works bottom-up, and so would only ever see one {@code +} at a time.
+ * Concatenations created by later passes (e.g., from {@code s += x}) still
+ * fall back to {@link String#concat(String)}.
+ */
+public class DesugarStringConcat extends DesugarVisitor {
+
+    public DesugarStringConcat(Job job, JLangTypeSystem ts, JLangNodeFactory nf) {
+        super(job, ts, nf);
+    }
+
+    @Override
+    public Node override(Node parent, Node n) {
+        if (!isStringConcat(n))
+            return null;
+
+        Position pos = n.position();
+        ClassType helperType = tnf.typeForName(Constants.RUNTIME_HELPER).toClass();
+
+        List<Expr> operands = new ArrayList<>();
+        flatten((Expr) n, operands);
+
+        // Evaluate each operand once, in order. Afterwards every part is either
+        // a string literal or a local with no side effects.
+        List<Stmt> stmts = new ArrayList<>();
+        List<Expr> parts = new ArrayList<>();
+        for (Expr op : operands) {
+            op = (Expr) visitEdge(n, op);
+            Position opPos = op.position();
+            Type t = op.type();
+            if (t.isNull()) {
+                parts.add(tnf.StringLit(opPos, "null"));
+            }
+            else if (lang().isConstant(op, lang())) {
+                Object val = lang().constantValue(op, lang());
+                parts.add(tnf.StringLit(opPos, String.valueOf(val)));
+            }
+            else {
+                Expr init;
+                if (t.isFloat() || t.isDouble()) {
+                    init = tnf.StaticCall(opPos, ts.String(), ts.String(), "valueOf", op);
+                }
+                else if (t.isReference()) {
+                    init = tnf.StaticCall(opPos, helperType, ts.String(), "toString", op);
+                }
+                else {
+                    init = op;
+                }
+                LocalDecl decl = tnf.TempSSA("part", init);
+                stmts.add(decl);
+                parts.add(tnf.Local(opPos, decl));
+            }
+        }
+
+        // Compute the exact length of the result.
+        int constSize = 0;
+        Expr size = null;
+        for (Expr part : parts) {
+            if (part instanceof StringLit) {
+                constSize += ((StringLit) part).value().length();
+                continue;
+            }
+            Expr partSize = tnf.StaticCall(pos, helperType, ts.Int(), "stringSize", copy(part));
+            size = size == null ? partSize : Add(size, partSize);
+        }
+        Expr constSizeLit = nf.IntLit(pos, IntLit.INT, constSize).type(ts.Int());
+        size = size == null ? constSizeLit : Add(size, constSizeLit);
+
+        // Allocate the buffer and write each part into it.
+        NewArray newBuf = (NewArray) nf.NewArray(
+                pos, nf.CanonicalTypeNode(pos, ts.Char()), Collections.singletonList(size))
+                .type(ts.arrayOf(ts.Char()));
+        LocalDecl buf = tnf.TempSSA("buf", newBuf);
+        LocalDecl offset = tnf.TempVar(
+                pos, "pos", ts.Int(), nf.IntLit(pos, IntLit.INT, 0).type(ts.Int()));
+        stmts.add(buf);
+        stmts.add(offset);
+        for (Expr part : parts) {
+            Expr put = tnf.StaticCall(
+                    pos, helperType, ts.Int(), "putChars",
+                    tnf.Local(pos, buf), tnf.Local(pos, offset), part);
+            stmts.add(tnf.EvalAssign(tnf.Local(pos, offset), put));
+        }
+
+        // The buffer is never written again, so the string can share it.
+        Expr shared = nf.BooleanLit(pos, true).type(ts.Boolean());
+        New str = tnf.New(
+                pos, ts.String(), /*outer*/ null,
+                Arrays.asList(tnf.Local(pos, buf), shared), /*body*/ null);
+        return tnf.ESeq(stmts, str);
+    }
+
+    private boolean isStringConcat(Node n) {
+        if (!(n instanceof Binary))
+            return false;
+        Binary b = (Binary) n;
+        return b.operator().equals(Binary.ADD)
+                && b.type().typeEquals(ts.String())
+                && !lang().isConstant(b, lang());
+    }
+
+    /**
+     * Collects the operands of a concatenation tree in evaluation order.
+     * Iterates down the left spine, since long concatenations are left-deep.
+     */
+    private void flatten(Expr e, List<Expr> operands) {
+        Deque<Expr> rights = new ArrayDeque<>();
+        while (isStringConcat(e)) {
+            Binary b = (Binary) e;
+            rights.push(b.right());
+            e = b.left();
+        }
+        operands.add(e);
+        for (Expr r : rights) {
+            if (isStringConcat(r)) {
+                flatten(r, operands);
+            } else {
+                operands.add(r);
+            }
+        }
+    }
+
+    private Expr Add(Expr l, Expr r) {
+        return nf.Binary(l.position(), l, Binary.ADD, r).type(ts.Int());
+    }
+}
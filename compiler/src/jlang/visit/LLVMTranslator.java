@@ -68,6 +68,19 @@ public class LLVMTranslator extends NodeVisitor {
          */
         final Map<String, LabeledStmtLocs> labelMap = new HashMap<>();
 
+        /**
+         * The synchronized method whose monitor is held for the duration of this
+         * function, or null. Set when building the unsynchronized body of a
+         * synchronized method.
+         */
+        MethodInstance synchronizedMethod;
+
+        /**
+         * Whether returns from this function must be preceded by a release fence.
+         * Set for constructors that initialize final fields.
+         */
+        boolean releaseOnReturn;
+
         FnCtxt(LLVMValueRef fn) {
             this.fn = fn;
         }
@@ -89,6 +102,21 @@ public class LLVMTranslator extends NodeVisitor {
 
     public LLVMValueRef currFn() { return fnCtxts.peek().fn; }
 
+    /** Records that the current function runs while holding the monitor of {@code mi}. */
+    public void setSynchronizedMethod(MethodInstance mi) { fnCtxt().synchronizedMethod = mi; }
+
+    /** Returns the synchronized method whose monitor the current function holds, or null. */
+    public MethodInstance currSynchronizedMethod() { return fnCtxt().synchronizedMethod; }
+
+    /** Records that returns from the current function must be preceded by a release fence. */
+    public void setReleaseOnReturn() { fnCtxt().releaseOnReturn = true; }
+
+    /** Builds a release fence if the current function requires one before returning. */
+    public void buildReleaseOnReturn() {
+        if (fnCtxt().releaseOnReturn)
+            LLVMBuildFence(builder, LLVMAtomicOrderingRelease, /*singleThread*/ 0, "");
+    }
+
     /** A list of all potential entry points (i.e., Java main functions). */
     private Map<String, LLVMValueRef> entryPoints = new HashMap<>();
 
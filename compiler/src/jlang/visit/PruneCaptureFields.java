@@ -0,0 +1,167 @@
+//Copyright (C) 2018 Cornell University
+
+package jlang.visit;
+
+import polyglot.ast.*;
+import polyglot.frontend.Job;
+import polyglot.main.Options;
+import polyglot.types.ClassType;
+import polyglot.types.FieldInstance;
+import polyglot.types.Flags;
+import polyglot.types.ParsedClassType;
+import polyglot.types.Type;
+import polyglot.util.Position;
+import polyglot.visit.NodeVisitor;
+
+import static jlang.visit.DeclareCaptures.CAPTURE_PREFIX;
+import static jlang.visit.DeclareEnclosingInstances.ENCLOSING_STR;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import jlang.JLangOptions;
+import jlang.ast.JLangNodeFactory;
+import jlang.types.JLangTypeSystem;
+
+/**
+ * Removes enclosing instance fields and capture fields that are never read.
+ * {@link DesugarInnerClasses} and {@link DesugarLocalClasses} declare these fields
+ * eagerly, but many classes (e.g., anonymous comparators) never use them. Dropping
+ * them shrinks objects and stops them from keeping outer objects reachable.
+ *
+ * The constructor formals that initialized the removed fields are kept, so that
+ * constructor signatures do not depend on this analysis.
+ *
+ * All reads of these fields are in the same source file as the class declaring them,
+ * since they only occur within (lexically) nested code.
+ *
+ * Optionally, anonymous classes left without any state share a single instance,
+ * created when the class is initialized. This is off by default since it makes
+ * {@code new} return the same object more than once.
+ */
+public class PruneCaptureFields extends DesugarVisitor {
+    static final String SINGLETON_STR = "singleton$";
+
+    /** Synthetic fields that are read somewhere in this job. */
+    private final Set<FieldInstance> used = new HashSet<>();
+
+    /** Anonymous classes whose instances are shared. */
+    private final Set<ClassType> singletons = new HashSet<>();
+
+    public PruneCaptureFields(Job job, JLangTypeSystem ts, JLangNodeFactory nf) {
+        super(job, ts, nf);
+    }
+
+    private static boolean isSynthetic(String fieldName) {
+        return fieldName.equals(ENCLOSING_STR) || fieldName.startsWith(CAPTURE_PREFIX);
+    }
+
+    @Override
+    public Node override(Node parent, Node n) {
+        if (n instanceof SourceFile) {
+            n.visit(new NodeVisitor(nf.lang()) {
+                @Override
+                public Node override(Node parent, Node n) {
+                    // The initializer of a synthetic field only refers to the field itself.
+                    if (n instanceof FieldDecl && isSynthetic(((FieldDecl) n).name()))
+                        return n;
+                    return null;
+                }
+
+                @Override
+                public Node leave(Node parent, Node old, Node n, NodeVisitor v) {
+                    // Stores are initializations, and do not count as uses.
+                    boolean isStore = parent instanceof Assign && ((Assign) parent).left() == n;
+                    if (n instanceof Field && !isStore && isSynthetic(((Field) n).name()))
+                        used.add(((Field) n).fieldInstance().orig());
+                    return n;
+                }
+            });
+        }
+        return null;
+    }
+
+    @Override
+    protected ClassBody leaveClassBody(ParsedClassType ct, ClassBody cb) {
+        Set<String> unused = ct.fields().stream()
+                .filter((fi) -> isSynthetic(fi.name()) && !used.contains(fi.orig()))
+                .map(FieldInstance::name)
+                .collect(Collectors.toSet());
+
+        if (!unused.isEmpty()) {
+            ct.setFields(ct.fields().stream()
+                    .filter((fi) -> !unused.contains(fi.name()))
+                    .collect(Collectors.toList()));
+
+            // Remove the field declarations and the stores in constructors.
+            List<ClassMember> members = cb.members().stream()
+                    .filter((m) -> !(m instanceof FieldDecl
+                            && unused.contains(((FieldDecl) m).name())))
+                    .collect(Collectors.toList());
+            cb = cb.members(members);
+            cb = mapConstructors(cb, (ctor) -> {
+                List<Stmt> stmts = ctor.body().statements().stream()
+                        .filter((s) -> !isStoreTo(s, unused))
+                        .collect(Collectors.toList());
+                return (ConstructorDecl) ctor.body(ctor.body().statements(stmts));
+            });
+        }
+
+        if (isStateless(ct, cb) && ((JLangOptions) Options.global).shareAnonInstances) {
+            // Class initialization is thread-safe, so every thread sees the same instance.
+            Position pos = cb.position();
+            List<Expr> args = ct.constructors().get(0).formalTypes().stream()
+                    .map((t) -> zero(pos, t))
+                    .collect(Collectors.toList());
+            FieldDecl singleton = tnf.FieldDecl(
+                    pos, ct, Flags.NONE.Private().Static().Final(), ct, SINGLETON_STR,
+                    tnf.New(pos, ct, /*outer*/ null, args, /*body*/ null));
+            cb = cb.members(concat(singleton, cb.members()));
+            singletons.add(ct);
+        }
+
+        return super.leaveClassBody(ct, cb);
+    }
+
+    /** Returns true if {@code s} is a store {@code this.f = ...} with {@code f} in names. */
+    private boolean isStoreTo(Stmt s, Set<String> names) {
+        if (!(s instanceof Eval) || !(((Eval) s).expr() instanceof FieldAssign))
+            return false;
+        Field f = (Field) ((FieldAssign) ((Eval) s).expr()).left();
+        return f.target() instanceof Special && names.contains(f.name());
+    }
+
+    /** Returns the default value of type {@code t}. */
+    private Expr zero(Position pos, Type t) {
+        if (t.isReference())
+            return tnf.NullLit(pos);
+        if (t.isBoolean())
+            return nf.BooleanLit(pos, false).type(ts.Boolean());
+        return tnf.Cast(nf.IntLit(pos, IntLit.INT, 0).type(ts.Int()), t);
+    }
+
+    /**
+     * Returns true if instances of {@code ct} cannot be told apart except by identity:
+     * an anonymous class extending Object with no fields and no initializers.
+     */
+    private boolean isStateless(ParsedClassType ct, ClassBody cb) {
+        if (!ct.isAnonymous() || !ts.typeEqualsErased(ct.superType(), ts.Object()))
+            return false;
+        return cb.members().stream()
+                .noneMatch((m) -> m instanceof FieldDecl || m instanceof Initializer);
+    }
+
+    @Override
+    public Node leaveDesugar(Node n) {
+
+        // new A(...) ---> A.singleton$
+        // The constructor arguments are captures and enclosing instances, which are
+        // unused and free of side effects, so they need not be evaluated.
+        if (n instanceof New && singletons.contains(((New) n).type().toClass())) {
+            New nw = (New) n;
+            return tnf.StaticField(nw.position(), nw.type().toClass(), SINGLETON_STR);
+        }
+
+        return n;
+    }
+}
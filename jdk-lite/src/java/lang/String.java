@@ -36,6 +36,16 @@ public final class String {
         return new String(value);
     }
 
+    public int length() {
+        return value.length;
+    }
+
+    public void getChars(int srcBegin, int srcEnd, char dst[], int dstBegin) {
+        for (int i = srcBegin; i < srcEnd; ++i) {
+            dst[dstBegin + i - srcBegin] = value[i];
+        }
+    }
+
     public boolean equals(Object o) {
         if (!(o instanceof String))
             return false;
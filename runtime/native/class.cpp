@@ -12,6 +12,7 @@
 #include "jvm.h"
 #include "rep.h"
 #include "monitor.h"
+#include "native.h"
 #include "threads.h"
 
 #include <algorithm>
@@ -47,6 +48,8 @@ PRIM_CLASS_DEF(char)
 PRIM_CLASS_DEF(boolean)
 PRIM_CLASS_DEF(void)
 
+jclass primitiveComponentNameToClass(const char *name);
+
 #define PRIM_NAME_CHECK(name, prim) if (strcmp(name, prim) == 0) {
 
 #define PRIM_NAME_TO_CLASS(name, cname, prim)                                  \
@@ -240,6 +243,8 @@ const jclass initArrayClass(const char *name) {
     DispatchVector *newCdv = (DispatchVector *)malloc(runtimeArrayCdvSize);
     memcpy(newCdv, runtimeArrayCdv, runtimeArrayCdvSize);
     newCdv->SetClassPtr(new JClassRep *(Unwrap(newKlazz)));
+    newCdv->SetPointerFree(
+        primitiveComponentNameToClass(getComponentName(name)) != NULL);
     newInfo->cdv = (void *)newCdv;
 
     RegisterJavaClass(newKlazz, newInfo);
@@ -474,6 +479,48 @@ jclass GetComponentClass(jclass cls) {
     return NULL;
 }
 
+/**
+ * Returns true if a value whose class is sub can be stored in a variable
+ * (or array element) whose type is the class sup. Primitive classes are
+ * only assignable to themselves.
+ */
+bool IsAssignableClass(jclass sub, jclass sup) {
+    if (sub == sup)
+        return true;
+    if (isPrimitiveClass(sub) || isPrimitiveClass(sup))
+        return false;
+
+    if (isArrayClass(sup)) {
+        return isArrayClass(sub) &&
+               IsAssignableClass(GetComponentClass(sub), GetComponentClass(sup));
+    }
+
+    const JavaClassInfo *supInfo = GetJavaClassInfo(sup);
+    if (supInfo == NULL)
+        return false;
+    if (isArrayClass(sub)) {
+        // See JLS 7, section 4.10.3.
+        return strcmp(supInfo->name, "java.lang.Object") == 0 ||
+               strcmp(supInfo->name, "java.lang.Cloneable") == 0 ||
+               strcmp(supInfo->name, "java.io.Serializable") == 0;
+    }
+
+    for (jclass c = sub; c != NULL;) {
+        if (c == sup)
+            return true;
+        const JavaClassInfo *info = GetJavaClassInfo(c);
+        if (info == NULL)
+            return false;
+        if (supInfo->isIntf) {
+            for (int32_t i = 0; i < info->num_intfs; ++i)
+                if (IsAssignableClass(*info->intfs[i], sup))
+                    return true;
+        }
+        c = info->super_ptr != NULL ? *info->super_ptr : NULL;
+    }
+    return false;
+}
+
 // Convert a jni type signature to its class name.
 // len specifies the length of the signature string including the null
 // terminator. className is required to point to a char array of length len.
@@ -527,8 +574,10 @@ JArrayRep *createArrayHelper(const char *arrType, int *len, int depth) {
         elementSize = arrayRepSize(primComponent);
     }
 
-    JArrayRep *arr =
-        (JArrayRep *)GC_MALLOC(sizeof(JArrayRep) + elementSize * (*len));
+    size_t size = sizeof(JArrayRep) + elementSize * (*len);
+    JArrayRep *arr = (JArrayRep *)(primComponent == NULL
+                                       ? GC_MALLOC(size)
+                                       : __GC_malloc_pointer_free(size));
     arr->Super()->SetCdv(cdv);
     arr->SetLength(*len);
     arr->SetElemSize(elementSize);
@@ -562,8 +611,10 @@ jarray create1DArray(const char *arrType, int len) {
         elementSize = arrayRepSize(primComponent);
     }
 
-    JArrayRep *arr =
-        (JArrayRep *)GC_MALLOC(sizeof(JArrayRep) + elementSize * len);
+    size_t size = sizeof(JArrayRep) + elementSize * len;
+    JArrayRep *arr = (JArrayRep *)(primComponent == NULL
+                                       ? GC_MALLOC(size)
+                                       : __GC_malloc_pointer_free(size));
     arr->Super()->SetCdv(cdv);
     arr->SetLength(len);
     arr->SetElemSize(elementSize);
@@ -130,6 +130,8 @@ bool isPrimitiveClass(jclass cls);
 
 jclass GetComponentClass(jclass cls);
 
+bool IsAssignableClass(jclass sub, jclass sup);
+
 char primitiveNameToComponentName(const char *name);
 
 int arrayRepSize(jclass cls);
@@ -0,0 +1,96 @@
+// Copyright (C) 2019 Cornell University
+
+#include "cleaner.h"
+
+#include "class.h"
+#include "jni_help.h"
+#include "monitor.h"
+
+#include <mutex>
+#include <pthread.h>
+
+#define GC_THREADS
+#include <gc.h>
+#undef GC_THREADS
+
+// A Cleaner is a phantom reference: it must not keep its referent alive, and
+// nothing ever reads the referent through it. So the referent field is
+// hidden from the collector, and a finalizer registered on the referent runs
+// the cleaner instead of the JDK's reference handler thread.
+//
+// Finalizers run Java code, so they cannot run inside an allocation, where
+// the allocating thread may hold runtime locks. Instead the collector only
+// notifies the cleaner thread, which then runs them.
+
+static pthread_mutex_t pendingMutex = PTHREAD_MUTEX_INITIALIZER;
+static pthread_cond_t pendingCond = PTHREAD_COND_INITIALIZER;
+static bool pending = false;
+
+static int32_t referentOffset = -1;
+
+static void NotifyCleanerThread() {
+    ScopedLock lock(&pendingMutex);
+    pending = true;
+    pthread_cond_signal(&pendingCond);
+}
+
+static void *CleanerThread(void *) {
+    for (;;) {
+        {
+            ScopedLock lock(&pendingMutex);
+            while (!pending) {
+                pthread_cond_wait(&pendingCond, &pendingMutex);
+            }
+            pending = false;
+        }
+        GC_invoke_finalizers();
+    }
+    return nullptr;
+}
+
+static void StartCleanerThread() {
+    referentOffset =
+        GetJavaFieldInfo(FindClass("java.lang.ref.Reference"), "referent")
+            ->offset;
+    GC_set_finalize_on_demand(1);
+    GC_set_finalizer_notifier(NotifyCleanerThread);
+
+    pthread_attr_t attr;
+    pthread_attr_init(&attr);
+    pthread_attr_setdetachstate(&attr, PTHREAD_CREATE_DETACHED);
+    pthread_t tid;
+    if (pthread_create(&tid, &attr, CleanerThread, nullptr) != 0) {
+        perror("cannot start cleaner thread");
+        abort();
+    }
+    pthread_attr_destroy(&attr);
+}
+
+static void RunCleaner(void *referent, void *cleaner) {
+    // The cleaner is still reachable from the list of live cleaners, until
+    // clean() removes it.
+    CallJavaInstanceMethod<void>(static_cast<jobject>(cleaner), "clean", "()V",
+                                 nullptr);
+}
+
+extern "C" {
+
+void RegisterCleaner(jobject cleaner) {
+    if (cleaner == nullptr) {
+        return;
+    }
+    static std::once_flag once;
+    std::call_once(once, StartCleanerThread);
+
+    auto *slot = reinterpret_cast<GC_word *>(reinterpret_cast<char *>(cleaner) +
+                                             referentOffset);
+    void *referent = reinterpret_cast<void *>(*slot);
+    if (referent == nullptr) {
+        return;
+    }
+    *slot = GC_HIDE_POINTER(referent);
+    GC_REGISTER_FINALIZER_NO_ORDER(referent, RunCleaner, cleaner, nullptr,
+                                   nullptr);
+}
+
+} // extern "C"
@@ -0,0 +1,14 @@
+// Copyright (C) 2019 Cornell University
+
+#pragma once
+
+#include <jni.h>
+
+extern "C" {
+
+// Registers a newly created sun.misc.Cleaner with the collector, so that it
+// is cleaned once its referent becomes unreachable. The compiler emits a call
+// to this after every call to Cleaner.create; a null cleaner is ignored.
+void RegisterCleaner(jobject cleaner);
+
+} // extern "C"
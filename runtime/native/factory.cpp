@@ -5,6 +5,7 @@
 #include "class.h"
 #include "rep.h"
 #include "monitor.h"
+#include "native.h"
 
 #include <jni.h>
 #include <string.h>
@@ -15,7 +16,6 @@
 #undef GC_THREADS
 
 
-#define ARRAY_CLS "jlang.runtime.Array"
 // The name must match that used in jlang.runtime.Factory,
 // and the mangling and calling conventions must match those used by JLang.
 extern "C" {
@@ -74,33 +74,40 @@ jobject CreateJavaObject(jclass clazz) {
     if (info == NULL || info->cdv == NULL) {
         return NULL;
     }
-    JObjectRep *new_obj = (JObjectRep *)GC_MALLOC(info->obj_size);
+    DispatchVector *cdv = reinterpret_cast<DispatchVector *>(info->cdv);
+    JObjectRep *new_obj =
+        (JObjectRep *)(cdv->IsPointerFree()
+                           ? __GC_malloc_pointer_free(info->obj_size)
+                           : GC_MALLOC(info->obj_size));
     if (new_obj == NULL) {
         return NULL;
     }
-    new_obj->SetCdv(reinterpret_cast<DispatchVector *>(info->cdv));
+    new_obj->SetCdv(cdv);
     return new_obj->Wrap();
 }
 
+// Clones without taking any locks: the size comes from the dispatch vector
+// (plus the element data for arrays), and the copy is allocated the same way
+// as objects and arrays are allocated in the first place.
 jobject CloneJavaObject(jobject obj) {
     // TODO set exception if class is not cloneable
-    ScopedLock lock(Monitor::Instance().globalMutex());
-
     auto objRep = Unwrap(obj);
     auto cdv = objRep->Cdv();
-    auto cls = cdv->Class()->Wrap();
-    auto info = GetJavaClassInfo(cls);
-    int size = 0;
-    jobject new_obj;
-    if (isArrayClass(cls) || strcmp(info->name, ARRAY_CLS) == 0) {
+    size_t size = cdv->ObjSize();
+    if (cdv->IsArray()) {
         JArrayRep *array = Unwrap(reinterpret_cast<jarray>(obj));
-        // info-> obj_size == sizeof(JArrayRep)
-        size = info->obj_size + (array->Length() * array->ElemSize());
-        new_obj = (jobject)GC_MALLOC(size);
-    } else {
-        new_obj = CreateJavaObject(cls);
-        size = info->obj_size;
+        size += static_cast<size_t>(array->Length()) * array->ElemSize();
+    }
+    JObjectRep *new_obj = (JObjectRep *)(cdv->IsPointerFree()
+                                             ? __GC_malloc_pointer_free(size)
+                                             : GC_MALLOC(size));
+    if (new_obj == NULL) {
+        return NULL;
     }
-    memcpy(new_obj, obj, size);
-    return new_obj;
+    memcpy(new_obj, objRep, size);
+#ifndef JLANG_COMPACT_HEADERS
+    // The clone gets its own monitor, created lazily on first use.
+    new_obj->SetSyncVars(nullptr);
+#endif
+    return new_obj->Wrap();
 }
@@ -20,8 +20,7 @@ void InitializeMainThread() {
     FindClass("java.lang.Class");
 
     // setup currentThread for main thread
-    currentThread = GetMainThread();
-    Threads::Instance().threads[currentThread].threadStatus = true;
+    Threads::Instance().attachMainThread(GetMainThread());
 
     // initialize the system class
     Polyglot_java_lang_System_initializeSystemClass__();
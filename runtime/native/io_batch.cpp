@@ -0,0 +1,534 @@
+// Copyright (C) 2019 Cornell University
+
+#include "io_batch.h"
+
+#include "class.h"
+#include "exception.h"
+#include "factory.h"
+#include "helper.h"
+#include "monitor.h"
+#include "rep.h"
+
+#include <algorithm>
+#include <atomic>
+#include <cerrno>
+#include <cstdlib>
+#include <cstring>
+#include <deque>
+#include <limits>
+#include <fcntl.h>
+#include <linux/io_uring.h>
+#include <string>
+#include <sys/mman.h>
+#include <sys/stat.h>
+#include <sys/syscall.h>
+#include <sys/uio.h>
+#include <unistd.h>
+#include <vector>
+#include <pthread.h>
+
+#define GC_THREADS
+#include <gc.h>
+#undef GC_THREADS
+
+//
+// io_uring
+//
+
+// Talks to the kernel directly, rather than through liburing, to avoid a
+// build dependency. Reads and writes are submitted as readv and writev,
+// which every io_uring kernel supports.
+class Ring {
+  public:
+    Ring(const Ring &ring) = delete;
+    Ring &operator=(const Ring &ring) = delete;
+
+    // Returns the ring of the calling thread, or null if io_uring is not
+    // available.
+    static Ring *ForCurrentThread();
+
+    ~Ring();
+
+    void perform(IoRequest *requests, size_t count);
+
+  private:
+    Ring() {}
+    bool init(unsigned entries);
+    void release();
+    int enter(unsigned toSubmit, unsigned minComplete);
+
+    bool tried = false;
+    int fd = -1;
+    void *sqRing = MAP_FAILED;
+    void *cqRing = MAP_FAILED;
+    size_t sqRingSize = 0;
+    size_t cqRingSize = 0;
+    io_uring_sqe *sqes = static_cast<io_uring_sqe *>(MAP_FAILED);
+    size_t sqesSize = 0;
+
+    unsigned sqEntries = 0;
+    unsigned *sqTail = nullptr;
+    unsigned *sqMask = nullptr;
+    unsigned *sqArray = nullptr;
+    unsigned *cqHead = nullptr;
+    unsigned *cqTail = nullptr;
+    unsigned *cqMask = nullptr;
+    io_uring_cqe *cqes = nullptr;
+};
+
+static constexpr unsigned kRingEntries = 256;
+
+// Whether io_uring works here; decided by the first thread to try it.
+static std::atomic<int> ringSupport{-1};
+
+Ring *Ring::ForCurrentThread() {
+    static thread_local Ring ring;
+    if (ring.tried) {
+        return ring.fd >= 0 ? &ring : nullptr;
+    }
+    ring.tried = true;
+    if (ringSupport == -1) {
+        const char *env = getenv("JLANG_IO_URING");
+        if (env != nullptr && strcmp(env, "0") == 0) {
+            ringSupport = 0;
+        }
+    }
+    if (ringSupport == 0) {
+        return nullptr;
+    }
+    bool ok = ring.init(kRingEntries);
+    if (!ok) {
+        ring.release();
+    }
+    if (ringSupport == -1) {
+        ringSupport = ok ? 1 : 0;
+    }
+    return ok ? &ring : nullptr;
+}
+
+template <typename T> static T *RingField(void *ring, uint32_t offset) {
+    return reinterpret_cast<T *>(static_cast<char *>(ring) + offset);
+}
+
+bool Ring::init(unsigned entries) {
+    io_uring_params params;
+    memset(&params, 0, sizeof(params));
+    fd = static_cast<int>(syscall(__NR_io_uring_setup, entries, &params));
+    if (fd < 0) {
+        // ENOSYS on old kernels, and EPERM where it is disabled.
+        return false;
+    }
+
+    sqRingSize = params.sq_off.array + params.sq_entries * sizeof(unsigned);
+    cqRingSize = params.cq_off.cqes + params.cq_entries * sizeof(io_uring_cqe);
+    bool single = params.features & IORING_FEAT_SINGLE_MMAP;
+    if (single) {
+        sqRingSize = cqRingSize = std::max(sqRingSize, cqRingSize);
+    }
+    sqRing = mmap(nullptr, sqRingSize, PROT_READ | PROT_WRITE,
+                  MAP_SHARED | MAP_POPULATE, fd, IORING_OFF_SQ_RING);
+    if (sqRing == MAP_FAILED) {
+        return false;
+    }
+    if (single) {
+        cqRing = sqRing;
+    } else {
+        cqRing = mmap(nullptr, cqRingSize, PROT_READ | PROT_WRITE,
+                      MAP_SHARED | MAP_POPULATE, fd, IORING_OFF_CQ_RING);
+        if (cqRing == MAP_FAILED) {
+            return false;
+        }
+    }
+    sqesSize = params.sq_entries * sizeof(io_uring_sqe);
+    sqes = static_cast<io_uring_sqe *>(mmap(nullptr, sqesSize,
+                                            PROT_READ | PROT_WRITE,
+                                            MAP_SHARED | MAP_POPULATE, fd,
+                                            IORING_OFF_SQES));
+    if (sqes == MAP_FAILED) {
+        return false;
+    }
+
+    sqEntries = params.sq_entries;
+    sqTail = RingField<unsigned>(sqRing, params.sq_off.tail);
+    sqMask = RingField<unsigned>(sqRing, params.sq_off.ring_mask);
+    sqArray = RingField<unsigned>(sqRing, params.sq_off.array);
+    cqHead = RingField<unsigned>(cqRing, params.cq_off.head);
+    cqTail = RingField<unsigned>(cqRing, params.cq_off.tail);
+    cqMask = RingField<unsigned>(cqRing, params.cq_off.ring_mask);
+    cqes = RingField<io_uring_cqe>(cqRing, params.cq_off.cqes);
+    return true;
+}
+
+Ring::~Ring() { release(); }
+
+void Ring::release() {
+    if (sqes != MAP_FAILED) {
+        munmap(sqes, sqesSize);
+    }
+    if (cqRing != MAP_FAILED && cqRing != sqRing) {
+        munmap(cqRing, cqRingSize);
+    }
+    if (sqRing != MAP_FAILED) {
+        munmap(sqRing, sqRingSize);
+    }
+    if (fd >= 0) {
+        close(fd);
+    }
+    fd = -1;
+    sqRing = cqRing = sqes = static_cast<io_uring_sqe *>(MAP_FAILED);
+}
+
+int Ring::enter(unsigned toSubmit, unsigned minComplete) {
+    int ret;
+    do {
+        ret = static_cast<int>(syscall(__NR_io_uring_enter, fd, toSubmit,
+                                       minComplete, IORING_ENTER_GETEVENTS,
+                                       nullptr, 0));
+    } while (ret < 0 && errno == EINTR);
+    return ret;
+}
+
+void Ring::perform(IoRequest *requests, size_t count) {
+    // The ring belongs to this thread, so only the kernel reads the
+    // submission tail and writes the completion tail concurrently.
+    std::vector<iovec> iovecs(count);
+    size_t next = 0;
+    // Entries queued in the ring that the kernel has not consumed yet, which
+    // are always the last ones before the tail.
+    size_t pending = 0;
+    size_t inFlight = 0;
+    while (next < count || pending > 0 || inFlight > 0) {
+        unsigned tail = *sqTail;
+        while (next < count && inFlight + pending < sqEntries) {
+            IoRequest &r = requests[next];
+            iovecs[next] = {r.buf, r.len};
+            unsigned index = tail & *sqMask;
+            io_uring_sqe *sqe = &sqes[index];
+            memset(sqe, 0, sizeof(*sqe));
+            sqe->opcode = r.write ? IORING_OP_WRITEV : IORING_OP_READV;
+            sqe->fd = r.fd;
+            sqe->addr = reinterpret_cast<uint64_t>(&iovecs[next]);
+            sqe->len = 1;
+            sqe->off = static_cast<uint64_t>(r.offset);
+            sqe->user_data = next;
+            sqArray[index] = index;
+            ++tail;
+            ++pending;
+            ++next;
+        }
+        __atomic_store_n(sqTail, tail, __ATOMIC_RELEASE);
+
+        // The kernel does not wait for completions after a short submission,
+        // so the rest is simply submitted again on the next round.
+        int ret = enter(static_cast<unsigned>(pending), 1);
+        if (ret < 0) {
+            // The kernel consumed none of the pending entries; withdraw and
+            // fail them, and keep waiting for those already in flight.
+            int err = errno;
+            for (size_t i = next - pending; i < next; ++i) {
+                requests[i].result = -err;
+            }
+            __atomic_store_n(sqTail, tail - static_cast<unsigned>(pending),
+                             __ATOMIC_RELEASE);
+            pending = 0;
+        } else {
+            inFlight += ret;
+            pending -= ret;
+        }
+
+        unsigned head = *cqHead;
+        unsigned ready = __atomic_load_n(cqTail, __ATOMIC_ACQUIRE);
+        for (; head != ready; ++head) {
+            io_uring_cqe *cqe = &cqes[head & *cqMask];
+            requests[cqe->user_data].result = cqe->res;
+            --inFlight;
+        }
+        __atomic_store_n(cqHead, head, __ATOMIC_RELEASE);
+    }
+}
+
+//
+// Worker threads
+//
+
+// Performs a single request, restarting it if interrupted by a signal.
+static void performOne(IoRequest &r) {
+    ssize_t ret;
+    do {
+        ret = r.write ? pwrite(r.fd, r.buf, r.len, r.offset)
+                      : pread(r.fd, r.buf, r.len, r.offset);
+    } while (ret < 0 && errno == EINTR);
+    r.result = ret < 0 ? -errno : ret;
+}
+
+// A batch being performed by the workers, which the submitting thread
+// waits on.
+struct PoolBatch {
+    pthread_mutex_t mutex = PTHREAD_MUTEX_INITIALIZER;
+    pthread_cond_t done = PTHREAD_COND_INITIALIZER;
+    size_t remaining;
+};
+
+struct PoolTask {
+    IoRequest *request;
+    PoolBatch *batch;
+};
+
+class IoPool {
+  public:
+    static IoPool &Instance() {
+        static IoPool instance;
+        return instance;
+    }
+
+    void perform(IoRequest *requests, size_t count) {
+        if (workers == 0) {
+            // No worker could be started, so nothing would ever finish the
+            // batch.
+            for (size_t i = 0; i < count; ++i) {
+                performOne(requests[i]);
+            }
+            return;
+        }
+        PoolBatch batch;
+        batch.remaining = count;
+        {
+            ScopedLock lock(&mutex);
+            for (size_t i = 0; i < count; ++i) {
+                tasks.push_back({&requests[i], &batch});
+            }
+            pthread_cond_broadcast(&available);
+        }
+        ScopedLock lock(&batch.mutex);
+        while (batch.remaining > 0) {
+            pthread_cond_wait(&batch.done, &batch.mutex);
+        }
+    }
+
+  private:
+    IoPool() {
+        pthread_mutex_init(&mutex, nullptr);
+        pthread_cond_init(&available, nullptr);
+        long cpus = sysconf(_SC_NPROCESSORS_ONLN);
+        int wanted = std::max(4L, std::min(2 * cpus, 32L));
+        pthread_attr_t attr;
+        pthread_attr_init(&attr);
+        pthread_attr_setdetachstate(&attr, PTHREAD_CREATE_DETACHED);
+        for (int i = 0; i < wanted; ++i) {
+            pthread_t tid;
+            if (pthread_create(&tid, &attr, Work, this) == 0) {
+                ++workers;
+            }
+        }
+        pthread_attr_destroy(&attr);
+    }
+
+    static void *Work(void *arg) {
+        auto *pool = static_cast<IoPool *>(arg);
+        for (;;) {
+            PoolTask task;
+            {
+                ScopedLock lock(&pool->mutex);
+                while (pool->tasks.empty()) {
+                    pthread_cond_wait(&pool->available, &pool->mutex);
+                }
+                task = pool->tasks.front();
+                pool->tasks.pop_front();
+            }
+            performOne(*task.request);
+
+            ScopedLock lock(&task.batch->mutex);
+            if (--task.batch->remaining == 0) {
+                pthread_cond_signal(&task.batch->done);
+            }
+        }
+        return nullptr;
+    }
+
+    pthread_mutex_t mutex;
+    pthread_cond_t available;
+    std::deque<PoolTask> tasks;
+    int workers = 0; // Started successfully; fixed after construction.
+};
+
+void PerformIo(IoRequest *requests, size_t count) {
+    if (count == 0) {
+        return;
+    }
+    if (Ring *ring = Ring::ForCurrentThread()) {
+        ring->perform(requests, count);
+    } else {
+        IoPool::Instance().perform(requests, count);
+    }
+}
+
+//
+// jlang.runtime.FileBatch
+//
+
+static void throwIOException(JNIEnv *env, const char *className,
+                             const std::string &msg) {
+    throwNewThrowable(env, FindClass(className), msg.c_str());
+}
+
+static std::string errorMessage(const std::string &what, int err) {
+    return what + " (" + strerror(err) + ")";
+}
+
+// Files are opened, read, and closed a chunk at a time, so that a batch of any
+// size stays well within the limit on open file descriptors.
+static constexpr jsize kFilesPerChunk = kRingEntries;
+
+// Reads the n files at paths into res, starting at index first.
+static void readFileChunk(JNIEnv *env, jstring *paths, jsize n,
+                          jobjectArray res, jsize first) {
+    std::vector<int> fds(n, -1);
+    std::vector<size_t> sizes(n);
+    std::string error;
+    const char *errorClass = "java.io.IOException";
+
+    auto closeAll = [&] {
+        for (int fd : fds) {
+            if (fd >= 0) {
+                close(fd);
+            }
+        }
+    };
+
+    for (jsize i = 0; i < n && error.empty(); ++i) {
+        const char *path = env->GetStringUTFChars(paths[i], nullptr);
+        fds[i] = open(path, O_RDONLY | O_CLOEXEC);
+        struct stat st;
+        if (fds[i] < 0) {
+            int err = errno;
+            error = errorMessage(path, err);
+            // Running out of descriptors says nothing about the file.
+            if (err != EMFILE && err != ENFILE) {
+                errorClass = "java.io.FileNotFoundException";
+            }
+        } else if (fstat(fds[i], &st) < 0) {
+            error = errorMessage(path, errno);
+        } else if (st.st_size > std::numeric_limits<jint>::max()) {
+            // Too large for a Java array.
+            error = std::string(path) + " (File too large)";
+        } else {
+            sizes[i] = static_cast<size_t>(st.st_size);
+        }
+        env->ReleaseStringUTFChars(paths[i], path);
+    }
+    if (!error.empty()) {
+        closeAll();
+        throwIOException(env, errorClass, error);
+    }
+
+    std::vector<char *> data(n);
+    for (jsize i = 0; i < n; ++i) {
+        jbyteArray bytes = CreateJavaByteArray(static_cast<jint>(sizes[i]));
+        POLYGLOT_ARRAY_STORE(res, first + i, bytes);
+        data[i] = static_cast<char *>(Unwrap(bytes)->Data());
+    }
+
+    // Resubmit the rest of any short reads until every file is read.
+    std::vector<size_t> done(n, 0);
+    std::vector<IoRequest> requests;
+    std::vector<jsize> owners;
+    for (;;) {
+        requests.clear();
+        owners.clear();
+        for (jsize i = 0; i < n; ++i) {
+            if (done[i] < sizes[i]) {
+                requests.push_back({fds[i], /*write*/ false, data[i] + done[i],
+                                    sizes[i] - done[i],
+                                    static_cast<off_t>(done[i]), 0});
+                owners.push_back(i);
+            }
+        }
+        if (requests.empty()) {
+            break;
+        }
+        PerformIo(requests.data(), requests.size());
+        for (size_t k = 0; k < requests.size(); ++k) {
+            jsize i = owners[k];
+            ssize_t result = requests[k].result;
+            if (result < 0) {
+                if (result != -EINTR && result != -EAGAIN && error.empty()) {
+                    error = errorMessage("read failed", static_cast<int>(-result));
+                }
+            } else if (result == 0) {
+                // The file shrank since we sized it.
+                sizes[i] = done[i];
+            } else {
+                done[i] += result;
+            }
+        }
+        if (!error.empty()) {
+            break;
+        }
+    }
+    closeAll();
+    if (!error.empty()) {
+        throwIOException(env, errorClass, error);
+    }
+
+    // Trim the arrays of files that shrank.
+    for (jsize i = 0; i < n; ++i) {
+        jbyteArray bytes =
+            reinterpret_cast<jbyteArray *>(Unwrap(res)->Data())[first + i];
+        if (static_cast<size_t>(Unwrap(bytes)->Length()) != sizes[i]) {
+            jbyteArray trimmed = CreateJavaByteArray(static_cast<jint>(sizes[i]));
+            memcpy(Unwrap(trimmed)->Data(), data[i], sizes[i]);
+            POLYGLOT_ARRAY_STORE(res, first + i, trimmed);
+        }
+    }
+}
+
+extern "C" {
+
+jobjectArray Java_jlang_runtime_FileBatch_readFiles0(JNIEnv *env, jclass,
+                                                     jobjectArray paths) {
+    jsize n = env->GetArrayLength(paths);
+    auto *pathRefs = reinterpret_cast<jstring *>(Unwrap(paths)->Data());
+    jobjectArray res = (jobjectArray)create1DArray("[[B", n);
+    for (jsize first = 0; first < n; first += kFilesPerChunk) {
+        readFileChunk(env, pathRefs + first,
+                      std::min(kFilesPerChunk, n - first), res, first);
+    }
+    return res;
+}
+
+jintArray Java_jlang_runtime_FileBatch_read0(JNIEnv *env, jclass,
+                                             jobjectArray fdObjs,
+                                             jlongArray positions,
+                                             jobjectArray buffers) {
+    static int32_t fdOffset =
+        GetJavaFieldInfo(FindClass("java.io.FileDescriptor"), "fd")->offset;
+    jsize n = env->GetArrayLength(fdObjs);
+    auto *fdRefs = reinterpret_cast<jobject *>(Unwrap(fdObjs)->Data());
+    auto *pos = reinterpret_cast<jlong *>(Unwrap(positions)->Data());
+    auto *bufs = reinterpret_cast<jbyteArray *>(Unwrap(buffers)->Data());
+
+    std::vector<IoRequest> requests(n);
+    for (jsize i = 0; i < n; ++i) {
+        jint fd = *reinterpret_cast<jint *>(
+            reinterpret_cast<char *>(fdRefs[i]) + fdOffset);
+        requests[i] = {fd, /*write*/ false, Unwrap(bufs[i])->Data(),
+                       static_cast<size_t>(Unwrap(bufs[i])->Length()),
+                       static_cast<off_t>(pos[i]), 0};
+    }
+    PerformIo(requests.data(), requests.size());
+
+    jintArray res = CreateJavaIntArray(n);
+    auto *counts = reinterpret_cast<jint *>(Unwrap(res)->Data());
+    for (jsize i = 0; i < n; ++i) {
+        ssize_t result = requests[i].result;
+        if (result < 0) {
+            throwIOException(env, "java.io.IOException",
+                             errorMessage("read failed", static_cast<int>(-result)));
+        }
+        // Like FileChannel.read, -1 means end of file.
+        counts[i] = result == 0 && requests[i].len > 0 ? -1 : static_cast<jint>(result);
+    }
+    return res;
+}
+
+} // extern "C"
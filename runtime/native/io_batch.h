@@ -0,0 +1,26 @@
+// Copyright (C) 2019 Cornell University
+
+#pragma once
+
+#include <cstddef>
+#include <sys/types.h>
+
+// A positional read or write, as with pread(2) and pwrite(2).
+struct IoRequest {
+    int fd;
+    bool write;
+    void *buf;
+    size_t len;
+    off_t offset;
+    ssize_t result; // Bytes transferred (possibly short), or -errno.
+};
+
+// Performs a batch of requests, in no particular order, and returns once all
+// of them have completed. Requests go through an io_uring owned by the calling
+// thread when the kernel supports it, so that a whole batch costs a few
+// system calls, and otherwise through a pool of worker threads. Setting the
+// JLANG_IO_URING environment variable to 0 forces the worker threads.
+//
+// The caller blocks until the batch completes, so a virtual thread blocks its
+// carrier, as for any other file I/O.
+void PerformIo(IoRequest *requests, size_t count);
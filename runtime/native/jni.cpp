@@ -574,35 +574,44 @@ void jni_ReleaseStringChars(JNIEnv *env, jstring str, const jchar *elems) {
 }
 
 jstring jni_NewStringUTF(JNIEnv *env, const char *utf) {
-    jsize len = strlen(utf);
+    auto bytes = reinterpret_cast<const u_char *>(utf);
+    jsize utf_len = strlen(utf);
+    bool ascii;
+    jsize len = unicode_length(bytes, utf_len, &ascii);
     jcharArray chars = env->NewCharArray(len);
     jchar *data = env->GetCharArrayElements(chars, /*isCopy*/ nullptr);
-    // TODO: Not a proper character encoding conversion.
-    for (jsize i = 0; i < len; ++i)
-        data[i] = static_cast<jchar>(utf[i]);
+    if (ascii) {
+        // Most strings coming from native code are ASCII; just widen.
+        for (jsize i = 0; i < len; ++i)
+            data[i] = bytes[i];
+    } else {
+        as_unicode(bytes, utf_len, data);
+    }
     env->ReleaseCharArrayElements(chars, data, /*mode*/ 0);
     jstring res = CreateJavaString(chars);
     return res;
 }
 
 jsize jni_GetStringUTFLength(JNIEnv *env, jstring str) {
-    auto chars = env->GetStringUTFChars(str, /*isCopy*/ nullptr);
-    jsize len = strlen(chars);
-    env->ReleaseStringUTFChars(str, chars);
-    return len;
+    JArrayRep *array = Unwrap(str)->Chars();
+    return utf8_length(reinterpret_cast<jchar *>(array->Data()),
+                       array->Length());
 }
 
 const char *jni_GetStringUTFChars(JNIEnv *env, jstring str, jboolean *isCopy) {
-    auto len = env->GetStringLength(str);
-    auto chars = env->GetStringChars(str, /*isCopy*/ nullptr);
-    char *res = (char *)malloc(len + 1);
-    // TODO: Incorrect conversion from Java string chars to UTF-8 chars.
-    // only works for 1 byte long UTF-16 chars (a.k.a. things that are already
-    // in UTF-8 form)
-    for (jsize i = 0; i < len; ++i)
-        res[i] = static_cast<char>(chars[i]);
-    res[len] = '\0';
-    env->ReleaseStringChars(str, chars);
+    JArrayRep *array = Unwrap(str)->Chars();
+    jsize len = array->Length();
+    jchar *chars = reinterpret_cast<jchar *>(array->Data());
+    jsize utf_len = utf8_length(chars, len);
+    char *res = (char *)malloc(utf_len + 1);
+    if (utf_len == len) {
+        // All chars are 7-bit ASCII (and not NUL); just narrow.
+        for (jsize i = 0; i < len; ++i)
+            res[i] = static_cast<char>(chars[i]);
+        res[len] = '\0';
+    } else {
+        as_utf8(chars, len, reinterpret_cast<u_char *>(res));
+    }
     if (isCopy != nullptr)
         *isCopy = true;
     return res;
@@ -851,16 +860,34 @@ jboolean jni_ExceptionCheck(JNIEnv *env) {
     return JNI_FALSE;
 }
 
+// Direct buffers wrap memory outside the GC heap, through the fields that
+// java.nio.Buffer reserves for them.
+
 jobject jni_NewDirectByteBuffer(JNIEnv *env, void *address, jlong capacity) {
-    JniUnimplemented("NewDirectByteBuffer");
+    jclass clazz = FindClass("java.nio.DirectByteBuffer");
+    jmethodID ctor = jni_GetMethodID(env, clazz, "<init>", "(JI)V");
+    jobject res = CreateJavaObject(clazz);
+    jvalue args[2];
+    args[0].j = reinterpret_cast<jlong>(address);
+    args[1].i = static_cast<jint>(capacity);
+    CallJavaConstructor(res, ctor, args);
+    return res;
 }
 
 void *jni_GetDirectBufferAddress(JNIEnv *env, jobject buf) {
-    JniUnimplemented("GetDirectBufferAddress");
+    jclass bufferClass = FindClass("java.nio.Buffer");
+    auto *address = reinterpret_cast<jlong *>(
+        reinterpret_cast<char *>(buf) +
+        GetJavaFieldInfo(bufferClass, "address")->offset);
+    return reinterpret_cast<void *>(*address);
 }
 
 jlong jni_GetDirectBufferCapacity(JNIEnv *env, jobject buf) {
-    JniUnimplemented("GetDirectBufferCapacity");
+    jclass bufferClass = FindClass("java.nio.Buffer");
+    auto *capacity = reinterpret_cast<jint *>(
+        reinterpret_cast<char *>(buf) +
+        GetJavaFieldInfo(bufferClass, "capacity")->offset);
+    return *capacity;
 }
 
 jobjectRefType jni_GetObjectRefType(JNIEnv *env, jobject obj) {
@@ -337,7 +337,7 @@ static jobjectArray GetJavaConstructors(jclass clazz, const JavaClassInfo *info,
         if (IS_CONSTRUCTOR(&(info->methods[i]))) {
             POLYGLOT_ARRAY_STORE(
                 res, (jint)ctors_copied,
-                CreateConstructor(clazz, info, info->methods[i]));
+                CreateConstructor(clazz, info, i));
             ctors_copied++;
         }
     }
@@ -395,3 +395,56 @@ static char *as_utf8(jchar *base, int length, u_char *result) {
     assert(p == &result[utf8_len]);
     return (char *)result;
 }
+
+// Returns the number of UTF-16 chars encoded by a modified UTF-8 string,
+// and whether all of its bytes are 7-bit ASCII (one char per byte).
+// Malformed sequences decode to one char per byte, as in the JDK.
+static int unicode_length(const u_char *utf, int utf_len, bool *ascii) {
+    int result = 0;
+    *ascii = true;
+    for (int index = 0; index < utf_len; result++) {
+        u_char b = utf[index];
+        if (b < 0x80) {
+            index += 1;
+        } else if ((b & 0xE0) == 0xC0 && index + 1 < utf_len &&
+                   (utf[index + 1] & 0xC0) == 0x80) {
+            index += 2;
+            *ascii = false;
+        } else if ((b & 0xF0) == 0xE0 && index + 2 < utf_len &&
+                   (utf[index + 1] & 0xC0) == 0x80 &&
+                   (utf[index + 2] & 0xC0) == 0x80) {
+            index += 3;
+            *ascii = false;
+        } else {
+            index += 1;
+            *ascii = false;
+        }
+    }
+    return result;
+}
+
+// Decodes a modified UTF-8 string into result, which must have room for
+// unicode_length(utf, utf_len) chars.
+static void as_unicode(const u_char *utf, int utf_len, jchar *result) {
+    jchar *p = result;
+    for (int index = 0; index < utf_len; p++) {
+        u_char b = utf[index];
+        if (b < 0x80) {
+            *p = b;
+            index += 1;
+        } else if ((b & 0xE0) == 0xC0 && index + 1 < utf_len &&
+                   (utf[index + 1] & 0xC0) == 0x80) {
+            *p = ((b & 0x1F) << 6) | (utf[index + 1] & 0x3F);
+            index += 2;
+        } else if ((b & 0xF0) == 0xE0 && index + 2 < utf_len &&
+                   (utf[index + 1] & 0xC0) == 0x80 &&
+                   (utf[index + 2] & 0xC0) == 0x80) {
+            *p = ((b & 0x0F) << 12) | ((utf[index + 1] & 0x3F) << 6) |
+                 (utf[index + 2] & 0x3F);
+            index += 3;
+        } else {
+            *p = b;
+            index += 1;
+        }
+    }
+}
@@ -12,7 +12,9 @@
 #include "signals.h"
 #include "stack_trace.h"
 #include "threads.h"
+#include "vthreads.h"
 
+#include <cerrno>
 #include <chrono>
 #include <cstdio>
 #include <cstdlib>
@@ -20,6 +22,7 @@
 #include <dlfcn.h>
 #include <fcntl.h>
 #include <sys/ioctl.h>
+#include <sys/socket.h>
 #include <sys/stat.h>
 #include <sys/time.h>
 #include <sys/types.h>
@@ -130,11 +133,17 @@ jint JVM_IHashCode(JNIEnv *env, jobject obj) {
 
 void JVM_MonitorWait(JNIEnv *env, jobject obj, jlong ms) {
     // check interrupted before waiting
-    if (Threads::Instance().threads[currentThread].interrupted) {
-        Threads::Instance().threads[currentThread].interrupted = false;
+    JThreadState *self = CurrentThreadState();
+    if (self->interrupted.exchange(false)) {
+        throwInterruptedException(env);
+    }
+    // Thread.interrupt wakes waiting threads. A thread that was also notified
+    // returns normally with its interrupt status set, so that the notification
+    // is not lost (JLS 17.2.4).
+    bool notified = Monitor::Instance().wait(obj, ms);
+    if (!notified && self->interrupted.exchange(false)) {
         throwInterruptedException(env);
     }
-    Monitor::Instance().wait(obj, ms);
 }
 
 void JVM_MonitorNotify(JNIEnv *env, jobject obj) {
@@ -167,16 +176,89 @@ jlong JVM_NanoTime(JNIEnv *env, jclass ignored) {
     return std::chrono::duration_cast<std::chrono::nanoseconds>(time).count();
 }
 
+// Implements System.arraycopy. See the JDK documentation for the exceptions
+// thrown. Copies with memmove whenever no store checks are needed, i.e., for
+// primitive arrays and for reference arrays whose component types are
+// compatible. Otherwise each element is checked before it is stored.
 void JVM_ArrayCopy(JNIEnv *env, jclass ignored, jobject src, jint src_pos,
                    jobject dst, jint dst_pos, jint length) {
-    // TODO check bounds
-    jarray src_arr = reinterpret_cast<jarray>(src);
-    jarray dst_arr = reinterpret_cast<jarray>(dst);
-    jsize elemsize = (Unwrap(src_arr)->ElemSize());
-    char *src_data = static_cast<char *>(Unwrap(src_arr)->Data());
-    char *dst_data = static_cast<char *>(Unwrap(dst_arr)->Data());
-    memmove(dst_data + (dst_pos * elemsize), src_data + (src_pos * elemsize),
-            elemsize * length);
+    if (src == nullptr || dst == nullptr) {
+        throwNewThrowable(env, FindClass("java.lang.NullPointerException"),
+                          "arraycopy: null array");
+        return;
+    }
+
+    jclass src_class = Unwrap(src)->Cdv()->Class()->Wrap();
+    jclass dst_class = Unwrap(dst)->Cdv()->Class()->Wrap();
+    if (!isArrayClass(src_class) || !isArrayClass(dst_class)) {
+        throwNewThrowable(env, FindClass("java.lang.ArrayStoreException"),
+                          "arraycopy: argument is not an array");
+        return;
+    }
+
+    JArrayRep *src_arr = Unwrap(reinterpret_cast<jarray>(src));
+    JArrayRep *dst_arr = Unwrap(reinterpret_cast<jarray>(dst));
+
+    // Same array class (including src == dst): no checks needed. Mismatched
+    // primitive arrays fail regardless of the indices, as in HotSpot.
+    bool raw = src_class == dst_class;
+    jclass src_comp = nullptr, dst_comp = nullptr;
+    if (!raw) {
+        src_comp = GetComponentClass(src_class);
+        dst_comp = GetComponentClass(dst_class);
+        bool src_prim = isPrimitiveClass(src_comp);
+        bool dst_prim = isPrimitiveClass(dst_comp);
+        if (src_prim || dst_prim) {
+            if (src_comp != dst_comp) {
+                throwNewThrowable(env,
+                                  FindClass("java.lang.ArrayStoreException"),
+                                  "arraycopy: type mismatch");
+                return;
+            }
+            raw = true;
+        } else {
+            raw = IsAssignableClass(src_comp, dst_comp);
+        }
+    }
+
+    // Compare against (length - pos) so that the checks cannot overflow.
+    if (src_pos < 0 || dst_pos < 0 || length < 0 ||
+        length > src_arr->Length() - src_pos ||
+        length > dst_arr->Length() - dst_pos) {
+        throwNewThrowable(env,
+                          FindClass("java.lang.ArrayIndexOutOfBoundsException"),
+                          "arraycopy: index out of bounds");
+        return;
+    }
+
+    if (length == 0)
+        return;
+
+    jsize elem_size = src_arr->ElemSize();
+    char *src_data = static_cast<char *>(src_arr->Data());
+    char *dst_data = static_cast<char *>(dst_arr->Data());
+    if (raw) {
+        memmove(dst_data + static_cast<size_t>(dst_pos) * elem_size,
+                src_data + static_cast<size_t>(src_pos) * elem_size,
+                static_cast<size_t>(length) * elem_size);
+        return;
+    }
+
+    // Reference arrays with unrelated component types. The arrays must be
+    // distinct, so copying forwards is fine. Elements before the first
+    // incompatible one are copied, as specified.
+    jobject *from = reinterpret_cast<jobject *>(src_data) + src_pos;
+    jobject *to = reinterpret_cast<jobject *>(dst_data) + dst_pos;
+    for (jint i = 0; i < length; ++i) {
+        jobject elem = from[i];
+        if (elem != nullptr &&
+            !IsAssignableClass(Unwrap(elem)->Cdv()->Class()->Wrap(), dst_comp)) {
+            throwNewThrowable(env, FindClass("java.lang.ArrayStoreException"),
+                              "arraycopy: element type mismatch");
+            return;
+        }
+        to[i] = elem;
+    }
 }
 
 #define PUTPROP(props, key, val)                                               \
@@ -246,7 +328,7 @@ void JVM_Halt(jint code) {
     exit(code);
 }
 
-void JVM_GC(void) { JvmUnimplemented("JVM_GC"); }
+void JVM_GC(void) { GC_gcollect(); }
 
 jlong JVM_MaxObjectInspectionAge(void) {
     JvmUnimplemented("JVM_MaxObjectInspectionAge");
@@ -353,7 +435,7 @@ void JVM_StopThread(JNIEnv *env, jobject thread, jobject exception) {
 }
 
 jboolean JVM_IsThreadAlive(JNIEnv *env, jobject thread) {
-    return Threads::Instance().threads[thread].threadStatus;
+    return ThreadState(thread)->alive;
 }
 
 void JVM_SuspendThread(JNIEnv *env, jobject thread) {
@@ -371,14 +453,40 @@ void JVM_SetThreadPriority(JNIEnv *env, jobject thread, jint prio) {
     return;
 }
 
+// Lets other threads run, which for a virtual thread means the other virtual
+// threads on its carrier.
+static void yieldThread() {
+    if (VirtualThreads::CanYield()) {
+        VirtualThreads::Yield();
+    } else {
+        sched_yield();
+    }
+}
+
 void JVM_Yield(JNIEnv *env, jclass threadClass) {
-    sched_yield();
+    yieldThread();
     return;
 }
 
 void JVM_Sleep(JNIEnv *env, jclass threadClass, jlong millis) {
-    usleep(millis * 1000);
-    return;
+    // Sleep on the thread's own futex, so that Thread.interrupt can wake it.
+    using namespace std::chrono;
+    JThreadState *self = CurrentThreadState();
+    if (millis == 0) {
+        yieldThread();
+    } else {
+        auto deadline = steady_clock::now() + milliseconds(millis);
+        while (!self->interrupted) {
+            auto left = duration_cast<nanoseconds>(deadline - steady_clock::now());
+            if (left.count() <= 0) {
+                break;
+            }
+            self->sleeper.park(/*isAbsolute*/ false, left.count());
+        }
+    }
+    if (self->interrupted.exchange(false)) {
+        throwInterruptedException(env);
+    }
 }
 
 jobject JVM_CurrentThread(JNIEnv *env, jclass threadClass) {
@@ -390,16 +498,23 @@ jint JVM_CountStackFrames(JNIEnv *env, jobject thread) {
 }
 
 void JVM_Interrupt(JNIEnv *env, jobject thread) {
-    // This is not a true scheduling primitive, so this function does not
-    // acutally "interrupt" a thread. It only sets a boolean variable so that
-    // the other thread could detect it.
-    Threads::Instance().threads[thread].interrupted = true;
+    // Sets the interrupt status, and wakes the thread if it is blocked in
+    // Object.wait, Thread.sleep, LockSupport.park, or an interruptible poll.
+    // Like HotSpot, ignore threads that are not running.
+    JThreadState *state = ThreadState(thread);
+    if (state->alive) {
+        state->interrupt();
+    }
 }
 
 jboolean JVM_IsInterrupted(JNIEnv *env, jobject thread,
                            jboolean clearInterrupted) {
-    bool interrupted = Threads::Instance().threads[thread].interrupted;
-    Threads::Instance().threads[thread].interrupted &= !static_cast<bool>(clearInterrupted);
+    JThreadState *state = ThreadState(thread);
+    if (!state->alive) {
+        return JNI_FALSE;
+    }
+    bool interrupted = clearInterrupted ? state->interrupted.exchange(false)
+                                        : state->interrupted.load();
     return static_cast<jboolean>(interrupted);
 }
 
@@ -907,9 +1022,129 @@ jobject JVM_InvokeMethod(JNIEnv *env, jobject method, jobject obj,
         (const jvalue *)reinterpret_cast<JArrayRep *>(args0)->Data());
 }
 
+// Returns the primitive type of a wrapper object (e.g., 'I' for a
+// java.lang.Integer) in signature form, or 0 if it is not a wrapper.
+static char boxedType(jobject box) {
+    static const struct {
+        char type;
+        const char *name;
+    } wrappers[] = {
+        {'Z', "java.lang.Boolean"}, {'B', "java.lang.Byte"},
+        {'C', "java.lang.Character"}, {'S', "java.lang.Short"},
+        {'I', "java.lang.Integer"}, {'J', "java.lang.Long"},
+        {'F', "java.lang.Float"}, {'D', "java.lang.Double"},
+    };
+    const JavaClassInfo *info =
+        GetJavaClassInfo(Unwrap(box)->Cdv()->Class()->Wrap());
+    for (auto &wrapper : wrappers) {
+        if (info != nullptr && strcmp(info->name, wrapper.name) == 0) {
+            return wrapper.type;
+        }
+    }
+    return 0;
+}
+
+// Returns whether a primitive type converts to another by identity or by a
+// widening primitive conversion (JLS 5.1.2).
+static bool widensTo(char from, char to) {
+    if (from == to) {
+        return true;
+    }
+    switch (to) {
+    case 'S': return from == 'B';
+    case 'I': return from == 'B' || from == 'S' || from == 'C';
+    case 'J': return strchr("BSCI", from) != nullptr;
+    case 'F': return strchr("BSCIJ", from) != nullptr;
+    case 'D': return strchr("BSCIJF", from) != nullptr;
+    default: return false;
+    }
+}
+
+// Unboxes the argument for a parameter of the given signature type, widening
+// its value if needed. Returns false if the argument is null or cannot be
+// converted, as for reflective calls in the JVM.
+static bool unboxJavaArg(char type, jobject box, jvalue *res) {
+    if (type == 'L' || type == '[') {
+        res->l = box;
+        return true;
+    }
+    if (box == nullptr) {
+        return false;
+    }
+    char from = boxedType(box);
+    if (from == 0 || !widensTo(from, type)) {
+        return false;
+    }
+    jclass boxClass = Unwrap(box)->Cdv()->Class()->Wrap();
+    char *value = reinterpret_cast<char *>(box) +
+                  GetJavaFieldInfo(boxClass, "value")->offset;
+    jlong integral = 0;
+    switch (from) {
+    case 'B': integral = *reinterpret_cast<jbyte *>(value); break;
+    case 'C': integral = *reinterpret_cast<jchar *>(value); break;
+    case 'S': integral = *reinterpret_cast<jshort *>(value); break;
+    case 'I': integral = *reinterpret_cast<jint *>(value); break;
+    case 'J': integral = *reinterpret_cast<jlong *>(value); break;
+    }
+    switch (type) {
+    case 'Z': res->z = *reinterpret_cast<jboolean *>(value); break;
+    case 'B': res->b = static_cast<jbyte>(integral); break;
+    case 'C': res->c = static_cast<jchar>(integral); break;
+    case 'S': res->s = static_cast<jshort>(integral); break;
+    case 'I': res->i = static_cast<jint>(integral); break;
+    case 'J': res->j = integral; break;
+    case 'F':
+        res->f = from == 'F' ? *reinterpret_cast<jfloat *>(value)
+                             : static_cast<jfloat>(integral);
+        break;
+    case 'D':
+        res->d = from == 'D'   ? *reinterpret_cast<jdouble *>(value)
+                 : from == 'F' ? *reinterpret_cast<jfloat *>(value)
+                               : static_cast<jdouble>(integral);
+        break;
+    }
+    return true;
+}
+
 jobject JVM_NewInstanceFromConstructor(JNIEnv *env, jobject c,
                                        jobjectArray args0) {
-    JvmUnimplemented("JVM_NewInstanceFromConstructor");
+    jclass ctorClass = Unwrap(c)->Cdv()->Class()->Wrap();
+    jclass clazz = *reinterpret_cast<jclass *>(
+        reinterpret_cast<char *>(c) +
+        GetJavaFieldInfo(ctorClass, "clazz")->offset);
+    jint slot = *reinterpret_cast<jint *>(reinterpret_cast<char *>(c) +
+                                          GetJavaFieldInfo(ctorClass, "slot")->offset);
+    JavaMethodInfo *ctor = &GetJavaClassInfo(clazz)->methods[slot];
+
+    jint n = args0 != nullptr ? Unwrap(args0)->Length() : 0;
+    if (n != ctor->numArgTypes) {
+        throwNewThrowable(env, FindClass("java.lang.IllegalArgumentException"),
+                          "wrong number of arguments");
+        return nullptr;
+    }
+
+    // Arguments arrive boxed, so unbox those of primitive parameters.
+    std::vector<jvalue> args(n);
+    if (n > 0) {
+        auto *boxed = reinterpret_cast<jobject *>(Unwrap(args0)->Data());
+        const char *sig = ctor->sig + 1;
+        for (jint i = 0; i < n; ++i) {
+            if (!unboxJavaArg(*sig, boxed[i], &args[i])) {
+                throwNewThrowable(
+                    env, FindClass("java.lang.IllegalArgumentException"),
+                    "argument type mismatch");
+                return nullptr;
+            }
+            while (*sig == '[') {
+                ++sig;
+            }
+            sig = *sig == 'L' ? strchr(sig, ';') + 1 : sig + 1;
+        }
+    }
+
+    jobject res = CreateJavaObject(clazz);
+    CallJavaConstructor(res, reinterpret_cast<jmethodID>(ctor), args.data());
+    return res;
 }
 
 jobject JVM_GetClassConstantPool(JNIEnv *env, jclass cls) {
@@ -1228,17 +1463,22 @@ jint JVM_Open(const char *path, jint oflag, jint mode) {
 
 jint JVM_Close(jint fd) { return close(fd); }
 
+// Restarts a system call interrupted by a signal, as HotSpot does.
+#define RESTARTABLE(_cmd, _result)                                              \
+    do {                                                                       \
+        _result = _cmd;                                                        \
+    } while (_result == -1 && errno == EINTR)
+
 jint JVM_Read(jint fd, char *buf, jint nbytes) {
-    // TODO make repeatable on interrupt error
-    return read(fd, buf, nbytes);
+    ssize_t result;
+    RESTARTABLE(read(fd, buf, nbytes), result);
+    return static_cast<jint>(result);
 }
 
 jint JVM_Write(jint fd, char *buf, jint nbytes) {
-    jint result = -1;
-    while (result == -1) {
-        result = write(fd, buf, nbytes);
-    }
-    return result;
+    ssize_t result;
+    RESTARTABLE(write(fd, buf, nbytes), result);
+    return static_cast<jint>(result);
 }
 
 jint JVM_Available(jint fd, jlong *pbytes) {
@@ -1273,82 +1513,122 @@ jint JVM_Available(jint fd, jlong *pbytes) {
     return 1;
 }
 
+// RandomAccessFile.length, seek and getFilePointer.
 jlong JVM_Lseek(jint fd, jlong offset, jint whence) {
-    JvmUnimplemented("JVM_Lseek");
+    return static_cast<jlong>(lseek64(fd, offset, whence));
+}
+
+// RandomAccessFile.setLength.
+jint JVM_SetLength(jint fd, jlong length) {
+    int result;
+    RESTARTABLE(ftruncate64(fd, length), result);
+    return result;
 }
 
-jint JVM_SetLength(jint fd, jlong length) { JvmUnimplemented("JVM_SetLength"); }
+// FileDescriptor.sync.
+jint JVM_Sync(jint fd) { return fsync(fd); }
 
-jint JVM_Sync(jint fd) { JvmUnimplemented("JVM_Sync"); }
+// Sockets. Like HotSpot, these are thin wrappers around the system calls,
+// which restart calls interrupted by signals. The JDK's own blocking socket
+// I/O does not come through here: libnet reads, writes and accepts through
+// its NET_* functions, and NIO through libnio. So on a virtual thread, socket
+// I/O blocks the carrier, as file I/O does.
 
-jint JVM_InitializeSocketLibrary(void) {
-    JvmUnimplemented("JVM_InitializeSocketLibrary");
-}
+jint JVM_InitializeSocketLibrary(void) { return 0; }
 
 jint JVM_Socket(jint domain, jint type, jint protocol) {
-    JvmUnimplemented("JVM_Socket");
+    return socket(domain, type, protocol);
 }
 
-jint JVM_SocketClose(jint fd) { JvmUnimplemented("JVM_SocketClose"); }
+jint JVM_SocketClose(jint fd) { return close(fd); }
 
-jint JVM_SocketShutdown(jint fd, jint howto) {
-    JvmUnimplemented("JVM_SocketShutdown");
-}
+jint JVM_SocketShutdown(jint fd, jint howto) { return shutdown(fd, howto); }
 
 jint JVM_Recv(jint fd, char *buf, jint nBytes, jint flags) {
-    JvmUnimplemented("JVM_Recv");
+    jint ret;
+    RESTARTABLE(recv(fd, buf, nBytes, flags), ret);
+    return ret;
 }
 
 jint JVM_Send(jint fd, char *buf, jint nBytes, jint flags) {
-    JvmUnimplemented("JVM_Send");
+    jint ret;
+    RESTARTABLE(send(fd, buf, nBytes, flags), ret);
+    return ret;
 }
 
-jint JVM_Timeout(int fd, long timeout) { JvmUnimplemented("JVM_Timeout"); }
+jint JVM_Timeout(int fd, long timeout) {
+    struct pollfd pfd = {fd, POLLIN | POLLERR, 0};
+    return InterruptiblePoll(&pfd, 1, static_cast<int>(timeout));
+}
 
-jint JVM_Listen(jint fd, jint count) { JvmUnimplemented("JVM_Listen"); }
+jint JVM_Listen(jint fd, jint count) { return listen(fd, count); }
 
 jint JVM_Connect(jint fd, struct sockaddr *him, jint len) {
-    JvmUnimplemented("JVM_Connect");
+    // Not restarted: an interrupted connect continues asynchronously, and
+    // retrying it fails with EALREADY.
+    return connect(fd, him, len);
 }
 
 jint JVM_Bind(jint fd, struct sockaddr *him, jint len) {
-    JvmUnimplemented("JVM_Bind");
+    return bind(fd, him, len);
 }
 
 jint JVM_Accept(jint fd, struct sockaddr *him, jint *len) {
-    JvmUnimplemented("JVM_Accept");
+    socklen_t socklen = static_cast<socklen_t>(*len);
+    jint ret;
+    RESTARTABLE(accept(fd, him, &socklen), ret);
+    *len = static_cast<jint>(socklen);
+    return ret;
 }
 
 jint JVM_RecvFrom(jint fd, char *buf, int nBytes, int flags,
                   struct sockaddr *from, int *fromlen) {
-    JvmUnimplemented("JVM_RecvFrom");
+    socklen_t socklen = static_cast<socklen_t>(*fromlen);
+    jint ret;
+    RESTARTABLE(recvfrom(fd, buf, nBytes, flags, from, &socklen), ret);
+    *fromlen = static_cast<int>(socklen);
+    return ret;
 }
 
 jint JVM_SendTo(jint fd, char *buf, int len, int flags, struct sockaddr *to,
                 int tolen) {
-    JvmUnimplemented("JVM_SendTo");
+    jint ret;
+    RESTARTABLE(sendto(fd, buf, len, flags, to, tolen), ret);
+    return ret;
 }
 
 jint JVM_SocketAvailable(jint fd, jint *result) {
-    JvmUnimplemented("JVM_SocketAvailable");
+    // Returns 1 on success, as JVM_Available does.
+    int n;
+    if (ioctl(fd, FIONREAD, &n) < 0) {
+        return 0;
+    }
+    *result = n;
+    return 1;
 }
 
 jint JVM_GetSockName(jint fd, struct sockaddr *him, int *len) {
-    JvmUnimplemented("JVM_GetSockName");
+    socklen_t socklen = static_cast<socklen_t>(*len);
+    jint ret = getsockname(fd, him, &socklen);
+    *len = static_cast<int>(socklen);
+    return ret;
 }
 
 jint JVM_GetSockOpt(jint fd, int level, int optname, char *optval,
                     int *optlen) {
-    JvmUnimplemented("JVM_GetSockOpt");
+    socklen_t socklen = static_cast<socklen_t>(*optlen);
+    jint ret = getsockopt(fd, level, optname, optval, &socklen);
+    *optlen = static_cast<int>(socklen);
+    return ret;
 }
 
 jint JVM_SetSockOpt(jint fd, int level, int optname, const char *optval,
                     int optlen) {
-    JvmUnimplemented("JVM_SetSockOpt");
+    return setsockopt(fd, level, optname, optval, optlen);
 }
 
 int JVM_GetHostName(char *name, int namelen) {
-    JvmUnimplemented("JVM_GetHostName");
+    return gethostname(name, namelen);
 }
 
 // FROM JDK (but what else would you write?
@@ -4,9 +4,11 @@
 
 #include "rep.h"
 #include "threads.h"
+#include "vthreads.h"
 
 #include <algorithm>
 #include <assert.h>
+#include <chrono>
 #include <unordered_map>
 #include <pthread.h>
 
@@ -27,9 +29,110 @@ static constexpr bool kDebug = false;
 // This map is shared by all threads.
 std::unordered_map<jobject, std::pair<pthread_t, int>> lockMap;
 
+#ifdef JLANG_COMPACT_HEADERS
+// Compact object headers have no room for a monitor, so monitors are
+// inflated into a side table keyed by object address. The table is split
+// into stripes with their own locks, so that unrelated monitors do not
+// contend.
+//
+// The table lives outside the GC heap, so it does not keep objects alive,
+// and its entries are uncollectable. Each entry instead holds a disappearing
+// link to its object, which the collector clears once the object dies. Dead
+// entries are freed whenever their stripe has doubled in size since it was
+// last swept, or replaced if another object is allocated at the same address
+// first.
+struct InflatedMonitor {
+    sync_vars syncVars; // First, so that the two pointers convert.
+    GC_word object;     // Hidden, and cleared by the collector.
+};
+
+struct SyncVarsStripe {
+    pthread_mutex_t mutex = PTHREAD_MUTEX_INITIALIZER;
+    std::unordered_map<jobject, InflatedMonitor *> table;
+    size_t sweepSize = 64;
+};
+
+static constexpr size_t kSyncVarsStripes = 64;
+static SyncVarsStripe syncVarsStripes[kSyncVarsStripes];
+
+static SyncVarsStripe &stripeFor(jobject obj) {
+    // Drop the bits that allocation alignment leaves zero.
+    auto addr = reinterpret_cast<uintptr_t>(obj) >> 4;
+    return syncVarsStripes[(addr ^ (addr >> 6)) % kSyncVarsStripes];
+}
+
+static bool isDead(InflatedMonitor *monitor) {
+    return __atomic_load_n(&monitor->object, __ATOMIC_ACQUIRE) == 0;
+}
+
+static void freeInflatedMonitor(InflatedMonitor *monitor) {
+    pthread_mutex_destroy(&monitor->syncVars.mutex);
+    GC_FREE(monitor);
+}
+
+// Frees the entries of objects that have died. The caller holds the lock.
+static void sweep(SyncVarsStripe &stripe) {
+    for (auto it = stripe.table.begin(); it != stripe.table.end();) {
+        if (isDead(it->second)) {
+            freeInflatedMonitor(it->second);
+            it = stripe.table.erase(it);
+        } else {
+            ++it;
+        }
+    }
+    stripe.sweepSize = std::max<size_t>(64, 2 * stripe.table.size());
+}
+
+static sync_vars *getSyncVars(jobject obj) {
+    SyncVarsStripe &stripe = stripeFor(obj);
+    ScopedLock lock(&stripe.mutex);
+    auto it = stripe.table.find(obj);
+    if (it == stripe.table.end() || isDead(it->second)) {
+        return nullptr;
+    }
+    return &it->second->syncVars;
+}
+
+static void setSyncVars(jobject obj, sync_vars *syncVars) {
+    auto *monitor = reinterpret_cast<InflatedMonitor *>(syncVars);
+    monitor->object = GC_HIDE_POINTER(obj);
+    // The global mutex object is not in the GC heap, and never dies.
+    if (GC_base(obj) != nullptr) {
+        GC_GENERAL_REGISTER_DISAPPEARING_LINK(
+            reinterpret_cast<void **>(&monitor->object), obj);
+    }
+
+    SyncVarsStripe &stripe = stripeFor(obj);
+    ScopedLock lock(&stripe.mutex);
+    InflatedMonitor *&entry = stripe.table[obj];
+    if (entry != nullptr) {
+        // Left behind by a dead object at the same address.
+        freeInflatedMonitor(entry);
+    }
+    entry = monitor;
+    if (stripe.table.size() >= stripe.sweepSize) {
+        sweep(stripe);
+    }
+}
+
+// The table is not scanned by the GC, so its values must not be collected.
+static void *allocSyncVars() {
+    return GC_MALLOC_UNCOLLECTABLE(sizeof(InflatedMonitor));
+}
+#else
+// Pointer-free objects are allocated so that the collector scans only this
+// word of them (see __GC_malloc_pointer_free).
+static sync_vars *getSyncVars(jobject obj) { return Unwrap(obj)->SyncVars(); }
+
+static void setSyncVars(jobject obj, sync_vars *syncVars) {
+    Unwrap(obj)->SetSyncVars(syncVars);
+}
+
+static void *allocSyncVars() { return GC_MALLOC(sizeof(sync_vars)); }
+#endif
+
 static void initSyncVars(jobject obj) {
-    sync_vars *syncVars =
-        reinterpret_cast<sync_vars *>(GC_MALLOC(sizeof(sync_vars)));
+    sync_vars *syncVars = reinterpret_cast<sync_vars *>(allocSyncVars());
 
     pthread_mutexattr_t attr;
     pthread_mutexattr_init(&attr);
@@ -37,12 +140,12 @@ static void initSyncVars(jobject obj) {
     if (pthread_mutex_init(&syncVars->mutex, &attr) != 0) {
         perror("mutex init failed");
     }
+    syncVars->owner = nullptr;
+    syncVars->entries = 0;
+    syncVars->entrants = nullptr;
+    syncVars->waiters = nullptr;
 
-    if (pthread_cond_init(&syncVars->cond, nullptr) != 0) {
-        perror("condition variable init failed");
-    }
-
-    Unwrap(obj)->SetSyncVars(syncVars);
+    setSyncVars(obj, syncVars);
 }
 
 // A fake object to hold the sync_var of class loading function.
@@ -50,12 +153,131 @@ static void initSyncVars(jobject obj) {
 // every class is only initilized by one thread once.
 extern "C" jobject getGlobalMutexObject() {
     static JObjectRep __Polyglot_native_GlobalMutexObject;
-    if (__Polyglot_native_GlobalMutexObject.SyncVars() == nullptr) {
+    if (getSyncVars(__Polyglot_native_GlobalMutexObject.Wrap()) == nullptr) {
         initSyncVars(__Polyglot_native_GlobalMutexObject.Wrap());
     }
     return __Polyglot_native_GlobalMutexObject.Wrap();
 }
 
+//
+// Virtual threads
+//
+
+// Entry waits are rare, so one mutex guards every monitor's entrants.
+static pthread_mutex_t entrantsMutex = PTHREAD_MUTEX_INITIALIZER;
+
+static bool isGlobalMutexObject(jobject obj) {
+    return obj == getGlobalMutexObject();
+}
+
+// Acquires the monitor for a virtual thread if that does not block. The
+// mutex is recursive and owned by the carrier, so trylock also succeeds
+// while another virtual thread on the same carrier holds the monitor
+// (suspended); the owner tells the two apart.
+static bool tryEnter(sync_vars *syncVars, JThreadState *self) {
+    if (pthread_mutex_trylock(&syncVars->mutex) != 0) {
+        return false;
+    }
+    if (syncVars->entries > 0 && syncVars->owner != self) {
+        pthread_mutex_unlock(&syncVars->mutex);
+        return false;
+    }
+    return true;
+}
+
+static void removeEntrant(sync_vars *syncVars, JThreadState *self) {
+    ScopedLock lock(&entrantsMutex);
+    for (JThreadState **p = &syncVars->entrants; *p != nullptr;
+         p = &(*p)->nextEntrant) {
+        if (*p == self) {
+            *p = self->nextEntrant;
+            break;
+        }
+    }
+    self->nextEntrant = nullptr;
+}
+
+// Acquires the monitor for a virtual thread, parking while it is held, so
+// that a virtual thread never blocks its carrier on a contended monitor.
+static void enterVirtual(sync_vars *syncVars, JThreadState *self) {
+    while (!tryEnter(syncVars, self)) {
+        {
+            ScopedLock lock(&entrantsMutex);
+            self->nextEntrant = syncVars->entrants;
+            __atomic_store_n(&syncVars->entrants, self, __ATOMIC_SEQ_CST);
+        }
+        // Try again after publishing, since the holder checks for entrants
+        // only after releasing the monitor.
+        bool entered = tryEnter(syncVars, self);
+        if (!entered) {
+            self->waiter.park(/*isAbsolute*/ false, 0);
+        }
+        removeEntrant(syncVars, self);
+        if (entered) {
+            return;
+        }
+    }
+}
+
+// Wakes a virtual thread waiting to enter the monitor, if any, after the
+// monitor has been released.
+static void wakeEntrant(sync_vars *syncVars) {
+    __atomic_thread_fence(__ATOMIC_SEQ_CST);
+    if (__atomic_load_n(&syncVars->entrants, __ATOMIC_SEQ_CST) == nullptr) {
+        return;
+    }
+    JThreadState *entrant;
+    {
+        ScopedLock lock(&entrantsMutex);
+        entrant = syncVars->entrants;
+        if (entrant == nullptr) {
+            return;
+        }
+        syncVars->entrants = entrant->nextEntrant;
+        entrant->nextEntrant = nullptr;
+    }
+    entrant->waiter.unpark();
+}
+
+// Acquires the mutex of the monitor, without counting the entry. The global
+// class initialization monitor is also locked directly by native code, which
+// knows nothing of owners, so virtual threads block on it, and are pinned
+// while they hold it (see lockMonitor).
+static void acquire(jobject obj, sync_vars *syncVars, JThreadState *self) {
+    if (self != nullptr && self->vthread != nullptr && !isGlobalMutexObject(obj)) {
+        enterVirtual(syncVars, self);
+    } else {
+        pthread_mutex_lock(&syncVars->mutex);
+    }
+}
+
+// Enters the monitor once.
+static void lockMonitor(jobject obj, sync_vars *syncVars) {
+    JThreadState *self = currentThreadState;
+    acquire(obj, syncVars, self);
+    if (self != nullptr && isGlobalMutexObject(obj)) {
+        ++self->pinCount;
+    }
+    syncVars->owner = self;
+    ++syncVars->entries;
+}
+
+// Exits the monitor once.
+static void unlockMonitor(jobject obj, sync_vars *syncVars) {
+    JThreadState *self = currentThreadState;
+    if (self != nullptr && isGlobalMutexObject(obj)) {
+        --self->pinCount;
+    }
+    bool released = --syncVars->entries == 0;
+    if (released) {
+        syncVars->owner = nullptr;
+    }
+    pthread_mutex_unlock(&syncVars->mutex);
+    if (released) {
+        wakeEntrant(syncVars);
+    }
+}
+
 Monitor::Monitor() {
     if (pthread_mutex_init(&mutex, nullptr) != 0) {
         perror("mutex init failed");
@@ -79,12 +301,12 @@ void Monitor::enter(jobject obj) {
             Monitor::syncObjs.push_back(obj);
         }
 
-        if (Unwrap(obj)->SyncVars() == nullptr) {
+        if (getSyncVars(obj) == nullptr) {
             initSyncVars(obj);
         }
     }
 
-    pthread_mutex_lock(&Unwrap(obj)->SyncVars()->mutex);
+    lockMonitor(obj, getSyncVars(obj));
 
     if (kDebug) {
         // sanity check
@@ -112,7 +334,7 @@ void Monitor::exit(jobject obj) {
                        "reverse order "
                        "style.\n");
             }
-            if (Unwrap(obj)->SyncVars() == nullptr) {
+            if (getSyncVars(obj) == nullptr) {
                 printf("SyncVars must have already been initialized in "
                        "MonitorEnter\n");
             }
@@ -131,10 +353,78 @@ void Monitor::exit(jobject obj) {
         }
     }
 
-    pthread_mutex_unlock(&Unwrap(obj)->SyncVars()->mutex);
+    unlockMonitor(obj, getSyncVars(obj));
+}
+
+// Releases every entry of the monitor, parks until notified, interrupted, or
+// timed out, and then enters the monitor again as many times. Returns whether
+// the thread was notified. Waiters park on their own parkers rather than on a
+// condition variable, so that Thread.interrupt never needs the monitor, and
+// virtual threads suspend instead of blocking their carriers.
+static bool parkedWait(jobject obj, sync_vars *syncVars, jlong ms) {
+    using namespace std::chrono;
+    JThreadState *self = CurrentThreadState();
+    auto deadline = steady_clock::now() + milliseconds(ms);
+
+    self->notified = false;
+    self->nextWaiter = syncVars->waiters;
+    syncVars->waiters = self;
+    int entries = syncVars->entries;
+    syncVars->entries = 0;
+    syncVars->owner = nullptr;
+    for (int i = 0; i < entries; ++i) {
+        pthread_mutex_unlock(&syncVars->mutex);
+    }
+    wakeEntrant(syncVars);
+
+    // Thread.interrupt unparks the waiter directly.
+    while (!self->notified && !self->interrupted) {
+        jlong nanos = 0;
+        if (ms > 0) {
+            nanos = duration_cast<nanoseconds>(deadline - steady_clock::now())
+                        .count();
+            if (nanos <= 0) {
+                break;
+            }
+        }
+        self->waiter.park(/*isAbsolute*/ false, nanos);
+    }
+
+    // The first entry may have to wait; the others are recursive.
+    acquire(obj, syncVars, self);
+    for (int i = 1; i < entries; ++i) {
+        pthread_mutex_lock(&syncVars->mutex);
+    }
+    syncVars->owner = self;
+    syncVars->entries = entries;
+    // Unless notified, we are still on the list.
+    for (JThreadState **p = &syncVars->waiters; *p != nullptr;
+         p = &(*p)->nextWaiter) {
+        if (*p == self) {
+            *p = self->nextWaiter;
+            break;
+        }
+    }
+    self->nextWaiter = nullptr;
+    // Stable, since notify also holds the monitor.
+    return self->notified;
+}
+
+// Wakes a thread waiting on the monitor, if any. The caller holds the
+// monitor.
+static bool notifyWaiter(sync_vars *syncVars) {
+    JThreadState *waiter = syncVars->waiters;
+    if (waiter == nullptr) {
+        return false;
+    }
+    syncVars->waiters = waiter->nextWaiter;
+    waiter->nextWaiter = nullptr;
+    waiter->notified = true;
+    waiter->waiter.unpark();
+    return true;
 }
 
-void Monitor::wait(jobject obj, jlong ms) {
+bool Monitor::wait(jobject obj, jlong ms) {
     int times;
     {
         ScopedLock lock(&mutex);
@@ -154,21 +444,7 @@ void Monitor::wait(jobject obj, jlong ms) {
         }
     }
 
-    sync_vars *syncVars = Unwrap(obj)->SyncVars();
-    if (ms == 0) {
-        // wait until notified
-        pthread_cond_wait(&syncVars->cond, &syncVars->mutex);
-    } else {
-        timespec t;
-        clock_gettime(CLOCK_REALTIME, &t);
-        t.tv_sec += ms / 1000;
-        t.tv_nsec += (ms % 1000) * 1000;
-
-        t.tv_sec += t.tv_nsec / 1'000'000'000;
-        t.tv_nsec = t.tv_nsec % 1'000'000'000;
-
-        pthread_cond_timedwait(&syncVars->cond, &syncVars->mutex, &t);
-    }
+    bool notified = parkedWait(obj, getSyncVars(obj), ms);
 
     if (kDebug) {
         // sanity check
@@ -177,6 +453,7 @@ void Monitor::wait(jobject obj, jlong ms) {
         lockMap[obj].first = pthread_self();
         lockMap[obj].second = times;
     }
+    return notified;
 }
 
 void Monitor::notify(jobject obj) {
@@ -188,8 +465,7 @@ void Monitor::notify(jobject obj) {
         }
     }
 
-    sync_vars *syncVars = Unwrap(obj)->SyncVars();
-    pthread_cond_signal(&syncVars->cond);
+    notifyWaiter(getSyncVars(obj));
 }
 
 void Monitor::notifyAll(jobject obj) {
@@ -200,13 +476,14 @@ void Monitor::notifyAll(jobject obj) {
             printf("notifyAll() must be called when the object is locked.");
         }
     }
-    sync_vars *syncVars = Unwrap(obj)->SyncVars();
-    pthread_cond_broadcast(&syncVars->cond);
+    sync_vars *syncVars = getSyncVars(obj);
+    while (notifyWaiter(syncVars)) {
+    }
 }
 
 bool Monitor::hasEntered(jobject obj) {
     // Check if syncVars are initialized as a shortcut.
-    if (Unwrap(obj)->SyncVars() == nullptr) {
+    if (getSyncVars(obj) == nullptr) {
         return false;
     }
 
@@ -217,7 +494,7 @@ bool Monitor::hasEntered(jobject obj) {
 thread_local std::deque<jobject> Monitor::syncObjs;
 
 pthread_mutex_t *Monitor::globalMutex() {
-    return &Unwrap(getGlobalMutexObject())->SyncVars()->mutex;
+    return &getSyncVars(getGlobalMutexObject())->mutex;
 }
 
 //
@@ -20,7 +20,9 @@ class Monitor {
     void enter(jobject obj);
     void exit(jobject obj);
 
-    void wait(jobject obj, jlong ms);
+    // Returns whether the thread was notified, rather than interrupted or
+    // timed out.
+    bool wait(jobject obj, jlong ms);
     void notify(jobject obj);
     void notifyAll(jobject obj);
 
@@ -4,9 +4,11 @@
 
 #include "class.h"
 #include "jni.h"
+#include "rep.h"
 #include "stack_trace.h"
 
 #include <cstdlib>
+#include <cstring>
 #include <dlfcn.h>
 #include <string>
 #include <tuple>
@@ -15,6 +17,7 @@
 
 #define GC_THREADS
 #include <gc.h>
+#include <gc_typed.h>
 #undef GC_THREADS
 
 
@@ -101,3 +104,31 @@ extern "C" void* __GC_malloc(size_t size) {
     return GC_malloc(size);
 }
 
+#ifdef JLANG_COMPACT_HEADERS
+extern "C" void* __GC_malloc_pointer_free(size_t size) {
+    // Unlike GC_malloc, atomic allocations are not cleared.
+    void *ptr = GC_malloc_atomic(size);
+    if (ptr != nullptr) {
+        memset(ptr, 0, size);
+    }
+    return ptr;
+}
+#else
+static_assert(sizeof(JObjectRep) == 2 * sizeof(GC_word),
+              "the monitor is the second word of the object header");
+
+// Describes objects whose only pointer is the monitor in the header.
+static GC_descr MonitorOnlyDescriptor() {
+    GC_word bitmap[GC_BITMAP_SIZE(JObjectRep)] = {0};
+    GC_set_bit(bitmap, 1);
+    return GC_make_descriptor(bitmap, GC_WORD_LEN(JObjectRep));
+}
+
+extern "C" void* __GC_malloc_pointer_free(size_t size) {
+    // The collector scans just the monitor pointer of the header, so that
+    // the monitor lives as long as the object. Typed allocations are cleared.
+    static GC_descr descr = MonitorOnlyDescriptor();
+    return GC_malloc_explicitly_typed(size, descr);
+}
+#endif
+
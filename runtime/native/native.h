@@ -36,4 +36,9 @@ GetJavaNativeFunc(jclass cls,               // e.g., java.lang.Object
 
 void *__GC_malloc(size_t size);
 
+// Allocates zeroed memory that the collector does not scan for pointers,
+// except for the monitor in the object header. Used for primitive arrays and
+// objects without reference fields.
+void *__GC_malloc_pointer_free(size_t size);
+
 } // extern "C"
\ No newline at end of file
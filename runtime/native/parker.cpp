@@ -0,0 +1,95 @@
+// Copyright (C) 2019 Cornell University
+
+#include "parker.h"
+#include "threads.h"
+#include "vthreads.h"
+
+#include <linux/futex.h>
+#include <sys/syscall.h>
+#include <time.h>
+#include <unistd.h>
+
+static constexpr jlong NANOS_PER_SEC = 1000000000;
+static constexpr jlong NANOS_PER_MILLI = 1000000;
+
+void Parker::park(bool isAbsolute, jlong time) {
+    // Consume a pending permit without blocking.
+    if (permit.exchange(0, std::memory_order_acquire) == 1) {
+        return;
+    }
+    if (time < 0 || (isAbsolute && time == 0)) {
+        return;
+    }
+    if (CurrentThreadState()->interrupted) {
+        return;
+    }
+
+    if (VirtualThreads::CanYield()) {
+        jlong nanos = time;
+        if (isAbsolute) {
+            struct timespec now;
+            clock_gettime(CLOCK_REALTIME, &now);
+            nanos = time * NANOS_PER_MILLI -
+                    (now.tv_sec * NANOS_PER_SEC + now.tv_nsec);
+            if (nanos <= 0) {
+                return;
+            }
+        }
+        VirtualThreads::Park(permit, nanos);
+        permit.exchange(0, std::memory_order_acquire);
+        return;
+    }
+
+    // The time left until the deadline, if any, in nanoseconds.
+    bool timed = isAbsolute || time > 0;
+    struct timespec start;
+    clock_gettime(CLOCK_MONOTONIC, &start);
+    auto remaining = [&]() -> jlong {
+        struct timespec now;
+        if (isAbsolute) {
+            clock_gettime(CLOCK_REALTIME, &now);
+            return time * NANOS_PER_MILLI -
+                   (now.tv_sec * NANOS_PER_SEC + now.tv_nsec);
+        }
+        clock_gettime(CLOCK_MONOTONIC, &now);
+        return time - ((now.tv_sec - start.tv_sec) * NANOS_PER_SEC +
+                       (now.tv_nsec - start.tv_nsec));
+    };
+
+    // Sleeps only while the permit is still 0, so an unpark between the
+    // exchange above and this call is not lost. EAGAIN and ETIMEDOUT count as
+    // (possibly spurious) returns. EINTR is usually the collector stopping
+    // the world, so the wait resumes unless the thread was interrupted.
+    for (;;) {
+        struct timespec timeout;
+        if (timed) {
+            jlong nanos = remaining();
+            if (nanos <= 0) {
+                break;
+            }
+            timeout.tv_sec = nanos / NANOS_PER_SEC;
+            timeout.tv_nsec = nanos % NANOS_PER_SEC;
+        }
+        long ret = syscall(SYS_futex, reinterpret_cast<int *>(&permit),
+                           FUTEX_WAIT_PRIVATE, 0, timed ? &timeout : nullptr,
+                           nullptr, 0);
+        if (ret == 0 || errno != EINTR ||
+            permit.load(std::memory_order_relaxed) != 0 ||
+            CurrentThreadState()->interrupted) {
+            break;
+        }
+    }
+    permit.exchange(0, std::memory_order_acquire);
+}
+
+void Parker::unpark() {
+    // Sequentially consistent, since VirtualThreads::Park publishes its
+    // status and then reads the permit.
+    if (permit.exchange(1) == 0) {
+        syscall(SYS_futex, reinterpret_cast<int *>(&permit), FUTEX_WAKE_PRIVATE,
+                1, nullptr, nullptr, 0);
+        if (vthread != nullptr) {
+            VirtualThreads::Wake(vthread);
+        }
+    }
+}
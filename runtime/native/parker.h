@@ -0,0 +1,38 @@
+// Copyright (C) 2019 Cornell University
+
+#pragma once
+
+#include <atomic>
+#include <jni.h>
+
+struct VirtualThread;
+
+// A per-thread permit backing LockSupport.park and unpark, implemented
+// directly on a futex so that parking does not go through the global
+// monitor mutex. The permit is either 0 or 1, and never accumulates.
+// Each JThreadState owns one per kind of blocking, so that wakeups meant for
+// one never satisfy another; park must be called by the owning thread.
+// Virtual threads park by suspending instead, as long as they may yield.
+class Parker {
+  public:
+    Parker(const Parker &parker) = delete;
+    Parker &operator=(const Parker &parker) = delete;
+
+    Parker() : permit(0) {}
+
+    // Blocks until the permit is available, the thread is interrupted, or the
+    // timeout elapses. The timeout is in absolute milliseconds since the epoch
+    // if isAbsolute is set, and in relative nanoseconds otherwise, where zero
+    // means no timeout. Spurious returns are allowed.
+    void park(bool isAbsolute, jlong time);
+
+    // Makes the permit available, waking the owning thread if it is parked.
+    void unpark();
+
+    // Makes unpark also wake the given virtual thread, the owner.
+    void setVirtualThread(VirtualThread *vt) { vthread = vt; }
+
+  private:
+    std::atomic<int> permit;
+    VirtualThread *vthread = nullptr;
+};
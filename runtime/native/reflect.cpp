@@ -2,10 +2,15 @@
 
 #include "reflect.h"
 
+#include "helper.h"
+
+#define CTOR_INIT_FUNC                                                         \
+    Polyglot_java_lang_reflect_Constructor_Constructor__Ljava_lang_Class_2_3Ljava_lang_Class_2_3Ljava_lang_Class_2IILjava_lang_String_2_3B_3B
+
 extern "C" {
 
-void CTOR_CTOR(jclass, jobjectArray, jobjectArray, jint, jint, jstring,
-               jbyteArray, jbyteArray);
+void CTOR_INIT_FUNC(jobject, jclass, jobjectArray, jobjectArray, jint, jint,
+                    jstring, jbyteArray, jbyteArray);
 
 bool InstanceOf(jobject obj, void *type_id) {
     if (obj == nullptr)
@@ -19,8 +24,27 @@ bool InstanceOf(jobject obj, void *type_id) {
 } // extern "C"
 
 jobject CreateConstructor(jclass declaring_clazz,
-                          const JavaClassInfo *clazz_info,
-                          JavaMethodInfo ctor_info) {
-    // TODO actually implement
-    return NULL;
+                          const JavaClassInfo *clazz_info, int32_t slot) {
+    JavaMethodInfo &ctor = clazz_info->methods[slot];
+    std::vector<std::string> classNames = parseMethodSig(ctor.sig);
+
+    jobjectArray paramTypes =
+        (jobjectArray)create1DArray("[Ljava.lang.Class;", ctor.numArgTypes);
+    for (int k = 0; k < ctor.numArgTypes; k++) {
+        if (ctor.argTypes[k] == nullptr) {
+            ctor.argTypes[k] = new jclass(FindClass(classNames[k].c_str()));
+        } else if (*ctor.argTypes[k] == nullptr) {
+            FindClass(classNames[k].c_str());
+        }
+        POLYGLOT_ARRAY_STORE(paramTypes, k, *ctor.argTypes[k]);
+    }
+
+    // TODO: use the correct checkedExceptions
+    jobjectArray checkedExceptions =
+        (jobjectArray)create1DArray("[Ljava.lang.Class;", 0);
+
+    jobject res = CreateJavaObject(FindClass("java.lang.reflect.Constructor"));
+    CTOR_INIT_FUNC(res, declaring_clazz, paramTypes, checkedExceptions,
+                   ctor.modifiers, slot, nullptr, nullptr, nullptr);
+    return res;
 }
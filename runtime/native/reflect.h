@@ -6,10 +6,17 @@
 #include "factory.h"
 #include "rep.h"
 #include <stdio.h>
+#include <string>
+#include <vector>
 extern "C" {
 bool InstanceOf(jobject obj, void *compare_type_id);
+
+// Returns the class names of the parameter types in a method signature,
+// followed by that of the return type.
+std::vector<std::string> parseMethodSig(const std::string &sig);
 } // extern "C"
 
+// Creates the java.lang.reflect.Constructor for the constructor at the given
+// index of clazz_info->methods, which becomes its slot.
 jobject CreateConstructor(jclass declaring_clazz,
-                          const JavaClassInfo *clazz_info,
-                          JavaMethodInfo ctor_info);
+                          const JavaClassInfo *clazz_info, int32_t slot);
@@ -45,30 +45,59 @@ struct DispatchVector {
     idv_ht *Idv() { return idv_; }
     void SetIdv(idv_ht *idv) { idv_ = idv; }
     type_info *SuperTypes() { return super_types_; }
+    int64_t ObjSize() { return obj_size_; }
+    bool IsArray() { return is_array_; }
+    bool IsPointerFree() { return pointer_free_; }
+    void SetPointerFree(bool pointer_free) { pointer_free_ = pointer_free; }
 
   public:
     JClassRep **class_; // Notice: double-pointer.
     idv_ht *idv_;
     type_info *super_types_;
+    int64_t obj_size_; // instance size; for arrays, the header size.
+    jboolean is_array_;
+    jboolean pointer_free_; // instances hold no heap references.
     void *methods_[0]; // a list of method pointers in dv.
 };
 
+struct JThreadState;
+
 struct sync_vars {
     pthread_mutex_t mutex;
-    pthread_cond_t cond;
+    // The thread holding the monitor, and the times it has entered it, which
+    // Object.wait releases all at once. Guarded by mutex. The mutex belongs
+    // to the carrier of a virtual thread, so the owner tells apart virtual
+    // threads that share a carrier.
+    JThreadState *owner;
+    int entries;
+    // Virtual threads waiting to enter the monitor, which park instead of
+    // blocking their carriers on the mutex. Guarded by a global mutex in
+    // monitor.cpp, but read without it on exit.
+    JThreadState *entrants;
+    // Threads in Object.wait, which park on their own parkers until notified,
+    // so that Thread.interrupt can wake them without the monitor. Guarded by
+    // mutex.
+    JThreadState *waiters;
 };
 
 // Representation for java.lang.Object.
+// With JLANG_COMPACT_HEADERS the header is just the dispatch vector pointer,
+// and monitors are kept in a side table (see monitor.cpp). This must match
+// the -compact-headers option passed to the compiler.
 struct JObjectRep {
     DispatchVector *Cdv() { return cdv_; }
-    sync_vars *SyncVars() { return sync_vars_; }
     jobject Wrap() { return reinterpret_cast<jobject>(this); }
     void SetCdv(DispatchVector *cdv) { cdv_ = cdv; }
+#ifndef JLANG_COMPACT_HEADERS
+    sync_vars *SyncVars() { return sync_vars_; }
     void SetSyncVars(sync_vars *vars) { sync_vars_ = vars; }
+#endif
 
   private:
     DispatchVector *cdv_;
+#ifndef JLANG_COMPACT_HEADERS
     sync_vars *sync_vars_;
+#endif
 };
 ASSERT_POD(JObjectRep);
 
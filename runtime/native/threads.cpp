@@ -2,7 +2,19 @@
 
 #include "threads.h"
 
+#include "class.h"
 #include "monitor.h"
+#include "rep.h"
+#include "vthreads.h"
+
+#include <algorithm>
+#include <cassert>
+#include <cerrno>
+#include <chrono>
+#include <new>
+#include <sys/eventfd.h>
+#include <unistd.h>
+#include <vector>
 
 jobject GetMainThread() {
     // Caveat: The name of the main ThreadGroup is "system", which is different
@@ -49,53 +61,239 @@ jobject GetMainThread() {
 }
 
 thread_local jobject currentThread = nullptr;
+thread_local JThreadState *currentThreadState = nullptr;
 
-Threads &Threads::Instance() {
-    static Threads *instance;
-    if (instance == nullptr) {
-        instance = new Threads();
+// Offsets of fields in java.lang.Thread, resolved when the main thread is
+// attached. Thread starts hold the global mutex, so they cannot look up
+// fields or methods themselves.
+static int32_t eetopOffset = -1;
+static int32_t daemonOffset = -1;
+
+// Owns the state of a native thread that was never started as a Java thread.
+// Nothing else references it, so it is uncollectable, and freed when the
+// thread exits.
+namespace {
+struct UnattachedThreadState {
+    JThreadState *state = nullptr;
+
+    ~UnattachedThreadState() {
+        if (state != nullptr) {
+            state->closeInterruptFd();
+            state->~JThreadState();
+            GC_FREE(state);
+        }
+    }
+};
+} // namespace
+
+JThreadState *CurrentThreadState() {
+    JThreadState *state = currentThreadState;
+    if (state != nullptr) {
+        return state;
     }
-    return *instance;
+    static thread_local UnattachedThreadState unattached;
+    state = new (GC_MALLOC_UNCOLLECTABLE(sizeof(JThreadState)))
+        JThreadState(/*thread*/ nullptr);
+    state->tid = pthread_self();
+    state->alive = true;
+    unattached.state = state;
+    currentThreadState = state;
+    return state;
 }
 
-void Threads::join() {
-    for (auto &it : threads) {
-        if (it.first == GetMainThread()) {
-            // skip the main thread.
-            return;
+static_assert(sizeof(JThreadState *) <= sizeof(jlong),
+              "thread states must fit in Thread.eetop");
+
+JThreadState *ThreadState(jobject thread) {
+    assert(eetopOffset >= 0 && "main thread not attached");
+    auto slot = reinterpret_cast<JThreadState **>(
+        reinterpret_cast<char *>(thread) + eetopOffset);
+    JThreadState *state = __atomic_load_n(slot, __ATOMIC_ACQUIRE);
+    if (state != nullptr) {
+        return state;
+    }
+    // If another thread installs a state first, ours is simply garbage.
+    auto *fresh = new (GC_MALLOC(sizeof(JThreadState))) JThreadState(thread);
+    if (__atomic_compare_exchange_n(slot, &state, fresh, /*weak*/ false,
+                                    __ATOMIC_ACQ_REL, __ATOMIC_ACQUIRE)) {
+        return fresh;
+    }
+    return state;
+}
+
+void JThreadState::interrupt() {
+    interrupted = true;
+    parker.unpark();
+    waiter.unpark();
+    sleeper.unpark();
+    ScopedLock lock(&wakeupFdMutex);
+    if (wakeupFd >= 0) {
+        uint64_t one = 1;
+        ssize_t ret = write(wakeupFd, &one, sizeof(one));
+        (void)ret; // Only fails if the counter is already nonzero.
+    }
+}
+
+int JThreadState::interruptFd() {
+    ScopedLock lock(&wakeupFdMutex);
+    if (wakeupFd < 0) {
+        wakeupFd = eventfd(0, EFD_NONBLOCK | EFD_CLOEXEC);
+    }
+    return wakeupFd;
+}
+
+void JThreadState::closeInterruptFd() {
+    ScopedLock lock(&wakeupFdMutex);
+    if (wakeupFd >= 0) {
+        close(wakeupFd);
+        wakeupFd = -1;
+    }
+}
+
+int InterruptiblePoll(struct pollfd *fds, nfds_t nfds, int timeout) {
+    using namespace std::chrono;
+    if (VirtualThreads::CanYield()) {
+        return VirtualThreads::Poll(fds, nfds, timeout);
+    }
+    JThreadState *self = CurrentThreadState();
+    std::vector<pollfd> all(fds, fds + nfds);
+    all.push_back({self->interruptFd(), POLLIN, 0});
+    auto deadline = steady_clock::now() + milliseconds(timeout);
+
+    for (;;) {
+        if (self->interrupted) {
+            errno = EINTR;
+            return -1;
+        }
+        int ret = poll(all.data(), all.size(), timeout);
+        if (ret < 0 && errno != EINTR) {
+            return ret;
+        }
+        if (ret > 0 && all.back().revents != 0) {
+            // Drain the wakeup, which may be left over from an interrupt
+            // that has since been cleared.
+            uint64_t count;
+            ssize_t drained = read(all.back().fd, &count, sizeof(count));
+            (void)drained;
+            --ret;
         }
+        if (ret > 0 || (ret == 0 && all.back().revents == 0)) {
+            for (nfds_t i = 0; i < nfds; ++i) {
+                fds[i].revents = all[i].revents;
+            }
+            return ret;
+        }
+        if (timeout > 0) {
+            auto left = duration_cast<milliseconds>(deadline - steady_clock::now());
+            timeout = std::max<int>(0, left.count());
+        }
+    }
+}
+
+Threads &Threads::Instance() {
+    // Static storage, so that the GC scans the list of live threads.
+    static Threads instance;
+    return instance;
+}
+
+Threads::Threads() {
+    pthread_mutex_init(&mutex, nullptr);
+    pthread_cond_init(&exited, nullptr);
+}
+
+void Threads::link(JThreadState *state) {
+    ScopedLock lock(&mutex);
+    state->prev = nullptr;
+    state->next = head;
+    if (head != nullptr) {
+        head->prev = state;
+    }
+    head = state;
+}
+
+void Threads::unlink(JThreadState *state) {
+    ScopedLock lock(&mutex);
+    if (state->prev != nullptr) {
+        state->prev->next = state->next;
+    } else {
+        head = state->next;
+    }
+    if (state->next != nullptr) {
+        state->next->prev = state->prev;
+    }
+    state->prev = state->next = nullptr;
+    pthread_cond_broadcast(&exited);
+}
 
-        jboolean isDaemon = CallJavaInstanceMethod<jboolean>(it.first, "isDaemon", "()Z", nullptr);
-        if (isDaemon) {
-            continue;
+void Threads::attachMainThread(jobject jthread) {
+    jclass threadClass = FindClass("java.lang.Thread");
+    eetopOffset = GetJavaFieldInfo(threadClass, "eetop")->offset;
+    daemonOffset = GetJavaFieldInfo(threadClass, "daemon")->offset;
+    currentThread = jthread;
+    currentThreadState = ThreadState(jthread);
+    currentThreadState->tid = pthread_self();
+    currentThreadState->alive = true;
+    link(currentThreadState);
+}
+
+void Threads::join() {
+    ScopedLock lock(&mutex);
+    for (;;) {
+        bool waiting = false;
+        for (JThreadState *s = head; s != nullptr; s = s->next) {
+            waiting |= s != currentThreadState && !s->daemon;
         }
-        int ret = pthread_join(it.second.tid, nullptr);
-        if (ret) {
-            perror("cannot join thread");
+        if (!waiting) {
+            return;
         }
+        pthread_cond_wait(&exited, &mutex);
     }
 }
 
-void* start_routine(void* jthread) {
-    jobject thread = static_cast<jobject>(jthread);
-    currentThread = thread;
-    
+void Threads::run(JThreadState *state) {
+    jobject thread = state->thread;
     CallJavaInstanceMethod<void>(thread, "run", "()V", nullptr);
 
-    Threads::Instance().threads[thread].threadStatus = false;
+    state->alive = false;
     // invoke jthread.notifyAll() when the thread terminates.
     // TODO: notifyAll() also needs to be invoked when exception happens
     Monitor::Instance().enter(thread);
     Monitor::Instance().notifyAll(thread);
     Monitor::Instance().exit(thread);
 
+    state->closeInterruptFd();
+    unlink(state);
+}
+
+static void *start_routine(void *arg) {
+    auto *state = static_cast<JThreadState *>(arg);
+    currentThread = state->thread;
+    currentThreadState = state;
+    Threads::Instance().run(state);
     return nullptr;
 }
 
 void Threads::startThread(jobject jthread) {
-    Threads::Instance().threads[jthread].threadStatus = true;
-    int ret = pthread_create(&threads[jthread].tid, nullptr, start_routine, jthread);
+    JThreadState *state = ThreadState(jthread);
+    state->daemon = *reinterpret_cast<jboolean *>(
+        reinterpret_cast<char *>(jthread) + daemonOffset);
+    state->alive = true;
+    link(state);
+
+    if (VirtualThreads::Enabled()) {
+        VirtualThreads::Start(state);
+        return;
+    }
+
+    // Threads are detached, since join() waits for them to unlink instead.
+    pthread_attr_t attr;
+    pthread_attr_init(&attr);
+    pthread_attr_setdetachstate(&attr, PTHREAD_CREATE_DETACHED);
+    int ret = pthread_create(&state->tid, &attr, start_routine, state);
+    pthread_attr_destroy(&attr);
     if (ret) {
         perror("cannot start thread\n");
+        state->alive = false;
+        unlink(state);
     }
 }
@@ -1,34 +1,119 @@
 // Copyright (C) 2019 Cornell University
 
+#pragma once
+
+#include <atomic>
 #include <functional>
 #include <jvm.h>
-#include <unordered_map>
+#include <poll.h>
 #include <pthread.h>
 
+#include "parker.h"
+
 #define GC_THREADS
 #include <gc.h>
 #undef GC_THREADS
 
 extern thread_local jobject currentThread;
 
-struct NativeThread {
-    pthread_t tid;
-    bool threadStatus;
-    bool interrupted;
+struct sync_vars;
+struct VirtualThread;
+
+// Native state of a java.lang.Thread. It is reachable from the thread object
+// through its eetop field (which the JDK reserves for the VM), and from the
+// thread itself through currentThreadState, so no lookup table is needed.
+//
+// States are allocated in the GC heap and referenced from the thread object,
+// so they are collected with it. While a thread is running its state is also
+// linked into the list of live threads, which keeps both alive.
+struct JThreadState {
+    explicit JThreadState(jobject thread) : thread(thread) {}
+
+    jobject thread;
+    pthread_t tid = 0;
+    bool daemon = false;
+    std::atomic<bool> alive{false};
+    std::atomic<bool> interrupted{false};
+    Parker parker;
+
+    // Interruptible blocking. interrupt() sets the status and then wakes the
+    // thread wherever it may block: LockSupport.park on the parker,
+    // Object.wait on the waiter, Thread.sleep on the sleeper, and blocking I/O
+    // on the wakeup fd. Each checks the status after publishing that it is
+    // about to block. Monitors have their own parkers, so that they neither
+    // consume nor leave behind LockSupport permits.
+    Parker waiter;                                // Object.wait, monitor entry.
+    Parker sleeper;                               // Thread.sleep.
+    pthread_mutex_t wakeupFdMutex = PTHREAD_MUTEX_INITIALIZER;
+    int wakeupFd = -1; // Blocking I/O; see interruptFd().
+
+    // Sets the interrupt status and wakes the thread if it is blocked.
+    void interrupt();
+
+    // Returns an eventfd that becomes readable when the thread is interrupted,
+    // for blocking I/O to poll along with its own file descriptors. Created on
+    // first use, and closed when the thread exits.
+    int interruptFd();
+    void closeInterruptFd();
+
+    // Set if the thread runs on a carrier; see vthreads.h.
+    VirtualThread *vthread = nullptr;
+    // Entries into the global class initialization monitor, which native
+    // code also locks directly, so they pin a virtual thread to its carrier.
+    int pinCount = 0;
+    // Object.wait, through sync_vars::waiters.
+    std::atomic<bool> notified{false};
+    JThreadState *nextWaiter = nullptr;
+    // Monitor entry of a virtual thread, through sync_vars::entrants.
+    JThreadState *nextEntrant = nullptr;
+
+    // Intrusive list of live threads, guarded by Threads::mutex.
+    JThreadState *prev = nullptr;
+    JThreadState *next = nullptr;
 };
 
+extern thread_local JThreadState *currentThreadState;
+
+// Returns the state of the current thread. Native threads that were never
+// started as Java threads, such as the cleaner thread and threads attached
+// through JNI, get a state of their own on first use, with no Thread object.
+JThreadState *CurrentThreadState();
+
+// Returns the state of the given java.lang.Thread, creating it if the thread
+// has not been started yet.
+JThreadState *ThreadState(jobject thread);
+
+// Like poll(2), but returns -1 with errno set to EINTR as soon as the current
+// thread is interrupted. The interrupt status is left set.
+int InterruptiblePoll(struct pollfd *fds, nfds_t nfds, int timeout);
+
 class Threads {
   public:
     Threads(const Threads &threads) = delete;
     Threads &operator=(const Threads &threads) = delete;
     static Threads &Instance();
 
+    // Registers the calling (main) thread. Must be called before any other
+    // thread is started.
+    void attachMainThread(jobject jthread);
     void startThread(jobject jthread);
+
+    // Runs a started thread on the calling thread until it exits, and
+    // unlinks it.
+    void run(JThreadState *state);
+
+    // Waits until all non-daemon threads other than the caller have exited.
     void join();
-    std::unordered_map<jobject, NativeThread> threads;
 
   private:
-    Threads() = default;
+    Threads();
+
+    void link(JThreadState *state);
+    void unlink(JThreadState *state);
+
+    pthread_mutex_t mutex;
+    pthread_cond_t exited;
+    JThreadState *head = nullptr;
 };
 
 jobject GetMainThread();
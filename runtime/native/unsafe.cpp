@@ -10,10 +10,12 @@
 #include "class.h"
 #include "rep.h"
 #include "stack_trace.h"
+#include "threads.h"
 #include <cstdio>
 #include <cstdlib>
 #include <jni.h>
 #include <string.h>
+#include <unistd.h>
 
 // GCC built-in compare-and-swap.
 #define CAS(ptr, e, x) __sync_val_compare_and_swap(ptr, e, x)
@@ -26,6 +28,23 @@ static jboolean JavaCompareAndSwap(jobject obj, jlong offset, T e, T x) {
     return prev == e;
 }
 
+// Most accessors take either a raw address, or an object and an offset.
+// A null object means that the offset is a raw address.
+static void *UnsafeAddress(jobject obj, jlong offset) {
+    return reinterpret_cast<char *>(obj) + offset;
+}
+
+// Raw addresses need not be aligned, so go through memcpy.
+template <typename T> static T RawGet(jlong addr) {
+    T val;
+    memcpy(&val, reinterpret_cast<void *>(addr), sizeof(T));
+    return val;
+}
+
+template <typename T> static void RawPut(jlong addr, T val) {
+    memcpy(reinterpret_cast<void *>(addr), &val, sizeof(T));
+}
+
 [[noreturn]] static void UnsafeUnimplemented(const char *name) {
     fprintf(stderr,
             "- - - - - - - - - - - - - - - - - - - - - - - - - - - -\n"
@@ -39,6 +58,24 @@ static jboolean JavaCompareAndSwap(jobject obj, jlong offset, T e, T x) {
     abort();
 }
 
+// The GCC atomic builtins only take integers and pointers.
+template <typename T, typename Bits>
+static T VolatileGetFloating(jobject obj, jlong offset) {
+    Bits bits = __atomic_load_n(reinterpret_cast<Bits *>(UnsafeAddress(obj, offset)),
+                                __ATOMIC_SEQ_CST);
+    T val;
+    memcpy(&val, &bits, sizeof(T));
+    return val;
+}
+
+template <typename T, typename Bits>
+static void VolatilePutFloating(jobject obj, jlong offset, T val) {
+    Bits bits;
+    memcpy(&bits, &val, sizeof(T));
+    __atomic_store_n(reinterpret_cast<Bits *>(UnsafeAddress(obj, offset)), bits,
+                     __ATOMIC_SEQ_CST);
+}
+
 static void WarnUnsafeUnimplemented(const char *name) {
     //    fprintf(stderr,
     //    "WARNING: sun.misc.Unsafe method %s is unimplemented, "
@@ -190,65 +227,30 @@ void Java_sun_misc_Unsafe_putByte__JB(JNIEnv *env, jobject unsafe, jlong addr,
     return;
 }
 
-jshort Java_sun_misc_Unsafe_getShort__J(JNIEnv *env, jobject, jlong) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_getShort__J");
-}
-
-void Java_sun_misc_Unsafe_putShort__JS(JNIEnv *env, jobject, jlong, jshort) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_putShort__JS");
-}
-
-jchar Java_sun_misc_Unsafe_getChar__J(JNIEnv *env, jobject, jlong) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_getChar__J");
-}
-
-void Java_sun_misc_Unsafe_putChar__JC(JNIEnv *env, jobject, jlong, jchar) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_putChar__JC");
-}
-
-jint Java_sun_misc_Unsafe_getInt__J(JNIEnv *env, jobject, jlong) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_getInt__J");
-}
-
-void Java_sun_misc_Unsafe_putInt__JI(JNIEnv *env, jobject, jlong, jint) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_putInt__JI");
-}
-
-jlong Java_sun_misc_Unsafe_getLong__J(JNIEnv *env, jobject, jlong) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_getLong__J");
-}
-
-void Java_sun_misc_Unsafe_putLong__JJ(JNIEnv *env, jobject unsafe, jlong addr,
-                                      jlong val) {
-    jlong *ptr = (jlong *)addr;
-    if (ptr != NULL) {
-        *ptr = val;
+#define RAW_ACCESSORS(jrep, sig, name)                                         \
+    jrep Java_sun_misc_Unsafe_get##name##__J(JNIEnv *env, jobject unsafe,       \
+                                             jlong addr) {                      \
+        return RawGet<jrep>(addr);                                              \
+    }                                                                           \
+    void Java_sun_misc_Unsafe_put##name##__J##sig(JNIEnv *env, jobject unsafe,  \
+                                                  jlong addr, jrep val) {       \
+        RawPut<jrep>(addr, val);                                                \
     }
-    return;
-}
+RAW_ACCESSORS(jshort, S, Short)
+RAW_ACCESSORS(jchar, C, Char)
+RAW_ACCESSORS(jint, I, Int)
+RAW_ACCESSORS(jlong, J, Long)
+RAW_ACCESSORS(jfloat, F, Float)
+RAW_ACCESSORS(jdouble, D, Double)
+#undef RAW_ACCESSORS
 
-jfloat Java_sun_misc_Unsafe_getFloat__J(JNIEnv *env, jobject, jlong) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_getFloat__J");
+jlong Java_sun_misc_Unsafe_getAddress(JNIEnv *env, jobject unsafe, jlong addr) {
+    return static_cast<jlong>(RawGet<intptr_t>(addr));
 }
 
-void Java_sun_misc_Unsafe_putFloat__JF(JNIEnv *env, jobject, jlong, jfloat) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_putFloat__JF");
-}
-
-jdouble Java_sun_misc_Unsafe_getDouble__J(JNIEnv *env, jobject, jlong) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_getDouble__J");
-}
-
-void Java_sun_misc_Unsafe_putDouble__JD(JNIEnv *env, jobject, jlong, jdouble) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_putDouble__JD");
-}
-
-jlong Java_sun_misc_Unsafe_getAddress(JNIEnv *env, jobject, jlong) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_getAddress");
-}
-
-void Java_sun_misc_Unsafe_putAddress(JNIEnv *env, jobject, jlong, jlong) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_putAddress");
+void Java_sun_misc_Unsafe_putAddress(JNIEnv *env, jobject unsafe, jlong addr,
+                                     jlong val) {
+    RawPut<intptr_t>(addr, static_cast<intptr_t>(val));
 }
 
 jlong Java_sun_misc_Unsafe_allocateMemory(JNIEnv *env, jobject unsafe,
@@ -278,14 +280,18 @@ jlong Java_sun_misc_Unsafe_reallocateMemory(JNIEnv *env, jobject unsafe,
     }
 }
 
-void Java_sun_misc_Unsafe_setMemory(JNIEnv *env, jobject, jobject, jlong, jlong,
-                                    jbyte) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_setMemory");
+void Java_sun_misc_Unsafe_setMemory(JNIEnv *env, jobject unsafe, jobject obj,
+                                    jlong offset, jlong bytes, jbyte value) {
+    memset(UnsafeAddress(obj, offset), value, bytes);
 }
 
-void Java_sun_misc_Unsafe_copyMemory(JNIEnv *env, jobject, jobject, jlong,
-                                     jobject, jlong, jlong) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_copyMemory");
+// The JDK allows the source and destination ranges to overlap.
+void Java_sun_misc_Unsafe_copyMemory(JNIEnv *env, jobject unsafe,
+                                     jobject srcObj, jlong srcOffset,
+                                     jobject destObj, jlong destOffset,
+                                     jlong bytes) {
+    memmove(UnsafeAddress(destObj, destOffset),
+            UnsafeAddress(srcObj, srcOffset), bytes);
 }
 
 void Java_sun_misc_Unsafe_freeMemory(JNIEnv *env, jobject unsafe, jlong ptr) {
@@ -372,7 +378,7 @@ jint Java_sun_misc_Unsafe_addressSize(JNIEnv *env, jobject) {
 }
 
 jint Java_sun_misc_Unsafe_pageSize(JNIEnv *env, jobject) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_pageSize");
+    return static_cast<jint>(sysconf(_SC_PAGESIZE));
 }
 
 jclass
@@ -432,120 +438,71 @@ jboolean Java_sun_misc_Unsafe_compareAndSwapLong(JNIEnv *env, jobject unsafe,
     return JavaCompareAndSwap(obj, offset, e, x);
 }
 
-jobject Java_sun_misc_Unsafe_getObjectVolatile(JNIEnv *env, jobject unsafeObj,
-                                               jobject obj, jlong offset) {
-    // TODO do right thing w.r.t memory model and thread ordering
-    return Java_sun_misc_Unsafe_getObject(env, unsafeObj, obj, offset);
-}
-
-void Java_sun_misc_Unsafe_putObjectVolatile(JNIEnv *env, jobject, jobject,
-                                            jlong, jobject) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_putObjectVolatile");
-}
-
-jint Java_sun_misc_Unsafe_getIntVolatile(JNIEnv *env, jobject, jobject, jlong) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_getIntVolatile");
-}
-
-void Java_sun_misc_Unsafe_putIntVolatile(JNIEnv *env, jobject, jobject, jlong,
-                                         jint) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_putIntVolatile");
-}
-
-jboolean Java_sun_misc_Unsafe_getBooleanVolatile(JNIEnv *env, jobject, jobject,
-                                                 jlong) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_getBooleanVolatile");
-}
-
-void Java_sun_misc_Unsafe_putBooleanVolatile(JNIEnv *env, jobject, jobject,
-                                             jlong, jboolean) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_putBooleanVolatile");
-}
-
-jbyte Java_sun_misc_Unsafe_getByteVolatile(JNIEnv *env, jobject, jobject,
-                                           jlong) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_getByteVolatile");
-}
-
-void Java_sun_misc_Unsafe_putByteVolatile(JNIEnv *env, jobject, jobject, jlong,
-                                          jbyte) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_putByteVolatile");
-}
-
-jshort Java_sun_misc_Unsafe_getShortVolatile(JNIEnv *env, jobject, jobject,
-                                             jlong) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_getShortVolatile");
-}
-
-void Java_sun_misc_Unsafe_putShortVolatile(JNIEnv *env, jobject, jobject, jlong,
-                                           jshort) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_putShortVolatile");
-}
-
-jchar Java_sun_misc_Unsafe_getCharVolatile(JNIEnv *env, jobject, jobject,
-                                           jlong) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_getCharVolatile");
-}
-
-void Java_sun_misc_Unsafe_putCharVolatile(JNIEnv *env, jobject, jobject, jlong,
-                                          jchar) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_putCharVolatile");
-}
-
-jlong Java_sun_misc_Unsafe_getLongVolatile(JNIEnv *env, jobject, jobject,
-                                           jlong) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_getLongVolatile");
-}
-
-void Java_sun_misc_Unsafe_putLongVolatile(JNIEnv *env, jobject, jobject, jlong,
-                                          jlong) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_putLongVolatile");
-}
-
-jfloat Java_sun_misc_Unsafe_getFloatVolatile(JNIEnv *env, jobject, jobject,
-                                             jlong) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_getFloatVolatile");
-}
-
-void Java_sun_misc_Unsafe_putFloatVolatile(JNIEnv *env, jobject, jobject, jlong,
-                                           jfloat) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_putFloatVolatile");
-}
-
-jdouble Java_sun_misc_Unsafe_getDoubleVolatile(JNIEnv *env, jobject, jobject,
-                                               jlong) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_getDoubleVolatile");
-}
+// Volatile accesses are sequentially consistent; ordered puts (lazySet)
+// are release stores.
+#define VOLATILE_ACCESSORS(jrep, name)                                    \
+    jrep Java_sun_misc_Unsafe_get##name##Volatile(                             \
+        JNIEnv *env, jobject unsafe, jobject obj, jlong offset) {              \
+        return __atomic_load_n(                                                \
+            reinterpret_cast<jrep *>(UnsafeAddress(obj, offset)),              \
+            __ATOMIC_SEQ_CST);                                                 \
+    }                                                                          \
+    void Java_sun_misc_Unsafe_put##name##Volatile(                             \
+        JNIEnv *env, jobject unsafe, jobject obj, jlong offset, jrep val) {    \
+        __atomic_store_n(reinterpret_cast<jrep *>(UnsafeAddress(obj, offset)), \
+                         val, __ATOMIC_SEQ_CST);                               \
+    }
+VOLATILE_ACCESSORS(jobject, Object)
+VOLATILE_ACCESSORS(jboolean, Boolean)
+VOLATILE_ACCESSORS(jbyte, Byte)
+VOLATILE_ACCESSORS(jshort, Short)
+VOLATILE_ACCESSORS(jchar, Char)
+VOLATILE_ACCESSORS(jint, Int)
+VOLATILE_ACCESSORS(jlong, Long)
+#undef VOLATILE_ACCESSORS
 
-void Java_sun_misc_Unsafe_putDoubleVolatile(JNIEnv *env, jobject, jobject,
-                                            jlong, jdouble) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_putDoubleVolatile");
+jfloat Java_sun_misc_Unsafe_getFloatVolatile(JNIEnv *env, jobject unsafe,
+                                             jobject obj, jlong offset) {
+    return VolatileGetFloating<jfloat, jint>(obj, offset);
 }
 
-void Java_sun_misc_Unsafe_putOrderedObject(JNIEnv *env, jobject unsafeObj,
+void Java_sun_misc_Unsafe_putFloatVolatile(JNIEnv *env, jobject unsafe,
                                            jobject obj, jlong offset,
-                                           jobject value) {
-    // TODO do the right memory model thing as specified in Unsafe.java
-    // w.r.t. thread ordering
-    return Java_sun_misc_Unsafe_putObject(env, unsafeObj, obj, offset, value);
+                                           jfloat val) {
+    VolatilePutFloating<jfloat, jint>(obj, offset, val);
 }
 
-void Java_sun_misc_Unsafe_putOrderedInt(JNIEnv *env, jobject, jobject, jlong,
-                                        jint) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_putOrderedInt");
+jdouble Java_sun_misc_Unsafe_getDoubleVolatile(JNIEnv *env, jobject unsafe,
+                                               jobject obj, jlong offset) {
+    return VolatileGetFloating<jdouble, jlong>(obj, offset);
 }
 
-void Java_sun_misc_Unsafe_putOrderedLong(JNIEnv *env, jobject, jobject, jlong,
-                                         jlong) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_putOrderedLong");
+void Java_sun_misc_Unsafe_putDoubleVolatile(JNIEnv *env, jobject unsafe,
+                                            jobject obj, jlong offset,
+                                            jdouble val) {
+    VolatilePutFloating<jdouble, jlong>(obj, offset, val);
 }
 
-void Java_sun_misc_Unsafe_unpark(JNIEnv *env, jobject, jobject) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_unpark");
+#define ORDERED_PUT(jrep, name)                                                \
+    void Java_sun_misc_Unsafe_putOrdered##name(                                \
+        JNIEnv *env, jobject unsafe, jobject obj, jlong offset, jrep val) {    \
+        __atomic_store_n(reinterpret_cast<jrep *>(UnsafeAddress(obj, offset)), \
+                         val, __ATOMIC_RELEASE);                               \
+    }
+ORDERED_PUT(jobject, Object)
+ORDERED_PUT(jint, Int)
+ORDERED_PUT(jlong, Long)
+#undef ORDERED_PUT
+
+void Java_sun_misc_Unsafe_unpark(JNIEnv *env, jobject unsafe, jobject thread) {
+    if (thread != nullptr) {
+        ThreadState(thread)->parker.unpark();
+    }
 }
 
-void Java_sun_misc_Unsafe_park(JNIEnv *env, jobject, jboolean, jlong) {
-    UnsafeUnimplemented("Java_sun_misc_Unsafe_park");
+void Java_sun_misc_Unsafe_park(JNIEnv *env, jobject unsafe, jboolean isAbsolute,
+                               jlong time) {
+    CurrentThreadState()->parker.park(isAbsolute, time);
 }
 
 jint Java_sun_misc_Unsafe_getLoadAverage(JNIEnv *env, jobject, jdoubleArray,
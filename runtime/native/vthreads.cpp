@@ -0,0 +1,430 @@
+// Copyright (C) 2019 Cornell University
+
+#include "vthreads.h"
+
+#include "monitor.h"
+#include "threads.h"
+
+#include <algorithm>
+#include <cerrno>
+#include <chrono>
+#include <cstdint>
+#include <cstdlib>
+#include <cstring>
+#include <deque>
+#include <iterator>
+#include <map>
+#include <mutex>
+#include <new>
+#include <sys/epoll.h>
+#include <unistd.h>
+#include <pthread.h>
+
+#define GC_THREADS
+#include <gc.h>
+#undef GC_THREADS
+
+// The deepest stack a virtual thread may use.
+static constexpr size_t kAreaSize = 1 << 20;
+// Room left above the execution area for the scheduler's own frames.
+static constexpr size_t kSchedulerReserve = 256 << 10;
+static constexpr size_t kCarrierStackSize = kAreaSize + 2 * kSchedulerReserve;
+
+static jlong NowNanos() {
+    using namespace std::chrono;
+    return duration_cast<nanoseconds>(steady_clock::now().time_since_epoch())
+        .count();
+}
+
+// Returns the lowest address of the live stack of a suspended thread.
+static char *StackPointer(ucontext_t *context) {
+#if defined(__x86_64__)
+    // Include the red zone below the stack pointer.
+    return reinterpret_cast<char *>(context->uc_mcontext.gregs[REG_RSP]) - 128;
+#elif defined(__aarch64__)
+    return reinterpret_cast<char *>(context->uc_mcontext.sp);
+#else
+#error "Virtual threads are not supported on this architecture"
+#endif
+}
+
+// Marks a parked thread runnable. Returns true if the caller must enqueue it;
+// a thread that is still suspending is enqueued by its carrier instead.
+static bool MakeRunnable(VirtualThread *vt) {
+    int status = vt->status.load();
+    for (;;) {
+        if (status == VirtualThread::PARKED) {
+            if (vt->status.compare_exchange_weak(status, VirtualThread::RUNNABLE))
+                return true;
+        } else if (status == VirtualThread::PARKING) {
+            if (vt->status.compare_exchange_weak(status, VirtualThread::RUNNABLE))
+                return false;
+        } else {
+            return false;
+        }
+    }
+}
+
+static void VirtualThreadMain();
+
+static void ForgetEpoll(int fd);
+
+struct Carrier {
+    Carrier() {
+        pthread_mutex_init(&mutex, nullptr);
+        pthread_condattr_t attr;
+        pthread_condattr_init(&attr);
+        pthread_condattr_setclock(&attr, CLOCK_MONOTONIC);
+        pthread_cond_init(&cond, &attr);
+        pthread_condattr_destroy(&attr);
+    }
+
+    pthread_mutex_t mutex;
+    pthread_cond_t cond;
+    // Both refer to threads that are alive, and therefore reachable from
+    // the list of live threads.
+    std::deque<VirtualThread *> runQueue;
+    std::multimap<jlong, VirtualThread *> timers;
+
+    ucontext_t schedContext;
+    char *areaBottom = nullptr;
+    char *areaTop = nullptr;
+
+    void push(VirtualThread *vt) {
+        ScopedLock lock(&mutex);
+        runQueue.push_back(vt);
+        pthread_cond_signal(&cond);
+    }
+
+    void addTimer(jlong deadline, VirtualThread *vt) {
+        ScopedLock lock(&mutex);
+        timers.emplace(deadline, vt);
+    }
+
+    // Waits for a runnable thread, firing timers that have expired.
+    VirtualThread *next() {
+        ScopedLock lock(&mutex);
+        for (;;) {
+            jlong now = NowNanos();
+            while (!timers.empty() && timers.begin()->first <= now) {
+                VirtualThread *vt = timers.begin()->second;
+                timers.erase(timers.begin());
+                if (MakeRunnable(vt))
+                    runQueue.push_back(vt);
+            }
+            if (!runQueue.empty()) {
+                VirtualThread *vt = runQueue.front();
+                runQueue.pop_front();
+                return vt;
+            }
+            if (timers.empty()) {
+                pthread_cond_wait(&cond, &mutex);
+            } else {
+                jlong deadline = timers.begin()->first;
+                timespec ts;
+                ts.tv_sec = deadline / 1000000000;
+                ts.tv_nsec = deadline % 1000000000;
+                pthread_cond_timedwait(&cond, &mutex, &ts);
+            }
+        }
+    }
+
+    void resume(VirtualThread *vt) {
+        currentThread = vt->state->thread;
+        currentThreadState = vt->state;
+        vt->status = VirtualThread::RUNNING;
+        if (!vt->started) {
+            vt->started = true;
+            getcontext(&vt->context);
+            vt->context.uc_stack.ss_sp = areaBottom;
+            vt->context.uc_stack.ss_size = kAreaSize;
+            vt->context.uc_link = &schedContext;
+            makecontext(&vt->context, VirtualThreadMain, 0);
+        } else {
+            memcpy(areaTop - vt->savedSize, vt->savedStack, vt->savedSize);
+        }
+        swapcontext(&schedContext, &vt->context);
+        currentThread = nullptr;
+        currentThreadState = nullptr;
+    }
+
+    // Saves the stack of a thread that has just switched back to us.
+    void suspended(VirtualThread *vt) {
+        if (vt->finished) {
+            ScopedLock lock(&mutex);
+            for (auto it = timers.begin(); it != timers.end();) {
+                it = it->second == vt ? timers.erase(it) : std::next(it);
+            }
+            if (vt->epollFd >= 0) {
+                ForgetEpoll(vt->epollFd);
+                close(vt->epollFd);
+            }
+            return;
+        }
+
+        char *sp = StackPointer(&vt->context);
+        size_t size = areaTop - sp;
+        if (size > vt->savedCapacity) {
+            size_t capacity = std::max(size, 2 * vt->savedCapacity);
+            vt->savedStack = static_cast<char *>(GC_MALLOC(capacity));
+            vt->savedCapacity = capacity;
+        }
+        memcpy(vt->savedStack, sp, size);
+        vt->savedSize = size;
+
+        int expected = VirtualThread::PARKING;
+        if (!vt->status.compare_exchange_strong(expected, VirtualThread::PARKED)) {
+            // Yielded, or woken before it finished suspending.
+            vt->status = VirtualThread::RUNNABLE;
+            push(vt);
+        }
+    }
+};
+
+static void *CarrierMain(void *arg) {
+    auto *c = static_cast<Carrier *>(arg);
+
+    // The execution area lies below this frame, past the room reserved for
+    // the scheduler's calls. While the scheduler runs the area is below the
+    // stack pointer, so it is registered as a root to cover the moments when
+    // a thread's stack exists only there.
+    auto frame = reinterpret_cast<uintptr_t>(__builtin_frame_address(0));
+    c->areaTop = reinterpret_cast<char *>((frame - kSchedulerReserve) & ~uintptr_t(15));
+    c->areaBottom = c->areaTop - kAreaSize;
+    GC_add_roots(c->areaBottom, c->areaTop);
+
+    for (;;) {
+        VirtualThread *vt = c->next();
+        c->resume(vt);
+        c->suspended(vt);
+    }
+    return nullptr;
+}
+
+static void Switch(VirtualThread *vt) {
+    swapcontext(&vt->context, &vt->carrier->schedContext);
+}
+
+static void VirtualThreadMain() {
+    JThreadState *state = currentThreadState;
+    Threads::Instance().run(state);
+    state->vthread->finished = true;
+    // Returning resumes the carrier through uc_link.
+}
+
+//
+// Carriers
+//
+
+static int CarrierCount() {
+    const char *env = getenv("JLANG_VIRTUAL_THREADS");
+    if (env == nullptr)
+        return 0;
+    int n = atoi(env);
+    if (n > 0)
+        return n;
+    long cpus = sysconf(_SC_NPROCESSORS_ONLN);
+    return cpus > 0 ? static_cast<int>(cpus) : 1;
+}
+
+static Carrier *carriers = nullptr;
+static std::atomic<unsigned> nextCarrier{0};
+
+static int NumCarriers() {
+    static const int n = CarrierCount();
+    return n;
+}
+
+static void StartCarriers() {
+    int n = NumCarriers();
+    carriers = new Carrier[n];
+    pthread_attr_t attr;
+    pthread_attr_init(&attr);
+    pthread_attr_setstacksize(&attr, kCarrierStackSize);
+    pthread_attr_setdetachstate(&attr, PTHREAD_CREATE_DETACHED);
+    for (int i = 0; i < n; ++i) {
+        pthread_t tid;
+        if (pthread_create(&tid, &attr, CarrierMain, &carriers[i]) != 0) {
+            perror("cannot start carrier thread");
+            abort();
+        }
+    }
+    pthread_attr_destroy(&attr);
+}
+
+//
+// Polling
+//
+
+// Waits for events on the per-thread epoll instances of virtual threads, and
+// unparks their owners.
+class Poller {
+  public:
+    static Poller &Instance() {
+        static Poller instance;
+        return instance;
+    }
+
+    // Arms the thread's epoll instance to unpark it once it becomes readable.
+    void arm(VirtualThread *vt) {
+        {
+            ScopedLock lock(&mutex);
+            int fd = vt->epollFd;
+            if (fd >= capacity) {
+                int grown = std::max(fd + 1, 2 * capacity);
+                auto **states = static_cast<JThreadState **>(
+                    GC_MALLOC_UNCOLLECTABLE(grown * sizeof(JThreadState *)));
+                std::copy(registered, registered + capacity, states);
+                GC_FREE(registered);
+                registered = states;
+                capacity = grown;
+            }
+            registered[fd] = vt->state;
+        }
+        epoll_event ev = {};
+        ev.events = EPOLLIN | EPOLLONESHOT;
+        ev.data.fd = vt->epollFd;
+        if (epoll_ctl(epollFd, EPOLL_CTL_MOD, vt->epollFd, &ev) != 0)
+            epoll_ctl(epollFd, EPOLL_CTL_ADD, vt->epollFd, &ev);
+    }
+
+    // Drops the registration of an epoll instance that is about to be closed.
+    void forget(int fd) {
+        ScopedLock lock(&mutex);
+        if (fd < capacity)
+            registered[fd] = nullptr;
+    }
+
+  private:
+    Poller() {
+        pthread_mutex_init(&mutex, nullptr);
+        epollFd = epoll_create1(EPOLL_CLOEXEC);
+        pthread_attr_t attr;
+        pthread_attr_init(&attr);
+        pthread_attr_setdetachstate(&attr, PTHREAD_CREATE_DETACHED);
+        pthread_t tid;
+        pthread_create(&tid, &attr, Run, this);
+        pthread_attr_destroy(&attr);
+    }
+
+    static void *Run(void *arg) {
+        auto *poller = static_cast<Poller *>(arg);
+        epoll_event events[64];
+        for (;;) {
+            int n = epoll_wait(poller->epollFd, events, 64, -1);
+            for (int i = 0; i < n; ++i) {
+                JThreadState *state = nullptr;
+                {
+                    ScopedLock lock(&poller->mutex);
+                    int fd = events[i].data.fd;
+                    if (fd < poller->capacity)
+                        state = poller->registered[fd];
+                }
+                if (state != nullptr)
+                    state->parker.unpark();
+            }
+        }
+        return nullptr;
+    }
+
+    int epollFd;
+
+    // The thread to unpark for each armed epoll instance, indexed by its file
+    // descriptor. Uncollectable, so that the collector sees the states, which
+    // the kernel's copy of the event data would hide.
+    pthread_mutex_t mutex;
+    JThreadState **registered = nullptr;
+    int capacity = 0;
+};
+
+static void ForgetEpoll(int fd) { Poller::Instance().forget(fd); }
+
+static void WaitForEvents(VirtualThread *vt, struct pollfd *fds, nfds_t nfds,
+                          jlong timeoutNanos) {
+    if (vt->epollFd < 0)
+        vt->epollFd = epoll_create1(EPOLL_CLOEXEC);
+    for (nfds_t i = 0; i < nfds; ++i) {
+        if (fds[i].fd < 0)
+            continue;
+        epoll_event ev = {};
+        ev.events = static_cast<uint32_t>(fds[i].events);
+        ev.data.fd = fds[i].fd;
+        epoll_ctl(vt->epollFd, EPOLL_CTL_ADD, fds[i].fd, &ev);
+    }
+    Poller::Instance().arm(vt);
+    vt->state->parker.park(/*isAbsolute*/ false, timeoutNanos);
+    for (nfds_t i = 0; i < nfds; ++i) {
+        if (fds[i].fd >= 0)
+            epoll_ctl(vt->epollFd, EPOLL_CTL_DEL, fds[i].fd, nullptr);
+    }
+}
+
+//
+// API
+//
+
+bool VirtualThreads::Enabled() { return NumCarriers() > 0; }
+
+void VirtualThreads::Start(JThreadState *state) {
+    static std::once_flag once;
+    std::call_once(once, StartCarriers);
+
+    auto *vt = new (GC_MALLOC(sizeof(VirtualThread))) VirtualThread(state);
+    vt->carrier = &carriers[nextCarrier++ % NumCarriers()];
+    state->vthread = vt;
+    state->parker.setVirtualThread(vt);
+    state->waiter.setVirtualThread(vt);
+    state->sleeper.setVirtualThread(vt);
+    vt->carrier->push(vt);
+}
+
+bool VirtualThreads::CanYield() {
+    JThreadState *self = currentThreadState;
+    return self != nullptr && self->vthread != nullptr && self->pinCount == 0;
+}
+
+void VirtualThreads::Park(std::atomic<int> &permit, jlong timeoutNanos) {
+    VirtualThread *vt = currentThreadState->vthread;
+    if (timeoutNanos > 0)
+        vt->carrier->addTimer(NowNanos() + timeoutNanos, vt);
+    // Publish that we are parking, then recheck the permit, so that an
+    // unpark in between either sees PARKING or is seen here.
+    vt->status = VirtualThread::PARKING;
+    if (permit.load() == 1) {
+        vt->status = VirtualThread::RUNNING;
+        return;
+    }
+    Switch(vt);
+}
+
+void VirtualThreads::Wake(VirtualThread *vt) {
+    if (MakeRunnable(vt))
+        vt->carrier->push(vt);
+}
+
+void VirtualThreads::Yield() {
+    VirtualThread *vt = currentThreadState->vthread;
+    vt->status = VirtualThread::RUNNABLE;
+    Switch(vt);
+}
+
+int VirtualThreads::Poll(struct pollfd *fds, nfds_t nfds, int timeout) {
+    JThreadState *self = currentThreadState;
+    jlong deadline = timeout > 0 ? NowNanos() + timeout * 1000000LL : 0;
+    for (;;) {
+        if (self->interrupted) {
+            errno = EINTR;
+            return -1;
+        }
+        int ret = poll(fds, nfds, 0);
+        if (ret != 0 || timeout == 0)
+            return ret;
+        jlong left = 0;
+        if (timeout > 0) {
+            left = deadline - NowNanos();
+            if (left <= 0)
+                return 0;
+        }
+        WaitForEvents(self->vthread, fds, nfds, left);
+    }
+}
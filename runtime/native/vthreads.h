@@ -0,0 +1,83 @@
+// Copyright (C) 2019 Cornell University
+
+#pragma once
+
+#include <atomic>
+#include <jni.h>
+#include <poll.h>
+#include <ucontext.h>
+
+struct JThreadState;
+struct Carrier;
+
+// Opt-in M:N threading. When the JLANG_VIRTUAL_THREADS environment variable
+// is set, every Java thread other than the main thread runs as a coroutine on
+// one of a fixed pool of carrier pthreads (as many as the variable says, or
+// one per CPU if it is not a positive number). LockSupport.park, Thread.sleep,
+// Thread.yield, Object.wait, and InterruptiblePoll suspend the coroutine
+// instead of blocking the carrier. Other blocking calls, such as file and
+// socket I/O in the JDK's native libraries, block the carrier.
+//
+// A virtual thread always runs on the same carrier, in an execution area
+// carved out of the carrier's own stack, so the collector scans the running
+// thread's frames as part of the carrier stack. When a virtual thread is
+// suspended, the live part of its stack is copied to a buffer in the GC heap,
+// where the collector scans it like any other object, and copied back when it
+// resumes. Stacks therefore only take as much memory as they actually use.
+//
+// Monitors are pthread mutexes owned by the carrier, so a virtual thread may
+// not block on one, or else another virtual thread on the same carrier could
+// never release it. Instead, a virtual thread parks until a contended monitor
+// is released (see monitor.cpp), and may yield while holding monitors. Only
+// the global class initialization monitor, which native code also locks
+// directly, pins a virtual thread to its carrier while held.
+struct VirtualThread {
+    enum Status { RUNNABLE, RUNNING, PARKING, PARKED };
+
+    explicit VirtualThread(JThreadState *state) : state(state) {}
+
+    JThreadState *state;
+    Carrier *carrier = nullptr;
+    std::atomic<int> status{RUNNABLE};
+    bool started = false;
+    bool finished = false;
+    ucontext_t context;
+
+    // The live part of the stack while suspended, which ends at the top of the
+    // carrier's execution area.
+    char *savedStack = nullptr;
+    size_t savedSize = 0;
+    size_t savedCapacity = 0;
+
+    // Per-thread epoll instance for polling, created on first use.
+    int epollFd = -1;
+};
+
+namespace VirtualThreads {
+
+// Returns whether new threads should be started as virtual threads.
+bool Enabled();
+
+// Schedules a started thread, whose state must already be linked.
+void Start(JThreadState *state);
+
+// Returns whether the current thread is a virtual thread that may yield its
+// carrier, i.e., one that does not hold the global class initialization
+// monitor.
+bool CanYield();
+
+// Suspends the current virtual thread until Wake is called, or until the
+// timeout (in nanoseconds, where zero means none) elapses, unless the permit
+// is already available. Spurious returns are allowed.
+void Park(std::atomic<int> &permit, jlong timeoutNanos);
+
+// Makes a parked virtual thread runnable. Has no effect on a running one.
+void Wake(VirtualThread *vt);
+
+// Lets other virtual threads on the same carrier run.
+void Yield();
+
+// InterruptiblePoll for a virtual thread that can yield.
+int Poll(struct pollfd *fds, nfds_t nfds, int timeout);
+
+} // namespace VirtualThreads
@@ -0,0 +1,47 @@
+//Copyright (C) 2019 Cornell University
+
+package jlang.runtime;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+
+// Reads many files, or many regions of files, as a single batch. The batch is
+// submitted to the kernel at once through io_uring where available, and
+// otherwise spread over a pool of I/O threads, so reading N small files
+// costs far fewer round trips than N sequential FileInputStream reads.
+public final class FileBatch {
+
+    private FileBatch() {}
+
+    // Returns the full contents of each file, in order.
+    public static byte[][] readFiles(String[] paths) throws IOException {
+        for (String path : paths)
+            if (path == null)
+                throw new NullPointerException();
+        return readFiles0(paths);
+    }
+
+    // Reads into each buffer from the corresponding file descriptor at the
+    // corresponding position, without moving the file pointers. Returns the
+    // number of bytes read into each buffer, which may be short, or -1 at
+    // end of file.
+    public static int[] read(FileDescriptor[] fds, long[] positions, byte[][] buffers)
+            throws IOException {
+        if (fds.length != positions.length || fds.length != buffers.length)
+            throw new IllegalArgumentException("Mismatched batch lengths");
+        for (int i = 0; i < fds.length; i++) {
+            if (fds[i] == null || buffers[i] == null)
+                throw new NullPointerException();
+            if (!fds[i].valid())
+                throw new IOException("Invalid file descriptor");
+            if (positions[i] < 0)
+                throw new IllegalArgumentException("Negative position");
+        }
+        return read0(fds, positions, buffers);
+    }
+
+    private static native byte[][] readFiles0(String[] paths) throws IOException;
+
+    private static native int[] read0(FileDescriptor[] fds, long[] positions, byte[][] buffers)
+            throws IOException;
+}
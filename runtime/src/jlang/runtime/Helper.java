@@ -14,6 +14,80 @@ class Helper {
         return res == null ? "null" : res;
     }
 
+    static String toString(String s) {
+        return s == null ? "null" : s;
+    }
+
+    // The methods below support fused string concatenation: the compiler first
+    // sums the sizes of all operands, allocates a single char array of exactly
+    // that length, and then writes each operand into it in turn. Each putChars
+    // method returns the position just past the characters it wrote.
+
+    static int stringSize(String s) {
+        return s.length();
+    }
+
+    static int stringSize(char c) {
+        return 1;
+    }
+
+    static int stringSize(boolean b) {
+        return b ? 4 : 5;
+    }
+
+    static int stringSize(int i) {
+        return stringSize((long) i);
+    }
+
+    static int stringSize(long l) {
+        int size = 1;
+        if (l < 0) {
+            ++size;
+        } else {
+            l = -l;
+        }
+        // Count digits on the negated value so that MIN_VALUE needs no special case.
+        while (l <= -10) {
+            l /= 10;
+            ++size;
+        }
+        return size;
+    }
+
+    static int putChars(char[] buf, int pos, String s) {
+        int len = s.length();
+        s.getChars(0, len, buf, pos);
+        return pos + len;
+    }
+
+    static int putChars(char[] buf, int pos, char c) {
+        buf[pos] = c;
+        return pos + 1;
+    }
+
+    static int putChars(char[] buf, int pos, boolean b) {
+        return putChars(buf, pos, b ? "true" : "false");
+    }
+
+    static int putChars(char[] buf, int pos, int i) {
+        return putChars(buf, pos, (long) i);
+    }
+
+    static int putChars(char[] buf, int pos, long l) {
+        int end = pos + stringSize(l);
+        boolean negative = l < 0;
+        if (!negative)
+            l = -l;
+        int i = end;
+        do {
+            buf[--i] = (char) ('0' - (int) (l % 10));
+            l /= 10;
+        } while (l != 0);
+        if (negative)
+            buf[--i] = '-';
+        return end;
+    }
+
     static void arrayStore(Object[] arr, int i, Object o) {
 	arr[i] = o;
     }
@@ -0,0 +1,85 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class ArrayCopy {
+    public static void main(String[] args) {
+        // Element-wise checked copy: stops at the first incompatible element.
+        Object[] objs = {"a", "b", null, 1, "c"};
+        String[] strs = new String[5];
+        try {
+            System.arraycopy(objs, 0, strs, 0, 5);
+        } catch (ArrayStoreException e) {
+            System.out.println("ArrayStoreException");
+        }
+        System.out.println(Arrays.toString(strs));
+
+        // Compatible reference arrays copied through a less precise static type.
+        Object src = new String[] {"x", "y", "z"};
+        Object dst = new CharSequence[3];
+        System.arraycopy(src, 0, dst, 0, 3);
+        System.out.println(Arrays.toString((Object[]) dst));
+
+        // Arrays are covariant: an Object[] variable may hold a String[].
+        Object[] covariant = new String[3];
+        Object[] mixed = {"p", 2, "q"};
+        try {
+            System.arraycopy(mixed, 0, covariant, 0, 3);
+        } catch (ArrayStoreException e) {
+            System.out.println("ArrayStoreException");
+        }
+        System.out.println(Arrays.toString(covariant));
+        Object[] sameClass = new String[] {"r", "s", "t"};
+        System.arraycopy(sameClass, 0, covariant, 0, 3);
+        System.out.println(Arrays.toString(covariant));
+
+        Object ints = new int[] {1, 2, 3};
+        Object longs = new long[3];
+        Object notArray = "not an array";
+        copy(ints, longs, 3);
+        copy(ints, notArray, 1);
+        copy(objs, ints, 1);
+        copy(ints, new int[2], 3);
+        copy(null, ints, 0);
+        // Mismatched primitive arrays fail whatever the indices.
+        copy(ints, longs, 10);
+        copy(ints, -1, longs, 5, 1);
+
+        // Overlapping copies within one array.
+        char[] cs = "abcdefgh".toCharArray();
+        System.arraycopy(cs, 0, cs, 2, 6);
+        System.out.println(new String(cs));
+        System.arraycopy(cs, 2, cs, 0, 6);
+        System.out.println(new String(cs));
+
+        // Typical array growth.
+        ArrayList<Integer> list = new ArrayList<>();
+        for (int i = 0; i < 100; ++i)
+            list.add(i);
+        list.remove(50);
+        list.add(0, -1);
+        System.out.println(list.size() + " " + list.get(0) + " " + list.get(51) + " " + list.get(99));
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 50; ++i)
+            sb.append(i % 10);
+        sb.insert(5, "--");
+        System.out.println(sb);
+    }
+
+    private static void copy(Object src, Object dst, int len) {
+        copy(src, 0, dst, 0, len);
+    }
+
+    private static void copy(Object src, int srcPos, Object dst, int dstPos, int len) {
+        try {
+            System.arraycopy(src, srcPos, dst, dstPos, len);
+            System.out.println("copied");
+        } catch (ArrayStoreException e) {
+            System.out.println("ArrayStoreException");
+        } catch (ArrayIndexOutOfBoundsException e) {
+            System.out.println("ArrayIndexOutOfBoundsException");
+        } catch (NullPointerException e) {
+            System.out.println("NullPointerException");
+        }
+    }
+}
@@ -0,0 +1,82 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+public class AsyncFiles {
+
+    public static void main(String[] args) throws Exception {
+        File[] files = new File[4];
+        try {
+            // Many positional writes in flight at once, over several files.
+            List<Future<Integer>> writes = new ArrayList<Future<Integer>>();
+            AsynchronousFileChannel[] channels = new AsynchronousFileChannel[files.length];
+            for (int i = 0; i < files.length; i++) {
+                files[i] = File.createTempFile("jlang-async", ".bin");
+                channels[i] = AsynchronousFileChannel.open(files[i].toPath(),
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+                for (int block = 0; block < 8; block++) {
+                    byte[] bytes = new byte[512];
+                    for (int j = 0; j < bytes.length; j++)
+                        bytes[j] = (byte) (i * 8 + block);
+                    writes.add(channels[i].write(ByteBuffer.wrap(bytes), block * 512L));
+                }
+            }
+            int written = 0;
+            for (Future<Integer> w : writes)
+                written += w.get();
+            System.out.println(written);
+
+            // And the reads back, out of order.
+            List<Future<Integer>> reads = new ArrayList<Future<Integer>>();
+            List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+            for (int block = 7; block >= 0; block--) {
+                for (int i = 0; i < files.length; i++) {
+                    ByteBuffer buf = ByteBuffer.allocate(512);
+                    buffers.add(buf);
+                    reads.add(channels[i].read(buf, block * 512L));
+                }
+            }
+            StringBuilder sb = new StringBuilder();
+            for (int k = 0; k < reads.size(); k++) {
+                int n = reads.get(k).get();
+                ByteBuffer buf = buffers.get(k);
+                sb.append(n == 512 ? buf.get(0) + buf.get(511) : -1).append(' ');
+            }
+            System.out.println(sb.toString().trim());
+
+            // Reading at the end of the file reports -1.
+            System.out.println(channels[0].size() + " "
+                    + channels[0].read(ByteBuffer.allocate(16), 4096).get());
+            for (AsynchronousFileChannel ch : channels)
+                ch.close();
+
+            // Ordinary reads see the same contents.
+            long sum = 0;
+            for (File f : files) {
+                RandomAccessFile raf = new RandomAccessFile(f, "r");
+                raf.seek(1024);
+                sum += raf.read();
+                raf.close();
+                FileInputStream in = new FileInputStream(f);
+                byte[] all = new byte[(int) f.length()];
+                int got = 0;
+                while (got < all.length)
+                    got += in.read(all, got, all.length - got);
+                in.close();
+                for (byte b : all)
+                    sum += b;
+            }
+            System.out.println(sum);
+        } finally {
+            for (File f : files)
+                if (f != null)
+                    System.out.println(f.delete());
+        }
+    }
+}
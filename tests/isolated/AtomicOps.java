@@ -0,0 +1,98 @@
+import java.lang.reflect.Field;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import sun.misc.Unsafe;
+
+public class AtomicOps {
+    private volatile int i;
+    private volatile long l;
+    private volatile Object o;
+
+    static class Node {
+        final int value;
+        final Node next;
+
+        Node(int value, Node next) {
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Field f = Unsafe.class.getDeclaredField("theUnsafe");
+        f.setAccessible(true);
+        Unsafe u = (Unsafe) f.get(null);
+
+        // Direct compare-and-swap on fields.
+        AtomicOps a = new AtomicOps();
+        long iOff = u.objectFieldOffset(AtomicOps.class.getDeclaredField("i"));
+        long lOff = u.objectFieldOffset(AtomicOps.class.getDeclaredField("l"));
+        long oOff = u.objectFieldOffset(AtomicOps.class.getDeclaredField("o"));
+        System.out.println(u.compareAndSwapInt(a, iOff, 0, 5) + " " + u.compareAndSwapInt(a, iOff, 0, 6));
+        System.out.println(u.compareAndSwapLong(a, lOff, 0, Long.MIN_VALUE)
+                + " " + u.compareAndSwapLong(a, lOff, 1, 2));
+        String s = "first";
+        System.out.println(u.compareAndSwapObject(a, oOff, null, s)
+                + " " + u.compareAndSwapObject(a, oOff, new String("first"), "second")
+                + " " + u.compareAndSwapObject(a, oOff, s, "third"));
+        System.out.println(a.i + " " + a.l + " " + a.o);
+
+        // Contended counters and a lock-free stack.
+        final AtomicInteger ai = new AtomicInteger();
+        final AtomicLong al = new AtomicLong(Long.MAX_VALUE);
+        final AtomicLongArray arr = new AtomicLongArray(4);
+        final AtomicReference<Node> top = new AtomicReference<>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int id = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int k = 0; k < 1000; k++) {
+                        ai.incrementAndGet();
+                        al.getAndAdd(-2);
+                        arr.addAndGet(k % 4, id);
+                        Node old;
+                        do {
+                            old = top.get();
+                        } while (!top.compareAndSet(old, new Node(k, old)));
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread t : threads)
+            t.join();
+        int count = 0;
+        long sum = 0;
+        for (Node n = top.get(); n != null; n = n.next) {
+            count++;
+            sum += n.value;
+        }
+        System.out.println(ai.get() + " " + al.get() + " " + arr + " " + count + " " + sum);
+        System.out.println(ai.getAndSet(-1) + " " + ai.decrementAndGet() + " " + top.getAndSet(null).value);
+        System.out.println(al.getAndIncrement() + " " + al.incrementAndGet() + " "
+                + al.getAndDecrement() + " " + al.addAndGet(10) + " " + al.getAndSet(7) + " "
+                + ai.getAndAdd(5) + " " + ai.addAndGet(-3) + " " + ai.getAndDecrement());
+
+        // Subclasses share the final update methods.
+        AtomicInteger sub = new AtomicInteger(41) {
+            @Override
+            public String toString() {
+                return "sub " + get();
+            }
+        };
+        System.out.println(sub.incrementAndGet() + " " + sub);
+
+        // A null receiver throws.
+        AtomicLong none = null;
+        try {
+            none.incrementAndGet();
+        } catch (NullPointerException e) {
+            System.out.println("NullPointerException");
+        }
+    }
+}
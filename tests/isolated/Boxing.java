@@ -0,0 +1,46 @@
+public class Boxing {
+    public static void main(String[] args) {
+        // Values inside the caches share boxes; values outside do not.
+        int[] ints = {-129, -128, -1, 0, 127, 128, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        for (int i : ints) {
+            Integer a = i, b = i;
+            System.out.println(i + " " + (a == b) + " " + a.equals(b));
+        }
+
+        long[] longs = {-129L, -128L, 127L, 128L, Long.MIN_VALUE};
+        for (long l : longs) {
+            Long a = l, b = l;
+            System.out.println(l + " " + (a == b) + " " + a.equals(b));
+        }
+
+        char[] chars = {'\0', 'a', '\u007f', '\u0080', '\uffff'};
+        for (char c : chars) {
+            Character a = c, b = c;
+            System.out.println((int) c + " " + (a == b) + " " + a.equals(b));
+        }
+
+        for (int i = -130; i < 130; i += 37) {
+            Short a = (short) i, b = (short) i;
+            Byte x = (byte) i, y = (byte) i;
+            System.out.println(i + " " + (a == b) + " " + (x == y) + " " + x);
+        }
+
+        Boolean t = true, f = false;
+        System.out.println((t == Boolean.TRUE) + " " + (f == Boolean.FALSE));
+
+        // Boxes immediately unboxed.
+        int n = 1000;
+        int m = (Integer) n;
+        long k = Long.valueOf(n).longValue();
+        Object o = n;
+        System.out.println(m + " " + k + " " + o);
+
+        java.util.Map<String, Integer> counts = new java.util.HashMap<>();
+        String[] words = {"a", "b", "a", "c", "a", "b"};
+        for (String w : words) {
+            Integer prev = counts.get(w);
+            counts.put(w, prev == null ? 1 : prev + 1);
+        }
+        System.out.println(counts.get("a") + " " + counts.get("b") + " " + counts.get("c"));
+    }
+}
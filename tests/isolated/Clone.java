@@ -0,0 +1,58 @@
+import java.util.Arrays;
+
+public class Clone implements Cloneable {
+    private int x;
+    private String name;
+    private long[] data;
+
+    private Clone(int x, String name) {
+        this.x = x;
+        this.name = name;
+        this.data = new long[] {x, x + 1};
+    }
+
+    private enum Color { RED, GREEN, BLUE }
+
+    public static void main(String[] args) throws Exception {
+        int[] ints = {1, 2, 3};
+        int[] intsCopy = ints.clone();
+        intsCopy[0] = 42;
+        System.out.println(Arrays.toString(ints) + " " + Arrays.toString(intsCopy));
+
+        byte[] empty = new byte[0];
+        System.out.println(empty.clone().length + " " + (empty.clone() != empty));
+
+        String[] strs = {"a", "b"};
+        String[] strsCopy = strs.clone();
+        System.out.println(strsCopy[0] + strsCopy[1] + " " + (strs[0] == strsCopy[0]));
+
+        int[][] grid = {{1, 2}, {3, 4}};
+        int[][] gridCopy = grid.clone();
+        gridCopy[0][0] = 9;
+        System.out.println(grid[0][0] + " " + (grid[1] == gridCopy[1]));
+
+        // Clone through a static type that is not an array.
+        Object o = new double[] {0.5, 1.5};
+        double[] ds = (double[]) ((double[]) o).clone();
+        System.out.println(Arrays.toString(ds) + " " + ds.getClass().getName());
+
+        Clone c = new Clone(7, "seven");
+        Clone cc = (Clone) c.clone();
+        cc.x = 8;
+        System.out.println(c.x + " " + cc.x + " " + cc.name + " " + (c.data == cc.data)
+                + " " + (cc.getClass() == Clone.class));
+
+        // A clone gets its own monitor.
+        synchronized (c) {
+            Clone c2 = (Clone) c.clone();
+            synchronized (c2) {
+                c2.notifyAll();
+            }
+            System.out.println(c2.x + " " + c2.name);
+        }
+
+        Color[] colors = Color.values();
+        colors[0] = null;
+        System.out.println(Arrays.toString(Color.values()));
+    }
+}
@@ -0,0 +1,125 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class CompactHeaders {
+
+    static class Counter {
+        int count;
+    }
+
+    static class Box {
+        private final Object lock = new Object();
+        private int value;
+        private boolean full;
+
+        void put(int v) throws InterruptedException {
+            synchronized (lock) {
+                while (full)
+                    lock.wait();
+                value = v;
+                full = true;
+                lock.notifyAll();
+            }
+        }
+
+        int take() throws InterruptedException {
+            synchronized (lock) {
+                while (!full)
+                    lock.wait();
+                full = false;
+                lock.notifyAll();
+                return value;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Objects and arrays of every element type keep their contents.
+        Object o = new Object();
+        boolean[] zs = {true, false};
+        byte[] bs = {1, -2};
+        char[] cs = {'a', 'b'};
+        short[] ss = {3, -4};
+        int[] is = {5, -6};
+        long[] ls = {7L, Long.MIN_VALUE};
+        float[] fs = {0.5f, -1.5f};
+        double[] ds = {2.5, -3.5};
+        String[] strs = {"x", "y"};
+        System.out.println(Arrays.toString(zs) + Arrays.toString(bs) + Arrays.toString(cs)
+                + Arrays.toString(ss) + Arrays.toString(is) + Arrays.toString(ls)
+                + Arrays.toString(fs) + Arrays.toString(ds) + Arrays.toString(strs));
+        System.out.println("literal".length() + " " + "literal".charAt(3));
+
+        // Identity hash codes are stable, including across locking.
+        int h = System.identityHashCode(o);
+        synchronized (o) {
+            System.out.println(h == System.identityHashCode(o));
+        }
+        System.out.println(h == o.hashCode());
+
+        // Nested and reentrant locking.
+        synchronized (o) {
+            synchronized (is) {
+                synchronized (o) {
+                    System.out.println("reentrant");
+                }
+            }
+        }
+
+        // Contended locking on many objects.
+        final Counter[] counters = new Counter[8];
+        for (int i = 0; i < counters.length; i++)
+            counters[i] = new Counter();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 1000; i++) {
+                        Counter c = counters[i % counters.length];
+                        synchronized (c) {
+                            c.count++;
+                        }
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        int total = 0;
+        for (Counter c : counters)
+            total += c.count;
+        System.out.println(total);
+
+        // Wait and notify.
+        final Box box = new Box();
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 1; i <= 5; i++)
+                        box.put(i);
+                } catch (InterruptedException e) {
+                    System.out.println("interrupted");
+                }
+            }
+        };
+        producer.start();
+        int sum = 0;
+        for (int i = 0; i < 5; i++)
+            sum += box.take();
+        producer.join();
+        System.out.println(sum);
+
+        // Clones get their own monitor.
+        int[] copy = is.clone();
+        synchronized (is) {
+            synchronized (copy) {
+                System.out.println(Arrays.toString(copy));
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class Concurrent {
+    private static int locked = 0;
+
+    public static void main(String[] args) throws Exception {
+        final int nThreads = 4;
+
+        // Contended map updates, all released at once.
+        final ConcurrentHashMap<Integer, Integer> map = new ConcurrentHashMap<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(nThreads);
+        final ReentrantLock lock = new ReentrantLock();
+        final AtomicLong atomic = new AtomicLong();
+        for (int t = 0; t < nThreads; t++) {
+            final int id = t;
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < 1000; i++) {
+                            map.put(id * 1000 + i, i);
+                            atomic.incrementAndGet();
+                            lock.lock();
+                            try {
+                                locked++;
+                            } finally {
+                                lock.unlock();
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        System.out.println("interrupted");
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        start.countDown();
+        done.await();
+        long sum = 0;
+        for (int v : map.values())
+            sum += v;
+        System.out.println(map.size() + " " + sum + " " + atomic.get() + " " + locked);
+
+        // A thread pool whose idle workers park on its queue.
+        ExecutorService pool = Executors.newFixedThreadPool(nThreads);
+        List<Future<Long>> results = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            final long n = i;
+            results.add(pool.submit(new Callable<Long>() {
+                @Override
+                public Long call() {
+                    return n * n;
+                }
+            }));
+        }
+        long squares = 0;
+        for (Future<Long> f : results)
+            squares += f.get();
+        pool.shutdown();
+        System.out.println(squares + " " + pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        // A permit granted before parking is consumed without blocking.
+        LockSupport.unpark(Thread.currentThread());
+        LockSupport.park();
+        // With the permit gone, nothing wakes the thread before the timeout.
+        long before = System.nanoTime();
+        LockSupport.parkNanos(20000000L);
+        System.out.println(System.nanoTime() - before >= 20000000L);
+
+        // Object.wait neither consumes nor grants LockSupport permits.
+        final Object monitor = new Object();
+        LockSupport.unpark(Thread.currentThread());
+        synchronized (monitor) {
+            monitor.wait(10);
+        }
+        before = System.nanoTime();
+        LockSupport.parkNanos(10000000000L);
+        System.out.println(System.nanoTime() - before < 5000000000L);
+
+        // Unpark and interrupt both wake a parked thread.
+        final Thread main = Thread.currentThread();
+        Thread parked = new Thread() {
+            @Override
+            public void run() {
+                LockSupport.park();
+                while (!Thread.currentThread().isInterrupted())
+                    LockSupport.park();
+                LockSupport.unpark(main);
+            }
+        };
+        parked.start();
+        parked.interrupt();
+        parked.join();
+        System.out.println("woken");
+    }
+}
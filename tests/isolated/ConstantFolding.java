@@ -0,0 +1,54 @@
+public class ConstantFolding {
+    static final int WIDTH = 3 * 4 + 1;
+    static final String GREETING = "Hello" + ", " + WIDTH;
+
+    static class Config {
+        static final boolean TRACE = false;
+        static final boolean DEBUG = !TRACE;
+        static final long MASK = (1L << 40) - 1;
+        static final char LETTER = (char) ('a' + 2);
+        static final double HALF = 1.0 / 2;
+
+        static {
+            System.out.println("Config initialized");
+        }
+
+        static int counter = 7;
+    }
+
+    public static void main(String[] args) {
+        System.out.println(WIDTH);
+        System.out.println(GREETING);
+        System.out.println(GREETING == "Hello, 13");
+
+        if (Config.TRACE) {
+            System.out.println("tracing");
+        }
+        if (Config.TRACE) {
+            System.out.println("tracing");
+        } else {
+            System.out.println("not tracing");
+        }
+        if (Config.DEBUG && args.length == 0) {
+            System.out.println("debug");
+        }
+        if (Config.TRACE || args.length == 0) {
+            System.out.println("no args");
+        }
+
+        System.out.println(Config.MASK);
+        System.out.println(Config.LETTER);
+        System.out.println(Config.HALF);
+        System.out.println(Config.DEBUG ? WIDTH : 0L);
+
+        // Only this access initializes Config.
+        System.out.println(Config.counter);
+        System.out.println(early());
+    }
+
+    static int early() {
+        if (Config.DEBUG)
+            return 1;
+        return 2;
+    }
+}
@@ -0,0 +1,46 @@
+import java.lang.reflect.Constructor;
+
+class ConstructorReflection {
+
+    final long l;
+    final double d;
+    final String s;
+
+    public ConstructorReflection(long l, double d, String s) {
+        this.l = l;
+        this.d = d;
+        this.s = s;
+    }
+
+    static void tryNew(Constructor<ConstructorReflection> ctor, Object... args) {
+        try {
+            ConstructorReflection cr = ctor.newInstance(args);
+            System.out.println(cr.l + " " + cr.d + " " + cr.s);
+        } catch (IllegalArgumentException e) {
+            System.out.println("IllegalArgumentException");
+        } catch (Exception e) {
+            System.out.println("unexpected " + e);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Constructor<ConstructorReflection> ctor =
+            ConstructorReflection.class.getConstructor(long.class, double.class, String.class);
+
+        tryNew(ctor, 1L, 2.5, "exact");
+
+        // Widening primitive conversions.
+        tryNew(ctor, 3, 4, "int");
+        tryNew(ctor, (byte) -5, 'a', "byte char");
+        tryNew(ctor, (short) 6, 1.5f, "short float");
+
+        // Wrong counts, nulls, and narrowing are rejected.
+        tryNew(ctor, 1L, 2.5);
+        tryNew(ctor, 1L, 2.5, "extra", "args");
+        tryNew(ctor, null, 2.5, "null");
+        tryNew(ctor, 1L, null, "null");
+        tryNew(ctor, 1.5, 2.5, "narrowing");
+        tryNew(ctor, true, 2.5, "boolean");
+        tryNew(ctor, 1L, 2.5, null);
+    }
+}
@@ -0,0 +1,72 @@
+import java.util.EnumMap;
+import java.util.Map;
+
+public class EnumSwitch {
+
+    enum State {
+        IDLE, RUNNING, BLOCKED {
+            @Override
+            String label() {
+                return "blocked!";
+            }
+        }, DONE;
+
+        String label() {
+            return name().toLowerCase();
+        }
+    }
+
+    enum Event { START, WAIT, WAKE, STOP }
+
+    public static void main(String[] args) {
+        State s = State.IDLE;
+        Event[] events = {Event.START, Event.WAIT, Event.WAKE, Event.WAIT, Event.STOP, Event.START};
+        for (Event e : events) {
+            s = step(s, e);
+            System.out.println(e + " -> " + s + " (" + s.label() + ", " + s.ordinal() + ")");
+        }
+
+        // Reads of values() that never expose the array.
+        for (State st : State.values()) {
+            System.out.print(st.ordinal() + ":" + st + " ");
+        }
+        System.out.println(State.values().length + " " + State.values()[2].label());
+
+        // The array returned to callers is still a fresh copy.
+        State[] copy = State.values();
+        copy[0] = null;
+        State.values()[1] = null;
+        System.out.println(copy[0] + " " + State.values()[0] + " " + State.values()[1]
+                + " " + (State.values() != State.values()));
+
+        Map<Event, Integer> counts = new EnumMap<>(Event.class);
+        for (Event e : events) {
+            Integer prev = counts.get(e);
+            counts.put(e, prev == null ? 1 : prev + 1);
+        }
+        System.out.println(counts);
+
+        System.out.println(ordinalOf(State.DONE) + " " + ordinalOf(Event.WAKE));
+    }
+
+    private static State step(State s, Event e) {
+        switch (s) {
+            case IDLE:
+                return e == Event.START ? State.RUNNING : s;
+            case RUNNING:
+                switch (e) {
+                    case WAIT: return State.BLOCKED;
+                    case STOP: return State.DONE;
+                    default: return s;
+                }
+            case BLOCKED:
+                return e == Event.WAKE ? State.RUNNING : s;
+            default:
+                return s;
+        }
+    }
+
+    private static <E extends Enum<E>> int ordinalOf(E e) {
+        return e.ordinal();
+    }
+}
@@ -0,0 +1,43 @@
+import java.lang.reflect.Field;
+
+public class FieldLayout {
+
+    static class Base {
+        byte b1 = 1;
+        long l1 = 2L;
+        byte b2 = 3;
+        int i1 = 4;
+        Object o1 = "o1";
+    }
+
+    static class Derived extends Base {
+        boolean z = true;
+        double d = 5.5;
+        char c = 'c';
+        String s = "s";
+        short sh = 6;
+        float f = 7.5f;
+        Object o2 = null;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Derived d = new Derived();
+        d.b1 = -1;
+        d.l1 = Long.MIN_VALUE;
+        d.b2 = -3;
+        d.i1 = Integer.MAX_VALUE;
+        d.o2 = d.o1;
+        d.sh = Short.MIN_VALUE;
+        System.out.println(d.b1 + " " + d.l1 + " " + d.b2 + " " + d.i1 + " " + d.o1);
+        System.out.println(d.z + " " + d.d + " " + d.c + " " + d.s + " " + d.sh + " " + d.f + " " + d.o2);
+
+        // Superclass code sees the same fields through a subclass instance.
+        Base b = d;
+        System.out.println(b.b1 + " " + b.l1 + " " + b.b2 + " " + b.i1 + " " + b.o1);
+
+        // Reflection uses the offsets recorded by the compiler.
+        Field fd = Derived.class.getDeclaredField("d");
+        Field fi = Base.class.getDeclaredField("i1");
+        System.out.println(fd.get(d) + " " + fi.get(d));
+    }
+}
@@ -0,0 +1,150 @@
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import jlang.runtime.FileBatch;
+
+// FileBatch has no natives on the JVM, which generates the solution, so the
+// JVM falls back to reading each file with a FileChannel.
+public class FileBatches {
+
+    static byte[][] readFiles(String[] paths) throws IOException {
+        try {
+            return FileBatch.readFiles(paths);
+        } catch (UnsatisfiedLinkError e) {
+            byte[][] res = new byte[paths.length][];
+            for (int i = 0; i < paths.length; i++) {
+                FileInputStream in = new FileInputStream(paths[i]);
+                try {
+                    res[i] = new byte[(int) in.getChannel().size()];
+                    int n = 0;
+                    while (n < res[i].length)
+                        n += in.read(res[i], n, res[i].length - n);
+                } finally {
+                    in.close();
+                }
+            }
+            return res;
+        }
+    }
+
+    static int[] read(FileChannel[] channels, FileDescriptor[] fds, long[] positions,
+                      byte[][] buffers) throws IOException {
+        try {
+            return FileBatch.read(fds, positions, buffers);
+        } catch (UnsatisfiedLinkError e) {
+            int[] res = new int[fds.length];
+            for (int i = 0; i < fds.length; i++)
+                res[i] = channels[i].read(ByteBuffer.wrap(buffers[i]), positions[i]);
+            return res;
+        }
+    }
+
+    static File write(int size, int seed) throws IOException {
+        File f = File.createTempFile("jlang-batch", ".bin");
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++)
+            bytes[i] = (byte) (i * 31 + seed);
+        FileOutputStream out = new FileOutputStream(f);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+        return f;
+    }
+
+    static long checksum(byte[] bytes, int len) {
+        long sum = 0;
+        for (int i = 0; i < len; i++)
+            sum = sum * 31 + bytes[i];
+        return sum;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = {0, 1, 4096, 100000, 7};
+        File[] files = new File[sizes.length];
+        try {
+            // Whole files, including an empty one, in a single batch.
+            String[] paths = new String[files.length];
+            for (int i = 0; i < files.length; i++) {
+                files[i] = write(sizes[i], i);
+                paths[i] = files[i].getPath();
+            }
+            byte[][] contents = readFiles(paths);
+            for (byte[] bytes : contents)
+                System.out.println(bytes.length + " " + checksum(bytes, bytes.length));
+
+            // A missing file fails the whole batch.
+            File missing = new File(files[0].getPath() + ".missing");
+            try {
+                readFiles(new String[] {paths[1], missing.getPath()});
+                System.out.println("read a missing file");
+            } catch (FileNotFoundException e) {
+                System.out.println("FileNotFoundException");
+            }
+
+            // More files than the limit on open file descriptors, which the
+            // Makefile lowers for this test.
+            File dir = File.createTempFile("jlang-batch", ".dir");
+            dir.delete();
+            dir.mkdir();
+            String[] many = new String[2000];
+            try {
+                for (int i = 0; i < many.length; i++) {
+                    File f = new File(dir, "f" + i);
+                    FileOutputStream out = new FileOutputStream(f);
+                    try {
+                        for (int j = 0; j < i % 97; j++)
+                            out.write(i + j);
+                    } finally {
+                        out.close();
+                    }
+                    many[i] = f.getPath();
+                }
+                long total = 0;
+                long sum = 0;
+                for (byte[] bytes : readFiles(many)) {
+                    total += bytes.length;
+                    sum = sum * 31 + checksum(bytes, bytes.length);
+                }
+                System.out.println(many.length + " files " + total + " " + sum);
+            } finally {
+                for (String path : many)
+                    if (path != null)
+                        new File(path).delete();
+                dir.delete();
+            }
+
+            // Positional reads, which may be short, or -1 at end of file.
+            RandomAccessFile raf = new RandomAccessFile(files[3], "r");
+            try {
+                long[] positions = {0, 50000, 99990, 100000, 200000};
+                FileChannel[] channels = new FileChannel[positions.length];
+                FileDescriptor[] fds = new FileDescriptor[positions.length];
+                byte[][] buffers = new byte[positions.length][];
+                for (int i = 0; i < positions.length; i++) {
+                    channels[i] = raf.getChannel();
+                    fds[i] = raf.getFD();
+                    buffers[i] = new byte[16];
+                }
+                int[] counts = read(channels, fds, positions, buffers);
+                for (int i = 0; i < counts.length; i++)
+                    System.out.println(counts[i] + " " + checksum(buffers[i], Math.max(counts[i], 0)));
+                // The file pointer does not move.
+                System.out.println(raf.getFilePointer());
+            } finally {
+                raf.close();
+            }
+        } finally {
+            for (File f : files)
+                if (f != null)
+                    f.delete();
+        }
+    }
+}
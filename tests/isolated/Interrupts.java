@@ -0,0 +1,142 @@
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
+
+public class Interrupts {
+
+    public static void main(String[] args) throws Exception {
+        final Object lock = new Object();
+
+        // Interrupting a thread blocked in wait, sleep, or park wakes it.
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                synchronized (lock) {
+                    try {
+                        lock.wait();
+                        System.out.println("notified");
+                    } catch (InterruptedException e) {
+                        System.out.println("wait interrupted " + isInterrupted());
+                    }
+                }
+            }
+        };
+        Thread sleeper = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(600000);
+                    System.out.println("slept");
+                } catch (InterruptedException e) {
+                    System.out.println("sleep interrupted " + isInterrupted());
+                }
+            }
+        };
+        Thread parker = new Thread() {
+            @Override
+            public void run() {
+                LockSupport.parkNanos(600000000000L);
+                System.out.println("park returned " + Thread.interrupted());
+            }
+        };
+        for (Thread t : new Thread[] {waiter, sleeper, parker}) {
+            long start = System.currentTimeMillis();
+            t.start();
+            Thread.sleep(50);
+            t.interrupt();
+            t.join();
+            System.out.println(System.currentTimeMillis() - start < 60000);
+        }
+
+        // A pending interrupt makes the next blocking call throw immediately.
+        Thread.currentThread().interrupt();
+        try {
+            Thread.sleep(600000);
+        } catch (InterruptedException e) {
+            System.out.println("pending " + Thread.currentThread().isInterrupted());
+        }
+        Thread.currentThread().interrupt();
+        synchronized (lock) {
+            try {
+                lock.wait(600000);
+            } catch (InterruptedException e) {
+                System.out.println("pending " + Thread.interrupted());
+            }
+        }
+
+        // Timed waits and sleeps still time out.
+        long start = System.currentTimeMillis();
+        synchronized (lock) {
+            lock.wait(100);
+        }
+        Thread.sleep(100);
+        long elapsed = System.currentTimeMillis() - start;
+        System.out.println(elapsed >= 190 && elapsed < 60000);
+
+        // Interrupting a waiter does not need its monitor, which another
+        // thread may hold while it waits for the interrupter.
+        final Object monitor = new Object();
+        final CountDownLatch waiting = new CountDownLatch(1);
+        final CountDownLatch holding = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        Thread blocked = new Thread() {
+            @Override
+            public void run() {
+                synchronized (monitor) {
+                    waiting.countDown();
+                    try {
+                        monitor.wait();
+                        System.out.println("notified");
+                    } catch (InterruptedException e) {
+                        System.out.println("wait interrupted while held");
+                    }
+                }
+            }
+        };
+        Thread holder = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    waiting.await();
+                    synchronized (monitor) {
+                        holding.countDown();
+                        interrupted.await();
+                    }
+                } catch (InterruptedException e) {
+                    System.out.println("unexpected");
+                }
+            }
+        };
+        blocked.start();
+        holder.start();
+        holding.await();
+        blocked.interrupt();
+        interrupted.countDown();
+        holder.join();
+        blocked.join();
+
+        // A waiter that is notified and then interrupted before it gets the
+        // monitor back returns normally, so the notification is not lost.
+        final CountDownLatch parked = new CountDownLatch(1);
+        Thread notified = new Thread() {
+            @Override
+            public void run() {
+                synchronized (monitor) {
+                    parked.countDown();
+                    try {
+                        monitor.wait();
+                        System.out.println("notified " + isInterrupted());
+                    } catch (InterruptedException e) {
+                        System.out.println("notification lost");
+                    }
+                }
+            }
+        };
+        notified.start();
+        parked.await();
+        synchronized (monitor) {
+            monitor.notify();
+            notified.interrupt();
+        }
+        notified.join();
+    }
+}
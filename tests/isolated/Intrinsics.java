@@ -0,0 +1,78 @@
+import java.util.Arrays;
+
+public class Intrinsics {
+    public static void main(String[] args) {
+        double[] ds = {0.0, -0.0, 2.0, -3.5, Double.NaN, Double.POSITIVE_INFINITY};
+        for (double d : ds) {
+            System.out.println(Math.sqrt(d) + " " + Math.abs(d) + " " + Math.abs((float) d));
+        }
+
+        int[] is = {0, 1, -1, 42, Integer.MIN_VALUE, Integer.MAX_VALUE};
+        for (int a : is) {
+            for (int b : is) {
+                System.out.print(Math.min(a, b) + "," + Math.max(a, b) + " ");
+            }
+            System.out.println(Math.abs(a) + " " + Integer.bitCount(a)
+                    + " " + Integer.numberOfLeadingZeros(a)
+                    + " " + Integer.numberOfTrailingZeros(a)
+                    + " " + Float.intBitsToFloat(a));
+        }
+
+        long[] ls = {0L, -1L, 1L << 40, Long.MIN_VALUE, Long.MAX_VALUE};
+        for (long l : ls) {
+            System.out.println(Math.abs(l) + " " + Math.min(l, 7L) + " " + Math.max(l, 7L)
+                    + " " + Long.bitCount(l) + " " + Long.numberOfLeadingZeros(l)
+                    + " " + Long.numberOfTrailingZeros(l) + " " + Double.longBitsToDouble(l));
+        }
+        System.out.println(Float.floatToRawIntBits(1.5f) + " " + Double.doubleToRawLongBits(-2.0));
+
+        // Array copies, including overlapping ranges.
+        int[] src = {1, 2, 3, 4, 5, 6, 7, 8};
+        int[] dest = new int[8];
+        System.arraycopy(src, 2, dest, 0, 4);
+        System.out.println(Arrays.toString(dest));
+        System.arraycopy(src, 0, src, 1, 7);
+        System.out.println(Arrays.toString(src));
+        System.arraycopy(src, 1, src, 0, 7);
+        System.out.println(Arrays.toString(src));
+
+        String[] strs = {"a", "b", "c"};
+        Object[] objs = new Object[3];
+        System.arraycopy(strs, 0, objs, 0, 3);
+        System.out.println(Arrays.toString(objs));
+
+        tryCopy(src, -1, dest, 0, 1);
+        tryCopy(src, 0, dest, 0, 9);
+        tryCopy(src, 0, dest, 5, 4);
+        tryCopy(src, 0, dest, 0, -1);
+        tryCopy(null, 0, dest, 0, 1);
+        tryCopy(src, 0, null, 0, 1);
+        tryCopy(src, 8, dest, 8, 0);
+
+        byte[] bytes = new byte[5];
+        Arrays.fill(bytes, (byte) -3);
+        boolean[] bools = new boolean[3];
+        Arrays.fill(bools, true);
+        long[] longs = new long[4];
+        Arrays.fill(longs, 9L);
+        double[] doubles = new double[2];
+        Arrays.fill(doubles, 0.5);
+        System.out.println(Arrays.toString(bytes) + Arrays.toString(bools)
+                + Arrays.toString(longs) + Arrays.toString(doubles));
+
+        String s = "abc";
+        String t = new String("abc");
+        System.out.println(s.equals(s) + " " + s.equals(t) + " " + s.equals(null) + " " + s.equals("abd"));
+    }
+
+    private static void tryCopy(int[] src, int srcPos, int[] dest, int destPos, int len) {
+        try {
+            System.arraycopy(src, srcPos, dest, destPos, len);
+            System.out.println("copied");
+        } catch (IndexOutOfBoundsException e) {
+            System.out.println("out of bounds");
+        } catch (NullPointerException e) {
+            System.out.println("null");
+        }
+    }
+}
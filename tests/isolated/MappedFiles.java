@@ -0,0 +1,69 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+public class MappedFiles {
+
+    public static void main(String[] args) throws Exception {
+        File f = File.createTempFile("jlang-mapped", ".bin");
+        try {
+            RandomAccessFile raf = new RandomAccessFile(f, "rw");
+            raf.setLength(4096);
+            raf.seek(100);
+            System.out.println(raf.length() + " " + raf.getFilePointer());
+            raf.seek(0);
+            FileChannel ch = raf.getChannel();
+
+            // Writes through a read-write mapping reach the file.
+            MappedByteBuffer rw = ch.map(FileChannel.MapMode.READ_WRITE, 0, 4096);
+            System.out.println(rw.isDirect() + " " + rw.capacity() + " " + rw.order());
+            rw.putInt(0, 0x01020304);
+            rw.putLong(8, -2L);
+            rw.put(100, (byte) 42);
+            rw.order(ByteOrder.LITTLE_ENDIAN).putInt(16, 0x01020304);
+            rw.force();
+            raf.getFD().sync();
+
+            byte[] head = new byte[20];
+            FileInputStream in = new FileInputStream(f);
+            in.read(head);
+            in.close();
+            StringBuilder sb = new StringBuilder();
+            for (byte b : head)
+                sb.append(b).append(' ');
+            System.out.println(sb.toString().trim());
+
+            // A read-only mapping of part of the file.
+            MappedByteBuffer ro = ch.map(FileChannel.MapMode.READ_ONLY, 8, 100);
+            System.out.println(ro.isReadOnly() + " " + ro.getLong(0) + " " + ro.get(92)
+                    + " " + Integer.toHexString(ro.order(ByteOrder.LITTLE_ENDIAN).getInt(8)));
+            long sum = 0;
+            while (ro.hasRemaining())
+                sum += ro.get();
+            System.out.println(sum);
+
+            // Mappings that are never cleaned explicitly are unmapped once
+            // unreachable.
+            long total = 0;
+            for (int i = 0; i < 10000; i++) {
+                MappedByteBuffer m = ch.map(FileChannel.MapMode.READ_ONLY, 0, 4);
+                total += m.get(3);
+            }
+            System.out.println(total);
+
+            // Direct buffers outside of any file.
+            ByteBuffer direct = ByteBuffer.allocateDirect(64);
+            direct.putDouble(1.5).putShort((short) -3).flip();
+            System.out.println(direct.getDouble() + " " + direct.getShort() + " " + direct.remaining());
+
+            ch.close();
+            raf.close();
+        } finally {
+            System.out.println(f.delete());
+        }
+    }
+}
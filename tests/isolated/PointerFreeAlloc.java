@@ -0,0 +1,91 @@
+import java.util.Arrays;
+
+public class PointerFreeAlloc {
+
+    static class Point {
+        int x, y;
+        double weight;
+    }
+
+    static class Node {
+        int value;
+        Node next;
+    }
+
+    static class Tagged extends Point {
+        String tag;
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Fresh objects and arrays are zeroed.
+        Point p = new Point();
+        System.out.println(p.x + " " + p.y + " " + p.weight);
+        long[] ls = new long[4];
+        char[] cs = new char[3];
+        boolean[][] grid = new boolean[2][3];
+        System.out.println(Arrays.toString(ls) + " " + (int) cs[2] + " " + grid[1][2]);
+
+        // Objects reachable only from a reference-holding object survive collection.
+        Node head = null;
+        for (int i = 0; i < 1000; i++) {
+            Node n = new Node();
+            n.value = i;
+            n.next = head;
+            head = n;
+        }
+        int[][] rows = new int[100][];
+        for (int i = 0; i < rows.length; i++)
+            rows[i] = new int[] {i, i * i};
+        Tagged t = new Tagged();
+        t.tag = "tag" + rows.length;
+        t.x = 3;
+
+        for (int i = 0; i < 100000; i++) {
+            byte[] garbage = new byte[64];
+            garbage[0] = (byte) i;
+        }
+        System.gc();
+
+        long sum = 0;
+        for (Node n = head; n != null; n = n.next)
+            sum += n.value;
+        long squares = 0;
+        for (int[] row : rows)
+            squares += row[1];
+        System.out.println(sum + " " + squares + " " + t.tag + " " + t.x);
+
+        // Monitors of pointer-free objects survive collection.
+        final int[] counter = new int[1];
+        final Point lock = new Point();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        synchronized (counter) {
+                            counter[0]++;
+                        }
+                        synchronized (lock) {
+                            lock.x++;
+                        }
+                        if (j % 100 == 0)
+                            System.gc();
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        System.out.println(counter[0] + " " + lock.x);
+
+        // Clones of primitive arrays.
+        double[] ds = {1.5, 2.5};
+        double[] dsCopy = ds.clone();
+        synchronized (dsCopy) {
+            dsCopy[0] = 0;
+        }
+        System.out.println(Arrays.toString(ds) + " " + Arrays.toString(dsCopy));
+    }
+}
@@ -0,0 +1,82 @@
+import java.util.Arrays;
+import java.util.Comparator;
+
+// Compiled with -share-anon-instances (see the Makefile).
+public class SharedAnonInstances {
+    private final String name = "outer";
+
+    // Stateless, and never uses the enclosing instance.
+    Comparator<Integer> descending() {
+        return new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return b.compareTo(a);
+            }
+        };
+    }
+
+    // Uses the enclosing instance, so every call creates a new object.
+    Runnable greeter() {
+        return new Runnable() {
+            public void run() {
+                System.out.println("hello from " + name);
+            }
+        };
+    }
+
+    static Comparator<String> byLength() {
+        return new Comparator<String>() {
+            public int compare(String a, String b) {
+                return a.length() - b.length();
+            }
+        };
+    }
+
+    public static void main(String[] args) throws Exception {
+        SharedAnonInstances outer = new SharedAnonInstances();
+
+        Integer[] xs = {5, 1, 9, 3, 7};
+        Arrays.sort(xs, outer.descending());
+        System.out.println(Arrays.toString(xs));
+
+        String[] words = {"ccc", "a", "bb"};
+        Arrays.sort(words, byLength());
+        System.out.println(Arrays.toString(words));
+
+        outer.greeter().run();
+
+        // The first use from many threads at once must still yield a working
+        // comparator in each of them.
+        final Comparator<?>[] seen = new Comparator<?>[8];
+        Thread[] threads = new Thread[seen.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int id = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    seen[id] = id % 2 == 0 ? byLength() : new SharedAnonInstances().descending();
+                }
+            };
+        }
+        for (Thread t : threads)
+            t.start();
+        for (Thread t : threads)
+            t.join();
+
+        int sorted = 0;
+        for (int i = 0; i < seen.length; i++) {
+            if (i % 2 == 0) {
+                @SuppressWarnings("unchecked")
+                Comparator<String> c = (Comparator<String>) seen[i];
+                String[] ws = {"dddd", "a", "ccc", "bb"};
+                Arrays.sort(ws, c);
+                sorted += ws[0].equals("a") ? 1 : 0;
+            } else {
+                @SuppressWarnings("unchecked")
+                Comparator<Integer> c = (Comparator<Integer>) seen[i];
+                Integer[] ys = {2, 8, 4};
+                Arrays.sort(ys, c);
+                sorted += ys[0] == 8 ? 1 : 0;
+            }
+        }
+        System.out.println("sorted in " + sorted + " threads");
+    }
+}
@@ -0,0 +1,114 @@
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+public class Sockets {
+
+    public static void main(String[] args) throws Exception {
+        InetAddress loopback = InetAddress.getByName("127.0.0.1");
+
+        // Blocking sockets, with an echo server on another thread.
+        final ServerSocket server = new ServerSocket(0, 50, loopback);
+        Thread echo = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Socket s = server.accept();
+                    InputStream in = s.getInputStream();
+                    OutputStream out = s.getOutputStream();
+                    byte[] buf = new byte[64];
+                    int n;
+                    while ((n = in.read(buf)) > 0)
+                        out.write(buf, 0, n);
+                    s.close();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+        echo.start();
+
+        Socket client = new Socket(loopback, server.getLocalPort());
+        client.setTcpNoDelay(true);
+        System.out.println(client.getTcpNoDelay() + " " + (client.getReceiveBufferSize() > 0));
+        client.getOutputStream().write("hello".getBytes("UTF-8"));
+        byte[] reply = new byte[5];
+        int got = 0;
+        while (got < reply.length)
+            got += client.getInputStream().read(reply, got, reply.length - got);
+        System.out.println(new String(reply, "UTF-8") + " " + client.getInputStream().available());
+
+        // Reads time out when nothing arrives.
+        client.setSoTimeout(50);
+        try {
+            client.getInputStream().read();
+            System.out.println("unexpected");
+        } catch (SocketTimeoutException e) {
+            System.out.println("timed out");
+        }
+        client.shutdownOutput();
+        System.out.println(client.getInputStream().read());
+        client.close();
+        echo.join();
+        server.close();
+
+        // Non-blocking channels driven by a selector.
+        Selector selector = Selector.open();
+        ServerSocketChannel acceptor = ServerSocketChannel.open();
+        acceptor.configureBlocking(false);
+        acceptor.socket().bind(new InetSocketAddress(loopback, 0));
+        acceptor.register(selector, SelectionKey.OP_ACCEPT);
+
+        SocketChannel channel = SocketChannel.open();
+        channel.configureBlocking(false);
+        channel.connect(new InetSocketAddress(loopback, acceptor.socket().getLocalPort()));
+        channel.register(selector, SelectionKey.OP_CONNECT);
+
+        ByteBuffer received = ByteBuffer.allocate(64);
+        boolean done = false;
+        while (!done) {
+            selector.select(10000);
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if (key.isAcceptable()) {
+                    SocketChannel accepted = acceptor.accept();
+                    accepted.configureBlocking(false);
+                    accepted.register(selector, SelectionKey.OP_READ);
+                } else if (key.isConnectable()) {
+                    SocketChannel c = (SocketChannel) key.channel();
+                    System.out.println("connected " + c.finishConnect());
+                    c.write(ByteBuffer.wrap("over nio".getBytes("UTF-8")));
+                    c.shutdownOutput();
+                    key.interestOps(0);
+                } else if (key.isReadable()) {
+                    SocketChannel c = (SocketChannel) key.channel();
+                    if (c.read(received) < 0) {
+                        key.cancel();
+                        c.close();
+                        done = true;
+                    }
+                }
+            }
+        }
+        received.flip();
+        byte[] bytes = new byte[received.remaining()];
+        received.get(bytes);
+        System.out.println(new String(bytes, "UTF-8"));
+
+        channel.close();
+        acceptor.close();
+        selector.close();
+    }
+}
@@ -0,0 +1,39 @@
+public class StringConcat {
+    private static int counter = 0;
+
+    public static void main(String[] args) {
+        int i = -42;
+        long l = Long.MIN_VALUE;
+        char c = 'x';
+        boolean b = false;
+        byte by = (byte) -128;
+        short sh = (short) 32767;
+        String nullStr = null;
+        Object o = new StringConcat();
+
+        System.out.println("int " + i + ", long " + l + ", char " + c + ", bool " + b);
+        System.out.println("byte " + by + " short " + sh + " zero " + (i - i));
+        System.out.println("min " + Integer.MIN_VALUE + i + " max " + Long.MAX_VALUE);
+        System.out.println(nullStr + " " + o + " " + null);
+        System.out.println(1 + 2 + "," + 1 + 2 + "," + (1 + 2));
+        System.out.println(c + "" + 'y' + (char) (c + 1));
+        System.out.println("a" + ("b" + i + "c") + "d");
+        System.out.println(i + (l + "") + b);
+
+        // Operands are evaluated exactly once, left to right.
+        System.out.println(next() + "-" + next() + "-" + next());
+
+        String s = "x";
+        s += i;
+        s += "y" + c;
+        System.out.println(s);
+    }
+
+    private static int next() {
+        return ++counter;
+    }
+
+    public String toString() {
+        return "StringConcat(" + counter + ")";
+    }
+}
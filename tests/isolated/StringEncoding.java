@@ -0,0 +1,42 @@
+import java.io.File;
+import java.util.Arrays;
+
+public class StringEncoding {
+
+    static class Naïve {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String ascii = "plain ascii";
+        String latin1 = "café über ÿ";
+        String bmp = "€ 中文 \u0000 end";
+
+        for (String s : new String[] {ascii, latin1, bmp, ""}) {
+            byte[] utf8 = s.getBytes("UTF-8");
+            String back = new String(utf8, "UTF-8");
+            System.out.println(s.length() + " " + utf8.length + " " + back.equals(s)
+                    + " " + (back.hashCode() == s.hashCode()));
+        }
+
+        // Interning compares full chars, not just their low bytes.
+        String a = new String(new char[] {'ā'});
+        String b = new String(new char[] {'ȁ'});
+        System.out.println((a.intern() == b.intern()) + " " + (a.intern() == "ā"));
+        System.out.println(new StringBuilder("caf").append('é').toString().intern() == "café");
+
+        // Names come back from the runtime through its UTF-8 conversions.
+        System.out.println(Naïve.class.getSimpleName().length());
+        System.out.println(Arrays.toString(Naïve.class.getName().getBytes("UTF-8")));
+
+        File f = File.createTempFile("jlang-été-", ".txt");
+        try {
+            System.out.println(f.exists() + " " + f.getName().startsWith("jlang-été-"));
+            boolean listed = false;
+            for (String name : f.getParentFile().list())
+                listed |= name.equals(f.getName());
+            System.out.println(listed);
+        } finally {
+            System.out.println(f.delete());
+        }
+    }
+}
@@ -0,0 +1,44 @@
+public class StringSwitch {
+    public static void main(String[] args) {
+        String[] keys = {"Aa", "BB", "AaAa", "BBBB", "AaBB", "get", "put", "", "missing"};
+        for (String key : keys) {
+            System.out.println(key + " -> " + dispatch(key));
+        }
+
+        try {
+            dispatch(null);
+        } catch (NullPointerException e) {
+            System.out.println("caught NPE");
+        }
+
+        // No labels other than default.
+        switch ("x") {
+            default:
+                System.out.println("default only");
+        }
+    }
+
+    static int dispatch(String key) {
+        // "Aa" and "BB" have the same hash code, as do "AaAa", "BBBB", and "AaBB".
+        switch (key) {
+            case "Aa":
+                return 1;
+            case "BB":
+                return 2;
+            case "AaAa":
+            case "BBBB":
+                return 3;
+            case "AaBB":
+                System.out.println("fall through");
+            case "get":
+                return 4;
+            case "put":
+                break;
+            case "":
+                return 6;
+            default:
+                return -1;
+        }
+        return 5;
+    }
+}
@@ -0,0 +1,63 @@
+public class SynchronizedMethods {
+    private int count;
+
+    public static void main(String[] args) {
+        SynchronizedMethods obj = new SynchronizedMethods();
+        obj.incrementTwice();
+        System.out.println(obj.get());
+
+        System.out.println(staticOuter(3));
+
+        try {
+            obj.fail();
+        } catch (RuntimeException e) {
+            System.out.println("caught e: " + e.getMessage());
+        }
+        synchronized (obj) {
+            System.out.println("Acquired lock after exception");
+        }
+
+        SynchronizedMethods sub = new Unsynchronized();
+        sub.incrementTwice();
+        System.out.println(sub.get());
+    }
+
+    public synchronized void incrementTwice() {
+        increment();
+        increment();
+    }
+
+    protected synchronized void increment() {
+        count += 1;
+    }
+
+    private synchronized void incrementPrivate() {
+        count += 10;
+    }
+
+    public final synchronized int get() {
+        incrementPrivate();
+        return count;
+    }
+
+    public synchronized void fail() {
+        increment();
+        throw new RuntimeException("thrown while locked");
+    }
+
+    public static synchronized int staticOuter(int n) {
+        return n <= 0 ? 0 : n + staticInner(n - 1);
+    }
+
+    private static synchronized int staticInner(int n) {
+        return staticOuter(n);
+    }
+
+    static class Unsynchronized extends SynchronizedMethods {
+        @Override
+        protected void increment() {
+            System.out.println("unsynchronized override");
+            super.increment();
+        }
+    }
+}
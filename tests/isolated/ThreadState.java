@@ -0,0 +1,76 @@
+import java.util.ArrayList;
+import java.util.List;
+
+public class ThreadState {
+
+    public static void main(String[] args) throws Exception {
+        final Thread main = Thread.currentThread();
+        System.out.println(main.getName() + " " + main.isAlive() + " " + main.isInterrupted());
+
+        // Interrupt status of the current thread.
+        main.interrupt();
+        System.out.println(main.isInterrupted() + " " + Thread.interrupted() + " " + Thread.interrupted());
+
+        // Liveness and interrupts across a thread's lifetime.
+        Thread t = new Thread() {
+            @Override
+            public void run() {
+                while (!isInterrupted())
+                    Thread.yield();
+                System.out.println(Thread.interrupted() + " " + Thread.interrupted());
+                System.out.println((Thread.currentThread() == this) + " " + (Thread.currentThread() != main));
+            }
+        };
+        System.out.println(t.isAlive() + " " + t.isInterrupted());
+        t.start();
+        System.out.println(t.isAlive());
+        t.interrupt();
+        t.join();
+        System.out.println(t.isAlive() + " " + t.isInterrupted());
+
+        // Many short-lived threads, each seeing itself as current.
+        final int[] ok = new int[1];
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Thread s = new Thread() {
+                @Override
+                public void run() {
+                    if (Thread.currentThread() == this && !isInterrupted()) {
+                        synchronized (ok) {
+                            ok[0]++;
+                        }
+                    }
+                }
+            };
+            threads.add(s);
+            s.start();
+        }
+        for (Thread s : threads)
+            s.join();
+        System.out.println(ok[0]);
+
+        // A daemon thread does not keep the program alive, but a
+        // non-daemon thread does.
+        Thread daemon = new Thread() {
+            @Override
+            public void run() {
+                while (true)
+                    Thread.yield();
+            }
+        };
+        daemon.setDaemon(true);
+        daemon.start();
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    System.out.println("unexpected");
+                }
+                System.out.println("last");
+            }
+        }.start();
+        System.out.println("main done");
+    }
+}
@@ -0,0 +1,73 @@
+import java.lang.reflect.Field;
+import java.util.Arrays;
+
+import sun.misc.Unsafe;
+
+public class UnsafeMemory {
+    private int i = 7;
+    private long l = 8L;
+    private boolean z = true;
+    private Object o = "field";
+
+    public static void main(String[] args) throws Exception {
+        Field f = Unsafe.class.getDeclaredField("theUnsafe");
+        f.setAccessible(true);
+        Unsafe u = (Unsafe) f.get(null);
+
+        // Raw addresses, including unaligned accesses.
+        long addr = u.allocateMemory(64);
+        u.setMemory(addr, 64, (byte) 0);
+        u.putByte(addr, (byte) -1);
+        u.putShort(addr + 1, (short) 0x1234);
+        u.putChar(addr + 3, 'x');
+        u.putInt(addr + 5, 0xCAFEBABE);
+        u.putLong(addr + 9, Long.MIN_VALUE + 1);
+        u.putFloat(addr + 17, 1.25f);
+        u.putDouble(addr + 21, -2.5);
+        u.putAddress(addr + 32, addr);
+        System.out.println(u.getByte(addr) + " " + u.getShort(addr + 1) + " " + u.getChar(addr + 3)
+                + " " + Integer.toHexString(u.getInt(addr + 5)) + " " + u.getLong(addr + 9)
+                + " " + u.getFloat(addr + 17) + " " + u.getDouble(addr + 21)
+                + " " + (u.getAddress(addr + 32) == addr));
+
+        // Overlapping copies, and fills.
+        for (int k = 0; k < 8; k++)
+            u.putByte(addr + 40 + k, (byte) k);
+        u.copyMemory(addr + 40, addr + 41, 7);
+        u.setMemory(addr + 48, 4, (byte) 9);
+        byte[] bytes = new byte[12];
+        for (int k = 0; k < bytes.length; k++)
+            bytes[k] = u.getByte(addr + 40 + k);
+        System.out.println(Arrays.toString(bytes));
+        u.freeMemory(addr);
+
+        // Object-relative accesses.
+        UnsafeMemory m = new UnsafeMemory();
+        long iOff = u.objectFieldOffset(UnsafeMemory.class.getDeclaredField("i"));
+        long lOff = u.objectFieldOffset(UnsafeMemory.class.getDeclaredField("l"));
+        long zOff = u.objectFieldOffset(UnsafeMemory.class.getDeclaredField("z"));
+        long oOff = u.objectFieldOffset(UnsafeMemory.class.getDeclaredField("o"));
+        u.putInt(m, iOff, u.getInt(m, iOff) + 1);
+        u.putLong(m, lOff, u.getLong(m, lOff) * 2);
+        u.putBoolean(m, zOff, !u.getBoolean(m, zOff));
+        u.putObject(m, oOff, u.getObject(m, oOff) + "!");
+        System.out.println(m.i + " " + m.l + " " + m.z + " " + m.o);
+
+        // Arrays, and copies between the heap and raw memory.
+        int[] ints = {1, 2, 3, 4};
+        long base = u.arrayBaseOffset(int[].class);
+        long scale = u.arrayIndexScale(int[].class);
+        u.putInt(ints, base + 2 * scale, 30);
+        long buf = u.allocateMemory(16);
+        u.copyMemory(ints, base, null, buf, 16);
+        int[] back = new int[4];
+        u.copyMemory(null, buf, back, base, 16);
+        u.freeMemory(buf);
+        System.out.println(Arrays.toString(ints) + " " + Arrays.toString(back));
+
+        long[] longs = new long[3];
+        long lBase = u.arrayBaseOffset(long[].class);
+        u.setMemory(longs, lBase, 3 * 8, (byte) 1);
+        System.out.println(Long.toHexString(longs[2]) + " " + (u.pageSize() > 0));
+    }
+}
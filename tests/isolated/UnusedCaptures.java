@@ -0,0 +1,81 @@
+import java.util.Arrays;
+import java.util.Comparator;
+
+public class UnusedCaptures {
+    private int base = 100;
+
+    class Inner {
+        int plusBase(int x) {
+            return x + base;
+        }
+    }
+
+    class Unused {
+        int twice(int x) {
+            return 2 * x;
+        }
+    }
+
+    void run(final int offset, final String label) {
+        // Captures nothing and never uses the enclosing instance.
+        Comparator<Integer> desc = new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return b.compareTo(a);
+            }
+        };
+
+        // Uses a captured local, but not the enclosing instance.
+        Comparator<Integer> byDistance = new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return Math.abs(a - offset) - Math.abs(b - offset);
+            }
+        };
+
+        Integer[] xs = {5, 1, 9, 3, 7};
+        Arrays.sort(xs, desc);
+        System.out.println(Arrays.toString(xs));
+        Arrays.sort(xs, byDistance);
+        System.out.println(Arrays.toString(xs));
+
+        // Captures used only to construct a superclass.
+        class Base {
+            String describe() {
+                return label + offset;
+            }
+        }
+        class Derived extends Base {
+            String describe() {
+                return "derived " + super.describe();
+            }
+        }
+        System.out.println(new Derived().describe());
+
+        // Enclosing instance reached through a nested class.
+        Runnable r = new Runnable() {
+            public void run() {
+                Runnable nested = new Runnable() {
+                    public void run() {
+                        System.out.println(label + " " + base + " " + new Inner().plusBase(offset));
+                    }
+                };
+                nested.run();
+            }
+        };
+        r.run();
+        base = 200;
+        r.run();
+
+        System.out.println(new Unused().twice(offset));
+
+        Runnable a = new Runnable() {
+            public void run() {
+                System.out.println("stateless");
+            }
+        };
+        a.run();
+    }
+
+    public static void main(String[] args) {
+        new UnusedCaptures().run(4, "label");
+    }
+}
@@ -0,0 +1,190 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+// The Makefile runs this with JLANG_VIRTUAL_THREADS set, to exercise the M:N
+// scheduler; the output is the same with platform threads.
+public class VirtualThreads {
+
+    static final int THREADS = 1000;
+
+    static int depth(int n) {
+        // Enough stack to be worth saving and restoring.
+        int[] frame = new int[16];
+        frame[n % 16] = n;
+        if (n == 0) {
+            Thread.yield();
+            return 0;
+        }
+        return depth(n - 1) + frame[n % 16] - n + 1;
+    }
+
+    public static void main(String[] args) throws Exception {
+        final ReentrantLock lock = new ReentrantLock();
+        final long[] counter = new long[1];
+        final AtomicInteger slept = new AtomicInteger();
+        final AtomicInteger deep = new AtomicInteger();
+
+        // Many threads that sleep, yield, and contend on a lock that parks.
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < THREADS; i++) {
+            final int id = i;
+            Thread t = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(id % 10);
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    slept.incrementAndGet();
+                    for (int j = 0; j < 10; j++) {
+                        lock.lock();
+                        try {
+                            counter[0]++;
+                        } finally {
+                            lock.unlock();
+                        }
+                    }
+                    if (depth(100) == 100)
+                        deep.incrementAndGet();
+                }
+            };
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads)
+            t.join();
+        System.out.println(slept.get() + " " + counter[0] + " " + deep.get());
+
+        // A ring of threads passing a token with wait and notifyAll.
+        final Object monitor = new Object();
+        final int[] token = new int[1];
+        final int ring = 100;
+        threads.clear();
+        for (int i = 0; i < ring; i++) {
+            final int id = i;
+            Thread t = new Thread() {
+                @Override
+                public void run() {
+                    synchronized (monitor) {
+                        for (int round = 0; round < 3; round++) {
+                            while (token[0] % ring != id) {
+                                try {
+                                    monitor.wait();
+                                } catch (InterruptedException e) {
+                                    throw new RuntimeException(e);
+                                }
+                            }
+                            token[0]++;
+                            monitor.notifyAll();
+                        }
+                    }
+                }
+            };
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads)
+            t.join();
+        System.out.println(token[0]);
+
+        // Threads that yield while holding a contended monitor.
+        final int[] shared = new int[1];
+        threads.clear();
+        for (int i = 0; i < 50; i++) {
+            Thread t = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10; j++) {
+                        synchronized (monitor) {
+                            int seen = shared[0];
+                            Thread.yield();
+                            shared[0] = seen + 1;
+                        }
+                    }
+                }
+            };
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads)
+            t.join();
+        System.out.println(shared[0]);
+
+        // Threads that wait while holding another monitor, and are notified by
+        // threads started later, which share their carriers.
+        final int pairs = 4;
+        final Object[] outer = new Object[pairs];
+        final Object[] inner = new Object[pairs];
+        final boolean[] ready = new boolean[pairs];
+        for (int i = 0; i < pairs; i++) {
+            outer[i] = new Object();
+            inner[i] = new Object();
+        }
+        threads.clear();
+        for (int i = 0; i < pairs; i++) {
+            final int id = i;
+            Thread t = new Thread() {
+                @Override
+                public void run() {
+                    synchronized (outer[id]) {
+                        synchronized (inner[id]) {
+                            while (!ready[id]) {
+                                try {
+                                    inner[id].wait();
+                                } catch (InterruptedException e) {
+                                    throw new RuntimeException(e);
+                                }
+                            }
+                        }
+                    }
+                }
+            };
+            threads.add(t);
+            t.start();
+        }
+        for (int i = 0; i < pairs; i++) {
+            final int id = i;
+            Thread t = new Thread() {
+                @Override
+                public void run() {
+                    synchronized (inner[id]) {
+                        ready[id] = true;
+                        inner[id].notify();
+                    }
+                }
+            };
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads)
+            t.join();
+        System.out.println("nested waits notified");
+
+        // Timed waits time out, and sleeping threads can be interrupted.
+        Thread sleeper = new Thread() {
+            @Override
+            public void run() {
+                synchronized (monitor) {
+                    try {
+                        monitor.wait(20);
+                        System.out.println("timed out");
+                    } catch (InterruptedException e) {
+                        System.out.println("unexpected");
+                    }
+                }
+                try {
+                    Thread.sleep(600000);
+                } catch (InterruptedException e) {
+                    System.out.println("sleep interrupted");
+                }
+            }
+        };
+        sleeper.start();
+        Thread.sleep(100);
+        sleeper.interrupt();
+        sleeper.join();
+    }
+}
@@ -0,0 +1,96 @@
+public class VolatileFields {
+    static volatile boolean ready;
+    static volatile long stamp = Long.MAX_VALUE - 1;
+    static int targets;
+
+    volatile int count;
+    volatile double total;
+    volatile String name = "v";
+    long plain;
+    double weight;
+
+    static class Immutable {
+        final int x;
+        final String s;
+
+        Immutable(int x) {
+            this.s = "s" + x;
+            if (x < 0) {
+                this.x = 0;
+                return;
+            }
+            this.x = x;
+        }
+    }
+
+    static Immutable shared;
+
+    static VolatileFields target(VolatileFields f) {
+        targets++;
+        return f;
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Compound updates evaluate their target once.
+        VolatileFields f = new VolatileFields();
+        target(f).count += 5;
+        target(f).count++;
+        ++target(f).count;
+        int old = target(f).count--;
+        target(f).total += 1.5;
+        target(f).total *= 3;
+        target(f).name += "!";
+        System.out.println(f.count + " " + old + " " + f.total + " " + f.name + " " + targets);
+
+        stamp++;
+        stamp += 1;
+        System.out.println(stamp + " " + (stamp == Long.MIN_VALUE));
+        f.plain = Long.MIN_VALUE;
+        f.plain ^= -1L;
+        target(f).plain++;
+        target(f).weight -= 0.25;
+        System.out.println(f.plain + " " + f.weight + " " + targets);
+
+        // Static fields accessed through an instance still evaluate it.
+        target(f).stamp -= 2;
+        target(f).stamp++;
+        System.out.println(stamp + " " + targets);
+
+        // A spin-wait on a volatile flag sees the other thread's writes.
+        final VolatileFields g = new VolatileFields();
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                g.total = 42.5;
+                shared = new Immutable(7);
+                ready = true;
+            }
+        };
+        writer.start();
+        while (!ready) {
+            // Spin.
+        }
+        System.out.println(g.total + " " + shared.x + " " + shared.s);
+        writer.join();
+
+        // Concurrent increments of a volatile are not atomic, but never tear.
+        final VolatileFields h = new VolatileFields();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        synchronized (h) {
+                            h.count++;
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread t : threads)
+            t.join();
+        System.out.println(h.count + " " + new Immutable(-1).s);
+    }
+}